@@ -0,0 +1,107 @@
+package org.ai5590.devopsagent;
+
+import io.opentelemetry.api.OpenTelemetry;
+import org.ai5590.devopsagent.db.DatabaseInitializer;
+import org.ai5590.devopsagent.db.Message;
+import org.ai5590.devopsagent.tracing.Tracing;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BenchmarkFixtures {
+    public static final String DATA_DIR = "build/jmh-data";
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Tracing noopTracing() {
+        return new Tracing(OpenTelemetry.noop());
+    }
+
+    public static String systemPrompt() {
+        return "Ты — DevOps-ассистент. Помогай пользователям управлять серверами.\n\n"
+                + "### ssh.execute\nExecutes a command on a remote server via SSH.\n".repeat(40);
+    }
+
+    public static String userText(int i) {
+        return "Проверь, пожалуйста, почему на prod-web-0" + (i % 10) + " растёт load average и что с диском /var";
+    }
+
+    public static String assistantText(int i) {
+        return "Судя по выводу, процесс java занимает 85% CPU, а раздел /var заполнен на 93%.\n"
+                + "Action result (ssh.execute):\n```\n"
+                + "Filesystem      Size  Used Avail Use% Mounted on\n/dev/sda1        50G   46G  3.5G  93% /var\n".repeat(8)
+                + "```\nРекомендую очистить журналы командой journalctl --vacuum-size=500M (шаг " + i + ").";
+    }
+
+    public static List<Message> history(int size) {
+        List<Message> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            history.add(new Message(i + 1, i % 2 == 0 ? "user" : "assistant",
+                    i % 2 == 0 ? userText(i) : assistantText(i), "2026-01-01 12:00:00"));
+        }
+        return history;
+    }
+
+    public static String aiResponse(int actionCount, int textRepeat) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Давайте проверим состояние сервера. Сначала посмотрим нагрузку и диски.\n".repeat(textRepeat));
+        if (actionCount > 0) {
+            sb.append("---ACTIONS_JSON_START---\n{\"actions\": [\n");
+            for (int i = 1; i <= actionCount; i++) {
+                if (i > 1) sb.append(",\n");
+                sb.append("{\"id\": \"").append(i).append("\", \"api\": \"ssh.execute\", \"title\": \"Check status ")
+                        .append(i).append("\", \"description\": \"Run uptime and disk usage on the server\", ")
+                        .append("\"risk\": \"low\", \"params\": {\"server\": \"prod-web-0").append(i % 10)
+                        .append("\", \"command\": \"uptime && df -h && free -m\"}}");
+            }
+            sb.append("\n]}\n---ACTIONS_JSON_END---\n");
+        }
+        sb.append("После выполнения я проанализирую результаты.");
+        return sb.toString();
+    }
+
+    public static DatabaseInitializer freshDatabase(String name) {
+        File file = new File(DATA_DIR, name + ".db");
+        file.delete();
+        DatabaseInitializer db = new DatabaseInitializer(file.getPath());
+        db.init();
+        return db;
+    }
+
+    // Seeding 1M rows takes a while, so the file under build/jmh-data is reused once it has the expected size.
+    public static DatabaseInitializer seededMessagesDatabase(int rows, int users) throws SQLException {
+        File file = new File(DATA_DIR, "messages-" + rows + "-" + users + ".db");
+        DatabaseInitializer db = new DatabaseInitializer(file.getPath());
+        db.init();
+        try (Connection conn = db.getConnection()) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM messages")) {
+                if (rs.next() && rs.getLong(1) == rows) return db;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM messages");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO messages (user_login, role, content) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    ps.setString(1, "user" + (i % users));
+                    ps.setString(2, (i / users) % 2 == 0 ? "user" : "assistant");
+                    ps.setString(3, (i / users) % 2 == 0 ? userText(i) : assistantText(i));
+                    ps.addBatch();
+                    if (i % 10_000 == 9_999) ps.executeBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+        }
+        return db;
+    }
+}
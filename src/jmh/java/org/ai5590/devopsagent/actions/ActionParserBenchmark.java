@@ -0,0 +1,35 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ActionParserBenchmark {
+    @Param({"small", "large"})
+    public String size;
+
+    private ActionParser parser;
+    private String response;
+
+    @Setup
+    public void setup() {
+        parser = new ActionParser();
+        response = "small".equals(size)
+                ? BenchmarkFixtures.aiResponse(1, 2)
+                : BenchmarkFixtures.aiResponse(6, 200);
+    }
+
+    @Benchmark
+    public ActionParser.ParseResult parse() {
+        return parser.parse(response);
+    }
+
+    @Benchmark
+    public ActionParser.ParseResult parseWithoutActions() {
+        return parser.parse("small".equals(size) ? "Сервер работает нормально." : response.substring(0, response.indexOf("---ACTIONS")));
+    }
+}
@@ -0,0 +1,51 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Corpus in src/jmh/resources/outputs. Besides the time per output, the trial prints the size reduction
+// (tokens estimated as characters / 4, like the LLM router does).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OutputCondensersBenchmark {
+    @Param({"ps_aux", "df_h", "docker_ps", "journalctl", "build_output"})
+    public String output;
+
+    private OutputCondensers condensers;
+    private AppConfig.OutputSettings settings;
+    private String raw;
+
+    @Setup
+    public void setup() {
+        ConfigLoader configLoader = new ConfigLoader();
+        configLoader.init();
+        condensers = new OutputCondensers(configLoader);
+        settings = configLoader.getConfig().getOutputs();
+        try (InputStream in = OutputCondensersBenchmark.class.getResourceAsStream("/outputs/" + output + ".txt")) {
+            raw = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TearDown
+    public void report() {
+        int condensed = condensers.condense(raw, settings).length();
+        System.out.printf(Locale.ROOT, "%n%s: %d -> %d chars, ~%d -> ~%d tokens (-%.1f%%)%n", output, raw.length(),
+                condensed, raw.length() / 4, condensed / 4, 100.0 * (raw.length() - condensed) / raw.length());
+    }
+
+    @Benchmark
+    public String condense() {
+        return condensers.condense(raw, settings);
+    }
+}
@@ -0,0 +1,31 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AuditRepositoryBenchmark {
+    private AuditRepository repository;
+    private String output;
+
+    @Setup
+    public void setup() {
+        repository = new AuditRepository(BenchmarkFixtures.freshDatabase("audit"), BenchmarkFixtures.noopTracing());
+        output = BenchmarkFixtures.assistantText(1);
+    }
+
+    @Benchmark
+    public void addAuditEntry() {
+        repository.addAuditEntry("user1", "ssh.execute", "prod-web-01", "df -h", 42, output);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addAuditEntryConcurrent() {
+        repository.addAuditEntry("user1", "ssh.execute", "prod-web-01", "df -h", 42, output);
+    }
+}
@@ -0,0 +1,39 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MessageJournalBenchmark {
+    private MessageJournal journal;
+    private MessageRepository repository;
+    private String content;
+
+    @Setup
+    public void setup() {
+        DatabaseInitializer db = BenchmarkFixtures.freshDatabase("journal");
+        journal = new MessageJournal(db);
+        repository = new MessageRepository(db, journal, BenchmarkFixtures.noopTracing());
+        content = BenchmarkFixtures.assistantText(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Benchmark
+    public Long addMessageDurable() {
+        return repository.addMessage("user1", "assistant", content).join();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Long addMessageDurableConcurrent() {
+        return repository.addMessage("user" + Thread.currentThread().getId() % 16, "assistant", content).join();
+    }
+}
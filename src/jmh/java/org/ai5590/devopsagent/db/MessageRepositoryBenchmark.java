@@ -0,0 +1,59 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageRepositoryBenchmark {
+    private static final int USERS = 100;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private MessageRepository repository;
+    private long[] lastIdPerUser;
+
+    @Setup
+    public void setup() throws SQLException {
+        DatabaseInitializer db = BenchmarkFixtures.seededMessagesDatabase(rows, USERS);
+        repository = new MessageRepository(db, new MessageJournal(db), BenchmarkFixtures.noopTracing());
+        lastIdPerUser = new long[USERS];
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT MAX(id) FROM messages WHERE user_login = ?")) {
+            for (int u = 0; u < USERS; u++) {
+                ps.setString(1, "user" + u);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) lastIdPerUser[u] = rs.getLong(1);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Message> getLastMessages() {
+        int u = ThreadLocalRandom.current().nextInt(USERS);
+        return repository.getLastMessages("user" + u, 30);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesSinceNoNewRows() {
+        int u = ThreadLocalRandom.current().nextInt(USERS);
+        return repository.getMessagesSince("user" + u, lastIdPerUser[u]);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesSinceTwoNewRows() {
+        int u = ThreadLocalRandom.current().nextInt(USERS);
+        return repository.getMessagesSince("user" + u, lastIdPerUser[u] - 2L * USERS);
+    }
+}
@@ -0,0 +1,40 @@
+package org.ai5590.devopsagent.openai;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.ai5590.devopsagent.db.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LlmRequestBodyBenchmark {
+    @Param({"30"})
+    public int historySize;
+
+    private OpenAiClient openAiClient;
+    private OllamaClient ollamaClient;
+    private String systemPrompt;
+    private List<Message> history;
+
+    @Setup
+    public void setup() {
+        openAiClient = new OpenAiClient("http://127.0.0.1:1", "", BenchmarkFixtures.noopTracing());
+        ollamaClient = new OllamaClient("http://127.0.0.1:1", BenchmarkFixtures.noopTracing());
+        systemPrompt = BenchmarkFixtures.systemPrompt();
+        history = BenchmarkFixtures.history(historySize);
+    }
+
+    @Benchmark
+    public byte[] openAi() throws IOException {
+        return openAiClient.buildRequestBody(systemPrompt, history, "gpt-4o-mini");
+    }
+
+    @Benchmark
+    public byte[] ollama() throws IOException {
+        return ollamaClient.buildRequestBody(systemPrompt, history, "llama3");
+    }
+}
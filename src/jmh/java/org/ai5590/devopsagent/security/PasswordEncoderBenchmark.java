@@ -0,0 +1,35 @@
+package org.ai5590.devopsagent.security;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class PasswordEncoderBenchmark {
+    @Param({"bcrypt:8", "bcrypt:10", "bcrypt:12", "argon2"})
+    public String scheme;
+
+    private PasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        AppConfig.PasswordSettings settings = new AppConfig.PasswordSettings();
+        String[] parts = scheme.split(":");
+        settings.setAlgorithm(parts[0]);
+        if (parts.length > 1) settings.setBcryptCost(Integer.parseInt(parts[1]));
+        encoder = HashingPasswordEncoder.createDelegate(settings);
+        hash = encoder.encode("CHANGE_ME");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("CHANGE_ME", hash);
+    }
+}
@@ -0,0 +1,91 @@
+package org.ai5590.devopsagent.service;
+
+import org.ai5590.devopsagent.BenchmarkFixtures;
+import org.ai5590.devopsagent.actions.*;
+import org.ai5590.devopsagent.audit.AuditService;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.*;
+import org.ai5590.devopsagent.openai.LlmClient;
+import org.ai5590.devopsagent.openai.LlmClientFactory;
+import org.ai5590.devopsagent.openai.LlmResponseCache;
+import org.ai5590.devopsagent.openai.OpenAiService;
+import org.ai5590.devopsagent.sshagent.ServerHealthTracker;
+import org.ai5590.devopsagent.sshagent.ServerInventory;
+import org.ai5590.devopsagent.sshagent.SshAgentService;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChatServiceBenchmark {
+    @Param({"0", "3"})
+    public int actionsPerReply;
+
+    private ChatService chatService;
+
+    @State(Scope.Thread)
+    public static class UserState {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+        String login;
+        int turn;
+
+        @Setup(Level.Iteration)
+        public void nextUser() {
+            login = "bench" + COUNTER.incrementAndGet();
+            turn = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Tracing tracing = BenchmarkFixtures.noopTracing();
+        DatabaseInitializer db = BenchmarkFixtures.freshDatabase("chat-service-" + actionsPerReply);
+        ConfigLoader configLoader = new ConfigLoader();
+        configLoader.init();
+        UserRepository userRepository = new UserRepository(db, tracing);
+        UserSettingsRepository settingsRepository = new UserSettingsRepository(db, tracing);
+        String reply = BenchmarkFixtures.aiResponse(actionsPerReply, 3);
+        LlmClient stubClient = (systemPrompt, history, model) -> reply;
+        LlmClientFactory factory = new LlmClientFactory(configLoader, settingsRepository, tracing) {
+            @Override
+            public List<Route> route(String userLogin, String systemPrompt, List<Message> history) {
+                return List.of(new Route("stub", stubClient, "stub", "selected", "benchmark"));
+            }
+        };
+        MessageRepository messageRepository = new MessageRepository(db, new MessageJournal(db), tracing);
+        OutputBlobRepository blobRepository = new OutputBlobRepository(db, tracing);
+        PendingActionStore pendingActionStore = new PendingActionStore(new PendingActionsRepository(db, tracing),
+                new ActionLeaseRepository(db, tracing), db, configLoader);
+        AuditService auditService = new AuditService(new AuditRepository(db, tracing));
+        ServerHealthTracker serverHealth = new ServerHealthTracker(configLoader);
+        SshAgentService sshAgentService = new SshAgentService(configLoader, serverHealth, tracing);
+        ServerInventory serverInventory = new ServerInventory(sshAgentService, configLoader, tracing);
+        // Benchmark users never enable agent mode, so the batch executor is wired but not exercised.
+        BatchExecutor batchExecutor = new BatchExecutor(
+                new ActionExecutor(sshAgentService, serverInventory, configLoader, auditService, tracing),
+                pendingActionStore, new ActionOutputs(blobRepository, configLoader), messageRepository, tracing);
+        // Every turn extends the history, so the cache always misses: this measures its lookup and store cost.
+        LlmResponseCache cache = new LlmResponseCache(new LlmCacheRepository(db, tracing), configLoader);
+        chatService = new ChatService(messageRepository, blobRepository, userRepository, pendingActionStore,
+                new OpenAiService(factory, cache, settingsRepository, tracing), configLoader, new ActionParser(), batchExecutor,
+                new OutputCondensers(configLoader), new AgentPolicy(configLoader), settingsRepository, auditService,
+                serverInventory, serverHealth, tracing);
+    }
+
+    @Benchmark
+    public Map<String, Object> sendMessage(UserState user) {
+        return chatService.sendMessage(user.login, BenchmarkFixtures.userText(user.turn++));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, Object> sendMessageConcurrentUsers(UserState user) {
+        return chatService.sendMessage(user.login, BenchmarkFixtures.userText(user.turn++));
+    }
+}
@@ -0,0 +1,64 @@
+package org.ai5590.devopsagent.loadtest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LatencyRecorder {
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long nanos, boolean ok) {
+        stats.computeIfAbsent(endpoint, k -> new EndpointStats()).add(nanos, ok);
+    }
+
+    public List<Map<String, Object>> report(double elapsedSeconds) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String endpoint : new TreeSet<>(stats.keySet())) {
+            rows.add(stats.get(endpoint).summary(endpoint, elapsedSeconds));
+        }
+        return rows;
+    }
+
+    public static String format(List<Map<String, Object>> rows) {
+        StringBuilder sb = new StringBuilder(String.format("%-30s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Map<String, Object> r : rows) {
+            sb.append(String.format("%-30s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    r.get("endpoint"), r.get("count"), r.get("errors"), r.get("throughput"),
+                    r.get("p50Ms"), r.get("p95Ms"), r.get("p99Ms"), r.get("maxMs")));
+        }
+        return sb.toString();
+    }
+
+    private static class EndpointStats {
+        private long[] samples = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void add(long nanos, boolean ok) {
+            if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+            samples[count++] = nanos;
+            if (!ok) errors++;
+        }
+
+        synchronized Map<String, Object> summary(String endpoint, double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("endpoint", endpoint);
+            r.put("count", count);
+            r.put("errors", errors);
+            r.put("throughput", elapsedSeconds > 0 ? count / elapsedSeconds : 0.0);
+            r.put("p50Ms", percentile(sorted, 0.50));
+            r.put("p95Ms", percentile(sorted, 0.95));
+            r.put("p99Ms", percentile(sorted, 0.99));
+            r.put("maxMs", count > 0 ? sorted[count - 1] / 1e6 : 0.0);
+            return r;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0.0;
+            int idx = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.ai5590.devopsagent.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+final class LlmReplies {
+    private static final String[] WORDS = {
+            "Проверим", "состояние", "сервера,", "нагрузку", "CPU", "и", "свободное", "место", "на", "диске.",
+            "Load", "average", "выглядит", "нормально,", "но", "раздел", "/var", "заполнен", "почти", "полностью."
+    };
+
+    private LlmReplies() {
+    }
+
+    static List<String> tokens(StubSettings settings) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> tokens = new ArrayList<>(settings.replyTokens + 1);
+        for (int i = 0; i < settings.replyTokens; i++) {
+            tokens.add(WORDS[i % WORDS.length] + " ");
+        }
+        if (random.nextDouble() < settings.actionRate) {
+            tokens.add(actionsBlock(random.nextInt(1, 4), random.nextInt(settings.sshServers)));
+        }
+        return tokens;
+    }
+
+    static String text(StubSettings settings) {
+        return String.join("", tokens(settings)).trim();
+    }
+
+    private static String actionsBlock(int count, int server) {
+        StringBuilder sb = new StringBuilder("\n---ACTIONS_JSON_START---\n{\"actions\": [");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) sb.append(",");
+            sb.append("{\"id\": \"").append(i).append("\", \"api\": \"ssh.execute\", \"title\": \"Check ").append(i)
+                    .append("\", \"description\": \"Diagnostics\", \"risk\": \"low\", \"params\": {\"server\": \"")
+                    .append(SshAgentStub.serverName(server)).append("\", \"command\": \"uptime && df -h\"}}");
+        }
+        return sb.append("]}\n---ACTIONS_JSON_END---\n").toString();
+    }
+
+    static int estimateTokens(String text) {
+        return text == null ? 0 : Math.max(1, text.length() / 4);
+    }
+}
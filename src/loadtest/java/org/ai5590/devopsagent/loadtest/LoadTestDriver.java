@@ -0,0 +1,167 @@
+package org.ai5590.devopsagent.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadTestDriver {
+    static final String DEFAULT_USER_PREFIX = "load";
+    static final String DEFAULT_PASSWORD = "loadtest";
+
+    private final Map<String, String> options;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    public LoadTestDriver(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unexpected argument: " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTestDriver(options).run();
+    }
+
+    public void run() throws Exception {
+        String baseUrl = options.getOrDefault("baseUrl", "http://127.0.0.1:25003");
+        int users = Integer.parseInt(options.getOrDefault("users", "20"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        long thinkMs = Long.parseLong(options.getOrDefault("thinkMs", "500"));
+        long rampUpMs = Long.parseLong(options.getOrDefault("rampUpSeconds", "5")) * 1000;
+        String prefix = options.getOrDefault("userPrefix", DEFAULT_USER_PREFIX);
+        String password = options.getOrDefault("password", DEFAULT_PASSWORD);
+        if ("login-burst".equals(options.get("scenario"))) {
+            runLoginBurst(baseUrl, users, durationSeconds, prefix, password);
+            return;
+        }
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "send:1,state:8,action:1"));
+
+        System.out.printf("Load test: %s, %d users, %ds, think %dms, mix %s%n", baseUrl, users, durationSeconds, thinkMs, mix);
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        AtomicInteger loginFailures = new AtomicInteger();
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            String login = prefix + i;
+            long delay = users > 1 ? rampUpMs * (i - 1) / (users - 1) : 0;
+            futures.add(pool.submit(() -> {
+                Thread.sleep(delay);
+                VirtualUser user = new VirtualUser(baseUrl, login, password, recorder);
+                if (!user.login()) {
+                    loginFailures.incrementAndGet();
+                    return null;
+                }
+                runUser(user, mix, thinkMs, deadline);
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                System.err.println("Virtual user failed: " + e.getCause());
+            }
+        }
+        pool.shutdown();
+        finish(startNanos, users, loginFailures.get());
+    }
+
+    // Open-loop arrivals at a fixed rate, each a fresh session, like everyone logging in again after a deploy.
+    private void runLoginBurst(String baseUrl, int users, int durationSeconds, String prefix, String password) throws Exception {
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        System.out.printf("Login burst: %s, %d logins/s for %ds over %d users%n", baseUrl, rate, durationSeconds, users);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        AtomicInteger loginFailures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        long total = (long) rate * durationSeconds;
+        for (long i = 0; i < total; i++) {
+            long wait = startNanos + i * 1_000_000_000L / rate - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            String login = prefix + (i % users + 1);
+            futures.add(pool.submit(() -> {
+                if (!new VirtualUser(baseUrl, login, password, recorder).login()) loginFailures.incrementAndGet();
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                loginFailures.incrementAndGet();
+            }
+        }
+        pool.shutdown();
+        finish(startNanos, users, loginFailures.get());
+    }
+
+    private void finish(long startNanos, int users, int loginFailures) throws IOException {
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        List<Map<String, Object>> rows = recorder.report(elapsed);
+        System.out.printf("%nFinished in %.1fs, login failures: %d%n", elapsed, loginFailures);
+        System.out.print(LatencyRecorder.format(rows));
+        writeReport(rows, elapsed, users, loginFailures);
+    }
+
+    private void runUser(VirtualUser user, Map<String, Integer> mix, long thinkMs, long deadline) throws InterruptedException {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(total);
+            String op = null;
+            for (Map.Entry<String, Integer> e : mix.entrySet()) {
+                roll -= e.getValue();
+                if (roll < 0) {
+                    op = e.getKey();
+                    break;
+                }
+            }
+            try {
+                switch (op) {
+                    case "send" -> user.sendMessage();
+                    case "state" -> user.pollState();
+                    case "action" -> {
+                        if (!user.executeAction()) user.pollState();
+                    }
+                    default -> throw new IllegalArgumentException("Unknown operation: " + op);
+                }
+            } catch (IOException e) {
+                // Recorded as an error by VirtualUser; keep the user running.
+            }
+            if (thinkMs > 0) Thread.sleep(random.nextLong(thinkMs / 2, thinkMs * 3 / 2 + 1));
+        }
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            mix.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    private void writeReport(List<Map<String, Object>> rows, double elapsed, int users, int loginFailures) throws IOException {
+        Path dir = Path.of(options.getOrDefault("reportDir", "build/loadtest"));
+        Files.createDirectories(dir);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("users", users);
+        report.put("elapsedSeconds", elapsed);
+        report.put("loginFailures", loginFailures);
+        report.put("endpoints", rows);
+        Path file = dir.resolve("report-" + System.currentTimeMillis() + ".json");
+        StubHttp.MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        System.out.println("Report written to " + file);
+    }
+}
@@ -0,0 +1,73 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class OllamaStub implements HttpHandler {
+    private final StubSettings settings;
+
+    public OllamaStub(StubSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod()) || !"/api/chat".equals(exchange.getRequestURI().getPath())) {
+            StubHttp.sendJson(exchange, 404, Map.of("error", "not found"));
+            return;
+        }
+        JsonNode request = StubHttp.readJson(exchange);
+        String model = request.path("model").asText("llama3");
+        if (ThreadLocalRandom.current().nextDouble() < settings.error5xxRate) {
+            StubHttp.sleep(settings.llmLatencyMs);
+            StubHttp.sendJson(exchange, 500, Map.of("error", "model runner has unexpectedly stopped"));
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> tokens = LlmReplies.tokens(settings);
+        StubHttp.sleep(settings.llmLatencyMs);
+        // Ollama streams by default; the application sends "stream": false.
+        if (request.path("stream").asBoolean(true)) {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String token : tokens) {
+                    ObjectNode chunk = message(model, token, false);
+                    StubHttp.writeChunk(out, StubHttp.MAPPER.writeValueAsString(chunk) + "\n");
+                    StubHttp.sleep(settings.tokenDelayMillis());
+                }
+                ObjectNode last = message(model, "", true);
+                last.put("total_duration", System.nanoTime() - start);
+                last.put("eval_count", tokens.size());
+                StubHttp.writeChunk(out, StubHttp.MAPPER.writeValueAsString(last) + "\n");
+            }
+            return;
+        }
+        StubHttp.sleep(settings.generationMillis());
+        ObjectNode response = message(model, String.join("", tokens).trim(), true);
+        response.put("total_duration", System.nanoTime() - start);
+        response.put("eval_count", tokens.size());
+        StubHttp.sendJson(exchange, 200, response);
+    }
+
+    private ObjectNode message(String model, String content, boolean done) {
+        ObjectNode node = StubHttp.MAPPER.createObjectNode();
+        node.put("model", model);
+        node.put("created_at", Instant.now().toString());
+        ObjectNode message = node.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        node.put("done", done);
+        return node;
+    }
+}
@@ -0,0 +1,90 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OpenAiStub implements HttpHandler {
+    private final StubSettings settings;
+    private final AtomicLong ids = new AtomicLong();
+
+    public OpenAiStub(StubSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+            StubHttp.sendJson(exchange, 404, Map.of("error", Map.of("message", "Not found")));
+            return;
+        }
+        JsonNode request = StubHttp.readJson(exchange);
+        String model = request.path("model").asText("stub-model");
+        int promptTokens = LlmReplies.estimateTokens(request.path("messages").toString());
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < settings.error429Rate) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            StubHttp.sendJson(exchange, 429, Map.of("error", Map.of("message", "Rate limit reached", "type", "requests")));
+            return;
+        }
+        if (roll < settings.error429Rate + settings.error5xxRate) {
+            StubHttp.sleep(settings.llmLatencyMs);
+            StubHttp.sendJson(exchange, 503, Map.of("error", Map.of("message", "The server is overloaded", "type", "server_error")));
+            return;
+        }
+
+        String id = "chatcmpl-stub-" + ids.incrementAndGet();
+        List<String> tokens = LlmReplies.tokens(settings);
+        StubHttp.sleep(settings.llmLatencyMs);
+        if (request.path("stream").asBoolean(false)) {
+            stream(exchange, id, model, tokens);
+            return;
+        }
+        StubHttp.sleep(settings.generationMillis());
+
+        ObjectNode response = StubHttp.MAPPER.createObjectNode();
+        response.put("id", id);
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", String.join("", tokens).trim());
+        choice.put("finish_reason", "stop");
+        ObjectNode usage = response.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", tokens.size());
+        usage.put("total_tokens", promptTokens + tokens.size());
+        StubHttp.sendJson(exchange, 200, response);
+    }
+
+    private void stream(HttpExchange exchange, String id, String model, List<String> tokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String token : tokens) {
+                ObjectNode chunk = StubHttp.MAPPER.createObjectNode();
+                chunk.put("id", id);
+                chunk.put("object", "chat.completion.chunk");
+                chunk.put("model", model);
+                ObjectNode choice = chunk.putArray("choices").addObject();
+                choice.put("index", 0);
+                choice.putObject("delta").put("content", token);
+                StubHttp.writeChunk(out, "data: " + StubHttp.MAPPER.writeValueAsString(chunk) + "\n\n");
+                StubHttp.sleep(settings.tokenDelayMillis());
+            }
+            StubHttp.writeChunk(out, "data: [DONE]\n\n");
+        }
+    }
+}
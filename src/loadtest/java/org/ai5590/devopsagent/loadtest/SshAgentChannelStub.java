@@ -0,0 +1,213 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// The ssh-executor-agent channel (GET /ws, WebSocket) with the same latency and fake outputs as SshAgentStub.
+// com.sun.net.httpserver cannot upgrade connections, so this is a minimal RFC 6455 server on its own port:
+// text frames, ping/pong and close; no extensions.
+public class SshAgentChannelStub implements AutoCloseable {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final StubSettings settings;
+    private final SshAgentStub rest;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ssh-channel-stub");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SshAgentChannelStub(StubSettings settings) throws IOException {
+        this.settings = settings;
+        this.rest = new SshAgentStub(settings);
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", settings.sshChannelPort), 512);
+        workers.execute(this::acceptLoop);
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.err.println("Channel stub accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Map<String, Future<?>> running = new ConcurrentHashMap<>();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            if (!handshake(in, out)) return;
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                int b0 = in.read();
+                if (b0 < 0) return;
+                int opcode = b0 & 0x0F;
+                byte[] payload = readPayload(in);
+                switch (opcode) {
+                    case 0x0, 0x1 -> {
+                        message.write(payload);
+                        if ((b0 & 0x80) != 0) {
+                            String text = message.toString(StandardCharsets.UTF_8);
+                            message.reset();
+                            onMessage(text, out, running);
+                        }
+                    }
+                    case 0x8 -> {
+                        writeFrame(out, 0x8, payload);
+                        return;
+                    }
+                    case 0x9 -> writeFrame(out, 0xA, payload);
+                    default -> { }
+                }
+            }
+        } catch (IOException e) {
+            // Client went away.
+        } finally {
+            for (Future<?> f : running.values()) f.cancel(true);
+        }
+    }
+
+    private void onMessage(String text, OutputStream out, Map<String, Future<?>> running) throws IOException {
+        JsonNode request = StubHttp.MAPPER.readTree(text);
+        String id = request.path("id").asText();
+        String op = request.path("op").asText();
+        if ("cancel".equals(op)) {
+            Future<?> f = running.remove(id);
+            if (f != null) f.cancel(true);
+            return;
+        }
+        if (!"exec".equals(op) && !"servers".equals(op)) {
+            reply(out, Map.of("id", id, "error", "Unknown op: " + op));
+            return;
+        }
+        // Registered before it starts, so a fast reply or an early cancel always finds it.
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            Map<String, String> result = new HashMap<>();
+            result.put("id", id);
+            if ("servers".equals(op)) {
+                StubHttp.sleep(settings.sshLatencyMs / 3);
+                result.put("result", rest.serverList());
+            } else {
+                String server = request.path("server").asText();
+                String command = request.path("command").asText();
+                StubHttp.sleep(settings.sshLatencyMs);
+                result.put("result", ThreadLocalRandom.current().nextDouble() < settings.sshErrorRate
+                        ? "ssh: connect to host " + server + " port 22: Connection timed out"
+                        : rest.fakeOutput(server, command));
+            }
+            // A cancelled request gets no reply; the client has stopped waiting for it.
+            if (running.remove(id) == null || Thread.currentThread().isInterrupted()) return;
+            try {
+                reply(out, result);
+            } catch (IOException e) {
+                // Connection closed while the command ran.
+            }
+        }, null);
+        running.put(id, task);
+        workers.execute(task);
+    }
+
+    private static boolean handshake(DataInputStream in, OutputStream out) throws IOException {
+        String requestLine = readLine(in);
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+        }
+        String key = headers.get("sec-websocket-key");
+        if (!requestLine.startsWith("GET /ws ") || key == null) {
+            out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return false;
+        }
+        out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return true;
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) throw new EOFException();
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        int b1 = in.readUnsignedByte();
+        long length = b1 & 0x7F;
+        if (length == 126) length = in.readUnsignedShort();
+        else if (length == 127) length = in.readLong();
+        byte[] mask = new byte[4];
+        boolean masked = (b1 & 0x80) != 0;
+        if (masked) in.readFully(mask);
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        if (masked) {
+            for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+        }
+        return payload;
+    }
+
+    private static void reply(OutputStream out, Map<String, String> body) throws IOException {
+        writeFrame(out, 0x1, StubHttp.MAPPER.writeValueAsBytes(body));
+    }
+
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        synchronized (out) {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length & 0xFF);
+            } else {
+                out.write(127);
+                new DataOutputStream(out).writeLong(payload.length);
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            byte[] sha1 = MessageDigest.getInstance("SHA-1").digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(sha1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,70 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class SshAgentStub implements HttpHandler {
+    private final StubSettings settings;
+
+    public SshAgentStub(StubSettings settings) {
+        this.settings = settings;
+    }
+
+    static String serverName(int i) {
+        return (i % 3 == 0 ? "prod-db-" : "prod-web-") + String.format("%02d", i + 1);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method) && "/servers".equals(path)) {
+            StubHttp.sleep(settings.sshLatencyMs / 3);
+            StubHttp.sendJson(exchange, 200, Map.of("result", serverList()));
+        } else if ("POST".equals(method) && "/exec".equals(path)) {
+            JsonNode request = StubHttp.readJson(exchange);
+            String server = request.path("server").asText();
+            String command = request.path("command").asText();
+            StubHttp.sleep(settings.sshLatencyMs);
+            if (ThreadLocalRandom.current().nextDouble() < settings.sshErrorRate) {
+                StubHttp.sendJson(exchange, 502, Map.of("result", "ssh: connect to host " + server + " port 22: Connection timed out"));
+                return;
+            }
+            StubHttp.sendJson(exchange, 200, Map.of("result", fakeOutput(server, command)));
+        } else if ("GET".equals(method) && "/health".equals(path)) {
+            StubHttp.sendJson(exchange, 200, Map.of("status", "ok"));
+        } else {
+            StubHttp.sendJson(exchange, 404, Map.of("result", "Not found: " + path));
+        }
+    }
+
+    String serverList() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < settings.sshServers; i++) {
+            sb.append(serverName(i)).append(" 10.0.0.").append(10 + i)
+                    .append(i % 3 == 0 ? " [db,prod]" : " [web,prod]").append('\n');
+        }
+        return sb.toString().trim();
+    }
+
+    String fakeOutput(String server, String command) {
+        StringBuilder sb = new StringBuilder();
+        if (command.contains("uptime")) {
+            sb.append(" 12:01:33 up 41 days,  3:12,  1 user,  load average: 0.42, 0.51, 0.48\n");
+        }
+        if (command.contains("df")) {
+            sb.append("Filesystem      Size  Used Avail Use% Mounted on\n")
+                    .append("/dev/sda1        50G   31G   17G  65% /\n")
+                    .append("/dev/sdb1       200G  187G   13G  94% /var\n");
+        }
+        if (sb.length() == 0) {
+            sb.append("[").append(server).append("] $ ").append(command).append("\nok\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+public class StubServers implements AutoCloseable {
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final SshAgentChannelStub sshChannel;
+
+    public StubServers(StubSettings settings) throws IOException {
+        servers.add(start(settings.openaiPort, new OpenAiStub(settings)));
+        servers.add(start(settings.ollamaPort, new OllamaStub(settings)));
+        servers.add(start(settings.sshPort, new SshAgentStub(settings)));
+        sshChannel = new SshAgentChannelStub(settings);
+    }
+
+    private static HttpServer start(int port, HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        server.createContext("/", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    @Override
+    public void close() {
+        for (HttpServer server : servers) server.stop(0);
+        sshChannel.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubSettings settings = new StubSettings();
+        if (args.length >= 1 && "--print-config".equals(args[0])) {
+            int users = args.length >= 2 ? Integer.parseInt(args[1]) : 50;
+            System.out.println(StubHttp.MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(config(settings, users)));
+            return;
+        }
+        StubServers stubs = new StubServers(settings);
+        Runtime.getRuntime().addShutdownHook(new Thread(stubs::close));
+        System.out.println("OpenAI stub:    http://127.0.0.1:" + settings.openaiPort + "/v1/chat/completions");
+        System.out.println("Ollama stub:    http://127.0.0.1:" + settings.ollamaPort + "/api/chat");
+        System.out.println("ssh-agent stub: http://127.0.0.1:" + settings.sshPort + " (/servers, /exec)");
+        System.out.println("ssh-agent channel stub: ws://127.0.0.1:" + settings.sshChannelPort + "/ws");
+        System.out.println("Settings: " + settings);
+        new CountDownLatch(1).await();
+    }
+
+    static ObjectNode config(StubSettings settings, int users) {
+        ObjectNode config = StubHttp.MAPPER.createObjectNode();
+        config.put("sshAgentBaseUrl", "http://127.0.0.1:" + settings.sshPort);
+        config.putObject("sshAgent").put("channelUrl", "ws://127.0.0.1:" + settings.sshChannelPort + "/ws");
+        config.put("bootstrapUsersMode", "UPSERT");
+        ArrayNode bootstrap = config.putArray("bootstrapUsers");
+        for (int i = 1; i <= users; i++) {
+            bootstrap.addObject().put("login", LoadTestDriver.DEFAULT_USER_PREFIX + i)
+                    .put("password", LoadTestDriver.DEFAULT_PASSWORD);
+        }
+        config.putObject("defaults").put("defaultLlmServerId", "stub_openai");
+        ArrayNode llmServers = config.putArray("llmServers");
+        llmServers.addObject().put("id", "stub_openai").put("title", "OpenAI stub").put("type", "OPENAI")
+                .put("baseUrl", "http://127.0.0.1:" + settings.openaiPort + "/v1")
+                .put("defaultModel", "gpt-4o-mini").put("enabled", true);
+        llmServers.addObject().put("id", "stub_ollama").put("title", "Ollama stub").put("type", "OLLAMA")
+                .put("baseUrl", "http://127.0.0.1:" + settings.ollamaPort)
+                .put("defaultModel", "llama3").put("enabled", true);
+        return config;
+    }
+}
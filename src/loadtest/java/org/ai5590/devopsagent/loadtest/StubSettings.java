@@ -0,0 +1,44 @@
+package org.ai5590.devopsagent.loadtest;
+
+public class StubSettings {
+    final int openaiPort = intProp("stub.openaiPort", 25101);
+    final int ollamaPort = intProp("stub.ollamaPort", 25102);
+    final int sshPort = intProp("stub.sshPort", 25105);
+    final int sshChannelPort = intProp("stub.sshChannelPort", 25106);
+
+    final long llmLatencyMs = intProp("stub.llmLatencyMs", 300);
+    final int tokensPerSecond = intProp("stub.tokensPerSecond", 0);
+    final int replyTokens = intProp("stub.replyTokens", 120);
+    final double error429Rate = doubleProp("stub.error429Rate", 0.0);
+    final double error5xxRate = doubleProp("stub.error5xxRate", 0.0);
+    final double actionRate = doubleProp("stub.actionRate", 0.5);
+
+    final long sshLatencyMs = intProp("stub.sshLatencyMs", 150);
+    final double sshErrorRate = doubleProp("stub.sshErrorRate", 0.0);
+    final int sshServers = intProp("stub.sshServers", 12);
+
+    long generationMillis() {
+        return tokensPerSecond > 0 ? replyTokens * 1000L / tokensPerSecond : 0;
+    }
+
+    long tokenDelayMillis() {
+        return tokensPerSecond > 0 ? 1000L / tokensPerSecond : 0;
+    }
+
+    private static int intProp(String name, int def) {
+        String v = System.getProperty(name);
+        return v != null && !v.isBlank() ? Integer.parseInt(v.trim()) : def;
+    }
+
+    private static double doubleProp(String name, double def) {
+        String v = System.getProperty(name);
+        return v != null && !v.isBlank() ? Double.parseDouble(v.trim()) : def;
+    }
+
+    @Override
+    public String toString() {
+        return "llmLatencyMs=" + llmLatencyMs + " tokensPerSecond=" + tokensPerSecond + " replyTokens=" + replyTokens
+                + " error429Rate=" + error429Rate + " error5xxRate=" + error5xxRate + " actionRate=" + actionRate
+                + " sshLatencyMs=" + sshLatencyMs + " sshErrorRate=" + sshErrorRate + " sshServers=" + sshServers;
+    }
+}
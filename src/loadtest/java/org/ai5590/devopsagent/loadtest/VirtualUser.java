@@ -0,0 +1,110 @@
+package org.ai5590.devopsagent.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+public class VirtualUser {
+    private final String baseUrl;
+    private final String login;
+    private final String password;
+    private final LatencyRecorder recorder;
+    private final CookieManager cookies = new CookieManager();
+    private final HttpClient client;
+    private final Deque<String> pendingActionIds = new ArrayDeque<>();
+    private long lastMessageId;
+    private int sent;
+
+    public VirtualUser(String baseUrl, String login, String password, LatencyRecorder recorder) {
+        this.baseUrl = baseUrl;
+        this.login = login;
+        this.password = password;
+        this.recorder = recorder;
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(cookies)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public boolean login() throws IOException, InterruptedException {
+        send("GET /login", HttpRequest.newBuilder(URI.create(baseUrl + "/login")).GET());
+        String form = "username=" + enc(login) + "&password=" + enc(password) + "&_csrf=" + enc(csrfToken());
+        HttpResponse<String> resp = send("POST /login", HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)));
+        String location = resp.headers().firstValue("Location").orElse("");
+        return resp.statusCode() == 302 && !location.contains("error");
+    }
+
+    public void sendMessage() throws IOException, InterruptedException {
+        String body = StubHttp.MAPPER.writeValueAsString(Map.of("text", "Проверь нагрузку на сервере, шаг " + (++sent)));
+        HttpResponse<String> resp = send("POST /api/chat/send", api("/api/chat/send")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+        if (resp.statusCode() != 200) return;
+        JsonNode data = StubHttp.MAPPER.readTree(resp.body());
+        pendingActionIds.clear();
+        if (data.path("hasActions").asBoolean(false)) {
+            JsonNode actions = StubHttp.MAPPER.readTree(data.path("actionsJson").asText("{}")).path("actions");
+            for (JsonNode a : actions) pendingActionIds.add(a.path("id").asText());
+        }
+    }
+
+    public void pollState() throws IOException, InterruptedException {
+        HttpResponse<String> resp = send("GET /api/chat/state", api("/api/chat/state?since=" + lastMessageId).GET());
+        if (resp.statusCode() != 200) return;
+        for (JsonNode m : StubHttp.MAPPER.readTree(resp.body()).path("messages")) {
+            lastMessageId = Math.max(lastMessageId, m.path("id").asLong());
+        }
+    }
+
+    public boolean executeAction() throws IOException, InterruptedException {
+        String id = pendingActionIds.poll();
+        if (id == null) return false;
+        send("POST /api/chat/action/{id}", api("/api/chat/action/" + enc(id)).POST(HttpRequest.BodyPublishers.noBody()));
+        return true;
+    }
+
+    private HttpRequest.Builder api(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .header("X-XSRF-TOKEN", csrfToken())
+                .timeout(Duration.ofSeconds(300));
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> resp = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            int status = resp.statusCode();
+            recorder.record(endpoint, System.nanoTime() - start, status < 400);
+            return resp;
+        } catch (IOException e) {
+            recorder.record(endpoint, System.nanoTime() - start, false);
+            throw e;
+        }
+    }
+
+    private String csrfToken() {
+        for (HttpCookie cookie : cookies.getCookieStore().getCookies()) {
+            if ("XSRF-TOKEN".equals(cookie.getName())) return cookie.getValue();
+        }
+        return "";
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+}
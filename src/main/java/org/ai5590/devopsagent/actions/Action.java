@@ -0,0 +1,25 @@
+package org.ai5590.devopsagent.actions;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Map;
+
+// params stay JSON nodes: the LLM sometimes sends an object or an array (a list of files), which must not make the
+// whole actions block unparseable.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Action(String id, String api, String title, String description, String risk, Map<String, JsonNode> params,
+                     @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY) List<String> dependsOn) {
+    // Scalars as text, objects and arrays as their JSON, a missing or null param as null.
+    public String param(String name) {
+        JsonNode value = params != null ? params.get(name) : null;
+        if (value == null || value.isNull() || value.isMissingNode()) return null;
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+
+    public List<String> dependencies() {
+        return dependsOn != null ? dependsOn : List.of();
+    }
+}
@@ -0,0 +1,50 @@
+package org.ai5590.devopsagent.actions;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.ai5590.devopsagent.json.Json;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ActionBatch(List<Action> actions, @JsonIgnore Map<String, Action> byId) {
+    private static final ObjectReader READER = Json.MAPPER.readerFor(ActionBatch.class);
+    private static final ObjectReader LIST_READER = Json.MAPPER.readerForListOf(Action.class);
+
+    @JsonCreator
+    public static ActionBatch of(@JsonProperty("actions") List<Action> actions) {
+        List<Action> list = actions != null ? List.copyOf(actions) : List.of();
+        Map<String, Action> index = new HashMap<>();
+        for (Action a : list) {
+            if (a.id() != null) index.putIfAbsent(a.id(), a);
+        }
+        return new ActionBatch(list, index);
+    }
+
+    public static ActionBatch parse(String json) throws IOException {
+        if (json.stripLeading().startsWith("[")) return of(LIST_READER.readValue(json));
+        return READER.readValue(json);
+    }
+
+    public Action find(String actionId) {
+        return byId.get(actionId);
+    }
+
+    // The first dependency of the action that is not done, or null when it may run now.
+    public String unmetDependency(Action action, Map<String, String> states) {
+        for (String dep : action.dependencies()) {
+            if (!PendingActionStore.ActionState.DONE.jsonName().equals(states.get(dep))) return dep;
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+}
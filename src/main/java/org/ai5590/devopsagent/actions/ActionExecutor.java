@@ -1,40 +1,46 @@
 package org.ai5590.devopsagent.actions;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.ai5590.devopsagent.audit.AuditService;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.sshagent.ServerInventory;
+import org.ai5590.devopsagent.sshagent.ServerRecord;
 import org.ai5590.devopsagent.sshagent.SshAgentService;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
 public class ActionExecutor {
     private static final Logger log = LoggerFactory.getLogger(ActionExecutor.class);
     private final SshAgentService sshAgentService;
+    private final ServerInventory serverInventory;
+    private final ConfigLoader configLoader;
     private final AuditService auditService;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final Tracing tracing;
 
-    public ActionExecutor(SshAgentService sshAgentService, AuditService auditService) {
+    public ActionExecutor(SshAgentService sshAgentService, ServerInventory serverInventory, ConfigLoader configLoader,
+                          AuditService auditService, Tracing tracing) {
         this.sshAgentService = sshAgentService;
+        this.serverInventory = serverInventory;
+        this.configLoader = configLoader;
         this.auditService = auditService;
+        this.tracing = tracing;
     }
 
-    public Map<String, Object> executeAction(String userLogin, String actionsJson, String actionId) {
+    public Map<String, Object> executeAction(String userLogin, ActionBatch batch, String actionId) {
+        return tracing.call("ActionExecutor.executeAction", () -> doExecuteAction(userLogin, batch, actionId));
+    }
+
+    private Map<String, Object> doExecuteAction(String userLogin, ActionBatch batch, String actionId) {
         Map<String, Object> result = new LinkedHashMap<>();
         try {
-            JsonNode root = mapper.readTree(actionsJson);
-            JsonNode actions = root.path("actions");
-            JsonNode action = null;
-            for (JsonNode a : actions) {
-                if (actionId.equals(a.path("id").asText())) {
-                    action = a;
-                    break;
-                }
-            }
+            Action action = batch.find(actionId);
 
             if (action == null) {
                 result.put("success", false);
@@ -42,7 +48,9 @@ public class ActionExecutor {
                 return result;
             }
 
-            String api = action.path("api").asText();
+            String api = action.api() != null ? action.api() : "";
+            Tracing.tag("action.id", actionId);
+            Tracing.tag("action.api", api);
             long startTime = System.currentTimeMillis();
             String output;
             String server = null;
@@ -50,10 +58,32 @@ public class ActionExecutor {
 
             if ("ssh.list_servers".equals(api)) {
                 output = sshAgentService.listServers();
+                serverInventory.update(output);
             } else if ("ssh.execute".equals(api)) {
-                server = action.path("params").path("server").asText();
-                command = action.path("params").path("command").asText();
+                server = valueOrEmpty(action.param("server"));
+                command = valueOrEmpty(action.param("command"));
                 output = sshAgentService.execute(server, command);
+            } else if ("ssh.execute_many".equals(api)) {
+                server = valueOrEmpty(action.param("target"));
+                command = valueOrEmpty(action.param("command"));
+                AppConfig.InventorySettings settings = configLoader.getConfig().getInventory();
+                List<String> targets = serverInventory.require().select(server).stream().map(ServerRecord::name).toList();
+                if (targets.isEmpty() || targets.size() > settings.getMaxTargets()) {
+                    result.put("success", false);
+                    result.put("error", targets.isEmpty() ? "No servers match target: " + server
+                            : "Target " + server + " matches " + targets.size() + " servers, the limit is "
+                            + settings.getMaxTargets() + "; narrow the target");
+                    return result;
+                }
+                Tracing.tag("action.targets", targets.size());
+                StringBuilder combined = new StringBuilder();
+                for (SshAgentService.ExecResult r : sshAgentService.executeMany(targets, command, settings.getParallelism())) {
+                    // One audit row per host, as if each had been a separate ssh.execute.
+                    auditService.logAction(userLogin, api, r.server(), command, r.elapsedMillis(), r.output());
+                    if (combined.length() > 0) combined.append("\n\n");
+                    combined.append("=== ").append(r.server()).append(" ===\n").append(r.output().strip());
+                }
+                output = combined.toString();
             } else {
                 result.put("success", false);
                 result.put("error", "Unknown API: " + api);
@@ -61,7 +91,9 @@ public class ActionExecutor {
             }
 
             long duration = System.currentTimeMillis() - startTime;
-            auditService.logAction(userLogin, api, server, command, duration, output);
+            if (!"ssh.execute_many".equals(api)) {
+                auditService.logAction(userLogin, api, server, command, duration, output);
+            }
 
             result.put("success", true);
             result.put("output", output);
@@ -72,9 +104,14 @@ public class ActionExecutor {
 
         } catch (Exception e) {
             log.error("Action execution failed: {}", e.getMessage(), e);
+            Tracing.markError(e.getMessage());
             result.put("success", false);
             result.put("error", e.getMessage());
         }
         return result;
     }
+
+    private static String valueOrEmpty(String value) {
+        return value != null ? value : "";
+    }
 }
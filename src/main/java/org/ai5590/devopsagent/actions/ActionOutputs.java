@@ -0,0 +1,71 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.OutputBlobRepository;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class ActionOutputs {
+    private final OutputBlobRepository blobRepository;
+    private final ConfigLoader configLoader;
+
+    // text goes into the chat history and therefore into every LLM request; ref is null when it is the full output.
+    public record Stored(String text, String hash, long size) {
+        public Map<String, Object> ref() {
+            if (hash == null) return null;
+            Map<String, Object> ref = new LinkedHashMap<>();
+            ref.put("hash", hash);
+            ref.put("size", size);
+            return ref;
+        }
+    }
+
+    public ActionOutputs(OutputBlobRepository blobRepository, ConfigLoader configLoader) {
+        this.blobRepository = blobRepository;
+        this.configLoader = configLoader;
+    }
+
+    public Stored store(String userLogin, String output) {
+        if (output == null) output = "";
+        AppConfig.OutputSettings settings = configLoader.getConfig().getOutputs();
+        byte[] raw = output.getBytes(StandardCharsets.UTF_8);
+        if (raw.length <= settings.getInlineLimitBytes()) {
+            return new Stored(output, null, raw.length);
+        }
+        String hash = blobRepository.store(userLogin, raw);
+        // If the blob could not be written the excerpt is still stored, just without a link to the full body.
+        return new Stored(excerpt(output, settings.getPreviewHeadChars(), settings.getPreviewTailChars()), hash, raw.length);
+    }
+
+    public String toMessage(String api, Stored stored) {
+        StringBuilder sb = new StringBuilder("Action result (").append(api).append("):\n```\n")
+                .append(stored.text()).append("\n```");
+        if (stored.hash() != null) {
+            sb.append("\n[output:").append(stored.hash()).append(' ').append(stored.size()).append(" bytes]");
+        }
+        return sb.toString();
+    }
+
+    public static boolean isReference(String hash) {
+        return hash != null && hash.matches("[0-9a-f]{64}");
+    }
+
+    static String excerpt(String output, int headChars, int tailChars) {
+        if (output.length() <= headChars + tailChars) return output;
+        String head = output.substring(0, cutPoint(output, headChars));
+        String tail = output.substring(cutPoint(output, output.length() - tailChars));
+        int omitted = output.length() - head.length() - tail.length();
+        return head + "\n... [" + omitted + " characters omitted] ...\n" + tail;
+    }
+
+    // Avoids splitting a surrogate pair, which would leave an unpaired half in the stored message.
+    private static int cutPoint(String s, int index) {
+        if (index > 0 && index < s.length() && Character.isLowSurrogate(s.charAt(index))) return index - 1;
+        return index;
+    }
+}
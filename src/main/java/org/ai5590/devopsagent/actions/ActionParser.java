@@ -1,7 +1,5 @@
 package org.ai5590.devopsagent.actions;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -11,30 +9,32 @@ public class ActionParser {
     private static final Logger log = LoggerFactory.getLogger(ActionParser.class);
     private static final String START_MARKER = "---ACTIONS_JSON_START---";
     private static final String END_MARKER = "---ACTIONS_JSON_END---";
-    private final ObjectMapper mapper = new ObjectMapper();
 
     public static class ParseResult {
         private final String textContent;
         private final String actionsJson;
+        private final ActionBatch actions;
 
-        public ParseResult(String textContent, String actionsJson) {
+        public ParseResult(String textContent, String actionsJson, ActionBatch actions) {
             this.textContent = textContent;
             this.actionsJson = actionsJson;
+            this.actions = actions;
         }
 
         public String getTextContent() { return textContent; }
         public String getActionsJson() { return actionsJson; }
+        public ActionBatch getActions() { return actions; }
         public boolean hasActions() { return actionsJson != null && !actionsJson.isBlank(); }
     }
 
     public ParseResult parse(String aiResponse) {
-        if (aiResponse == null) return new ParseResult("", null);
+        if (aiResponse == null) return new ParseResult("", null, null);
 
         int startIdx = aiResponse.indexOf(START_MARKER);
         int endIdx = aiResponse.indexOf(END_MARKER);
 
         if (startIdx == -1 || endIdx == -1 || endIdx <= startIdx) {
-            return new ParseResult(aiResponse, null);
+            return new ParseResult(aiResponse, null, null);
         }
 
         String textBefore = aiResponse.substring(0, startIdx).trim();
@@ -44,19 +44,10 @@ public class ActionParser {
         String json = aiResponse.substring(startIdx + START_MARKER.length(), endIdx).trim();
 
         try {
-            mapper.readTree(json);
-            return new ParseResult(text, json);
+            return new ParseResult(text, json, ActionBatch.parse(json));
         } catch (Exception e) {
             log.warn("Failed to parse actions JSON: {}", e.getMessage());
-            return new ParseResult(aiResponse, null);
-        }
-    }
-
-    public JsonNode getActionsNode(String actionsJson) {
-        try {
-            return mapper.readTree(actionsJson);
-        } catch (Exception e) {
-            return null;
+            return new ParseResult(aiResponse, null, null);
         }
     }
 }
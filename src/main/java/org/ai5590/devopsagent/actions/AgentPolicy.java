@@ -0,0 +1,85 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Decides which proposed actions the agent loop may run without a human click.
+@Component
+public class AgentPolicy {
+    // Command chaining, redirection and substitution could hide a write behind an allowed prefix. Plain pipes are
+    // allowed because every segment is checked on its own.
+    private static final Pattern UNSAFE_SHELL = Pattern.compile("[;&<>`\\n\\r]|\\$\\(|\\|\\|");
+    private static final Pattern SHORT_FLAGS = Pattern.compile("-[A-Za-z]+");
+
+    private final ConfigLoader configLoader;
+
+    public AgentPolicy(ConfigLoader configLoader) {
+        this.configLoader = configLoader;
+    }
+
+    // The loop only continues when every action qualifies; a mixed batch is left entirely to the human.
+    public boolean allowsAll(ActionBatch batch) {
+        if (batch == null || batch.isEmpty()) return false;
+        AppConfig.AgentSettings settings = configLoader.getConfig().getAgent();
+        for (Action a : batch.actions()) {
+            if (!allows(a, settings)) return false;
+        }
+        return true;
+    }
+
+    static boolean allows(Action a, AppConfig.AgentSettings settings) {
+        String api = a.api();
+        if (a.id() == null || api == null || !settings.getAutoApis().contains(api)) return false;
+        if (!"ssh.execute".equals(api) && !"ssh.execute_many".equals(api)) {
+            // Listing servers carries no command; the model often omits risk for it.
+            return a.risk() == null || "low".equalsIgnoreCase(a.risk());
+        }
+        return "low".equalsIgnoreCase(a.risk())
+                && isReadOnly(a.param("command"), settings.getReadOnlyCommands(), settings.getDeniedArguments());
+    }
+
+    static boolean isReadOnly(String command, List<String> prefixes, List<String> denied) {
+        if (command == null || command.isBlank() || UNSAFE_SHELL.matcher(command).find()) return false;
+        for (String segment : command.split("\\|")) {
+            // The shell removes quotes and backslashes, so '-f' and \-f reach the command as -f.
+            String s = segment.trim().replaceAll("[\"'\\\\]", "").replaceAll("\\s+", " ");
+            if (!startsWithAny(s, prefixes) || hasDeniedArgument(s, denied)) return false;
+        }
+        return true;
+    }
+
+    private static boolean startsWithAny(String command, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            String p = prefix.trim();
+            if (!p.isEmpty() && (command.equals(p) || command.startsWith(p + " "))) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasDeniedArgument(String command, List<String> denied) {
+        if (denied == null) return false;
+        String[] tokens = command.split(" ");
+        for (String entry : denied) {
+            String e = entry.trim();
+            int sep = e.lastIndexOf(' ');
+            if (sep <= 0 || !startsWithAny(command, List.of(e.substring(0, sep)))) continue;
+            String arg = e.substring(sep + 1);
+            for (int i = 1; i < tokens.length; i++) {
+                if (matches(arg, tokens[i])) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String arg, String token) {
+        if (arg.endsWith("*")) return token.startsWith(arg.substring(0, arg.length() - 1));
+        if (token.equals(arg)) return true;
+        // -f inside a group of short flags such as -fu or -nf
+        return arg.length() == 2 && arg.charAt(0) == '-' && SHORT_FLAGS.matcher(token).matches()
+                && token.indexOf(arg.charAt(1), 1) > 0;
+    }
+}
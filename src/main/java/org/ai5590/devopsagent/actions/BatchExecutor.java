@@ -0,0 +1,216 @@
+package org.ai5590.devopsagent.actions;
+
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import org.ai5590.devopsagent.db.MessageRepository;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs every pending action of a batch: independent ones concurrently, dependsOn in order. Results are reported
+// as they complete and recorded in history as one message.
+@Component
+public class BatchExecutor {
+    private static final Logger log = LoggerFactory.getLogger(BatchExecutor.class);
+    private static final int MAX_PARALLEL = 4;
+
+    private final ActionExecutor actionExecutor;
+    private final PendingActionStore pendingActionStore;
+    private final ActionOutputs actionOutputs;
+    private final MessageRepository messageRepository;
+    private final Tracing tracing;
+    private final ExecutorService pool;
+
+    private record Outcome(Action action, Map<String, Object> result, ActionOutputs.Stored stored) {
+    }
+
+    public BatchExecutor(ActionExecutor actionExecutor, PendingActionStore pendingActionStore,
+                         ActionOutputs actionOutputs, MessageRepository messageRepository, Tracing tracing) {
+        this.actionExecutor = actionExecutor;
+        this.pendingActionStore = pendingActionStore;
+        this.actionOutputs = actionOutputs;
+        this.messageRepository = messageRepository;
+        this.tracing = tracing;
+        AtomicInteger counter = new AtomicInteger();
+        // Threads mostly wait on the ssh-agent; each batch uses at most MAX_PARALLEL + 1 of them.
+        this.pool = Context.taskWrapping(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "action-batch-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    // onResult is called from a single thread, one result map per action, in completion order.
+    public CompletableFuture<Map<String, Object>> executeAll(String userLogin, ActionBatch batch,
+                                                             Consumer<Map<String, Object>> onResult) {
+        return CompletableFuture.supplyAsync(() -> tracing.call("BatchExecutor.executeAll", () -> {
+            Tracing.tag(Tracing.USER_ATTRIBUTE, userLogin);
+            return run(userLogin, batch, onResult);
+        }), pool);
+    }
+
+    private Map<String, Object> run(String userLogin, ActionBatch batch, Consumer<Map<String, Object>> onResult) {
+        Map<String, String> states = pendingActionStore.getStates(userLogin);
+        Set<String> succeeded = new HashSet<>();
+        Set<String> failed = new HashSet<>();
+        Map<String, Outcome> outcomes = new HashMap<>();
+        List<Action> waiting = new ArrayList<>();
+        for (Action a : batch.actions()) {
+            if (a.id() == null) continue;
+            String state = states.get(a.id());
+            if (PendingActionStore.ActionState.DONE.jsonName().equals(state)) {
+                succeeded.add(a.id());
+            } else {
+                waiting.add(a);
+            }
+        }
+        Tracing.tag("batch.size", waiting.size());
+
+        CompletionService<Outcome> completions = new ExecutorCompletionService<>(pool);
+        int running = 0;
+        while (!waiting.isEmpty() || running > 0) {
+            // A skip can block actions earlier in the list, so scan again until nothing more is skipped.
+            boolean skippedAny;
+            do {
+                skippedAny = false;
+                for (Iterator<Action> it = waiting.iterator(); it.hasNext() && running < MAX_PARALLEL; ) {
+                    Action a = it.next();
+                    String blocker = blocker(a, batch, succeeded, failed);
+                    if (blocker == null) {
+                        it.remove();
+                        completions.submit(() -> runOne(userLogin, batch, a));
+                        running++;
+                    } else if (!blocker.isEmpty()) {
+                        it.remove();
+                        report(skipped(a, blocker), outcomes, failed, succeeded, onResult);
+                        skippedAny = true;
+                    }
+                }
+            } while (skippedAny);
+            if (running == 0) {
+                // Nothing runs and nothing can start: whatever is left waits on itself.
+                for (Action a : waiting) {
+                    report(skipped(a, "dependency cycle"), outcomes, failed, succeeded, onResult);
+                }
+                waiting.clear();
+                break;
+            }
+            try {
+                report(completions.take().get(), outcomes, failed, succeeded, onResult);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // runOne catches everything itself, so this is a bug rather than a failed action.
+                log.error("Batch action crashed: {}", e.getCause().getMessage(), e.getCause());
+            }
+            running--;
+        }
+
+        List<Outcome> ordered = new ArrayList<>();
+        for (Action a : batch.actions()) {
+            Outcome o = a.id() != null ? outcomes.get(a.id()) : null;
+            if (o != null) ordered.add(o);
+        }
+        // A batch where nothing ran (e.g. a second click while the first is running) leaves no trace in history.
+        if (ordered.stream().anyMatch(o -> !"skipped".equals(o.result().get("status")))) {
+            messageRepository.addMessage(userLogin, "assistant", toMessage(ordered)).join();
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("finished", true);
+        summary.put("done", ordered.stream().filter(o -> "done".equals(o.result().get("status"))).count());
+        summary.put("failed", ordered.stream().filter(o -> "failed".equals(o.result().get("status"))).count());
+        summary.put("skipped", ordered.stream().filter(o -> "skipped".equals(o.result().get("status"))).count());
+        return summary;
+    }
+
+    // null: may start now; "": wait for a running dependency; otherwise the reason it can never run.
+    private static String blocker(Action a, ActionBatch batch, Set<String> succeeded, Set<String> failed) {
+        for (String dep : a.dependencies()) {
+            if (dep.equals(a.id()) || batch.find(dep) == null) return "unknown dependency " + dep;
+            if (failed.contains(dep)) return "dependency " + dep + " did not succeed";
+        }
+        for (String dep : a.dependencies()) {
+            if (!succeeded.contains(dep)) return "";
+        }
+        return null;
+    }
+
+    private Outcome runOne(String userLogin, ActionBatch batch, Action a) {
+        if (!pendingActionStore.markRunning(userLogin, a.id())) {
+            return skipped(a, "already running");
+        }
+        Map<String, Object> result;
+        try {
+            result = actionExecutor.executeAction(userLogin, batch, a.id());
+        } catch (RuntimeException e) {
+            log.error("Batch action {} failed: {}", a.id(), e.getMessage(), e);
+            result = new LinkedHashMap<>();
+            result.put("success", false);
+            result.put("api", a.api());
+            result.put("error", e.getMessage());
+        }
+        result.put("id", a.id());
+        if (!Boolean.TRUE.equals(result.get("success"))) {
+            pendingActionStore.markPending(userLogin, a.id());
+            result.put("status", "failed");
+            return new Outcome(a, result, null);
+        }
+        pendingActionStore.markDone(userLogin, a.id());
+        ActionOutputs.Stored stored = actionOutputs.store(userLogin, (String) result.get("output"));
+        result.put("output", stored.text());
+        result.put("outputRef", stored.ref());
+        result.put("status", "done");
+        return new Outcome(a, result, stored);
+    }
+
+    private static Outcome skipped(Action a, String reason) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", a.id());
+        result.put("success", false);
+        result.put("status", "skipped");
+        result.put("api", a.api());
+        result.put("error", reason);
+        return new Outcome(a, result, null);
+    }
+
+    private static void report(Outcome o, Map<String, Outcome> outcomes, Set<String> failed, Set<String> succeeded,
+                               Consumer<Map<String, Object>> onResult) {
+        outcomes.put(o.action().id(), o);
+        if ("done".equals(o.result().get("status"))) succeeded.add(o.action().id());
+        else failed.add(o.action().id());
+        try {
+            onResult.accept(o.result());
+        } catch (RuntimeException e) {
+            // The client went away; the batch still finishes and is recorded in history.
+            log.debug("Batch result not delivered: {}", e.getMessage());
+        }
+    }
+
+    private String toMessage(List<Outcome> outcomes) {
+        StringBuilder sb = new StringBuilder("Action results (batch of ").append(outcomes.size()).append("):");
+        for (Outcome o : outcomes) {
+            String api = o.action().api() != null ? o.action().api() : "";
+            sb.append("\n\n[").append(o.action().id()).append("] ");
+            if (o.stored() != null) {
+                sb.append(actionOutputs.toMessage(api, o.stored()));
+            } else if ("skipped".equals(o.result().get("status"))) {
+                sb.append("Action skipped (").append(api).append("): ").append(o.result().get("error"));
+            } else {
+                sb.append("Action failed (").append(api).append("): ").append(o.result().get("error"));
+            }
+        }
+        return sb.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
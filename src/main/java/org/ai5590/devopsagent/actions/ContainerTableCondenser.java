@@ -0,0 +1,95 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.util.*;
+
+// docker ps [-a] / docker compose ps: name, image, status and ports per container, problems first. Columns are
+// cut at the header positions because COMMAND, CREATED and STATUS contain spaces.
+class ContainerTableCondenser implements OutputCondenser {
+    private static final List<String> PROBLEMS = List.of("unhealthy", "Restarting", "Exited", "Dead", "Created", "Paused");
+
+    private record Row(String name, String image, String status, String ports) {
+        boolean problem() {
+            for (String p : PROBLEMS) {
+                if (status.contains(p)) return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "docker-ps";
+    }
+
+    @Override
+    public boolean accepts(List<String> lines) {
+        String header = lines.get(0);
+        return (header.startsWith("CONTAINER ID") || header.startsWith("NAME "))
+                && header.contains("IMAGE") && header.contains("STATUS");
+    }
+
+    @Override
+    public List<String> condense(List<String> lines, AppConfig.OutputSettings settings) {
+        String header = lines.get(0);
+        List<Integer> starts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < header.length(); ) {
+            if (header.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            // Column titles are separated by at least two spaces; "CONTAINER ID" is one title.
+            int end = header.indexOf("  ", i);
+            if (end < 0) end = header.length();
+            starts.add(i);
+            names.add(header.substring(i, end).trim());
+            i = end;
+        }
+        int nameCol = names.indexOf("NAMES") >= 0 ? names.indexOf("NAMES") : names.indexOf("NAME");
+        int imageCol = names.indexOf("IMAGE");
+        int statusCol = names.indexOf("STATUS");
+        int portsCol = names.indexOf("PORTS");
+        if (nameCol < 0 || imageCol < 0 || statusCol < 0) return null;
+        List<Row> rows = new ArrayList<>();
+        List<String> unparsed = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            if (line.length() < starts.get(statusCol)) {
+                unparsed.add(line);
+                continue;
+            }
+            rows.add(new Row(cell(line, starts, nameCol), cell(line, starts, imageCol), cell(line, starts, statusCol),
+                    portsCol >= 0 ? ports(cell(line, starts, portsCol)) : ""));
+        }
+        if (rows.isEmpty()) return null;
+        List<Row> ordered = new ArrayList<>(rows.stream().filter(Row::problem).toList());
+        ordered.addAll(rows.stream().filter(r -> !r.problem()).toList());
+        int shown = Math.min(ordered.size(), Math.max(settings.getCondenseMaxRows(), (int) rows.stream().filter(Row::problem).count()));
+        List<String> out = new ArrayList<>();
+        out.add("NAME | IMAGE | STATUS | PORTS");
+        for (Row r : ordered.subList(0, shown)) {
+            out.add(r.name() + " | " + r.image() + " | " + r.status() + (r.ports().isEmpty() ? "" : " | " + r.ports()));
+        }
+        if (shown < ordered.size()) out.add("... " + (ordered.size() - shown) + " more containers, all running");
+        out.addAll(unparsed);
+        return out;
+    }
+
+    private static String cell(String line, List<Integer> starts, int col) {
+        int from = Math.min(starts.get(col), line.length());
+        int to = col + 1 < starts.size() ? Math.min(starts.get(col + 1), line.length()) : line.length();
+        return line.substring(from, to).trim();
+    }
+
+    // IPv4 and IPv6 bindings of the same port are listed twice; one is enough.
+    private static String ports(String ports) {
+        if (ports.isEmpty()) return ports;
+        Set<String> unique = new LinkedHashSet<>();
+        for (String p : ports.split(",\\s*")) {
+            unique.add(p.replaceFirst("^(0\\.0\\.0\\.0|\\[::\\]|:::):", ""));
+        }
+        return String.join(", ", unique);
+    }
+}
@@ -0,0 +1,86 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.util.*;
+
+// df / df -h: real filesystems by usage, fullest first. Memory filesystems are only counted unless nearly full;
+// overlays (they show the usage of the filesystem below) and loop-mounted images (always 100%) are only counted.
+class DiskUsageCondenser implements OutputCondenser {
+    private static final Set<String> MEMORY = Set.of("tmpfs", "devtmpfs", "shm", "udev", "none", "efivarfs");
+    private static final Set<String> MIRRORED = Set.of("overlay", "squashfs");
+    private static final int ALWAYS_SHOWN_PERCENT = 90;
+
+    private record Row(String filesystem, String size, String used, String avail, int usePercent, String mount) {
+        String hiddenAs() {
+            if (filesystem.startsWith("/dev/loop")) return "loop";
+            if (MIRRORED.contains(filesystem)) return filesystem;
+            if (MEMORY.contains(filesystem) && usePercent < ALWAYS_SHOWN_PERCENT) return filesystem;
+            return null;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "df";
+    }
+
+    @Override
+    public boolean accepts(List<String> lines) {
+        String header = lines.get(0);
+        return header.startsWith("Filesystem") && header.contains("Mounted on");
+    }
+
+    @Override
+    public List<String> condense(List<String> lines, AppConfig.OutputSettings settings) {
+        List<Row> rows = new ArrayList<>();
+        List<String> unparsed = new ArrayList<>();
+        String pending = null;
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            String[] cells = line.trim().split("\\s+", 6);
+            // A long device name is printed alone, its numbers on the next line.
+            if (cells.length == 1) {
+                pending = cells[0];
+                continue;
+            }
+            if (pending != null && cells.length == 5) {
+                cells = new String[]{pending, cells[0], cells[1], cells[2], cells[3], cells[4]};
+            }
+            pending = null;
+            if (cells.length < 6 || !cells[4].endsWith("%")) {
+                unparsed.add(line);
+                continue;
+            }
+            int use;
+            try {
+                use = Integer.parseInt(cells[4].substring(0, cells[4].length() - 1));
+            } catch (NumberFormatException e) {
+                use = -1;
+            }
+            rows.add(new Row(cells[0], cells[1], cells[2], cells[3], use, cells[5]));
+        }
+        if (rows.isEmpty()) return null;
+        rows.sort(Comparator.comparingInt(Row::usePercent).reversed());
+        List<String> out = new ArrayList<>();
+        out.add("Use% Used/Size Avail Mounted-on Filesystem");
+        Map<String, Integer> hidden = new TreeMap<>();
+        int shown = 0;
+        for (Row r : rows) {
+            String hiddenAs = r.hiddenAs();
+            if (hiddenAs != null || shown >= settings.getCondenseMaxRows()) {
+                hidden.merge(hiddenAs != null ? hiddenAs : "other", 1, Integer::sum);
+                continue;
+            }
+            out.add(r.usePercent() + "% " + r.used() + "/" + r.size() + " " + r.avail() + " " + r.mount() + " " + r.filesystem());
+            shown++;
+        }
+        if (!hidden.isEmpty()) {
+            StringBuilder sb = new StringBuilder("... not shown:");
+            hidden.forEach((fs, count) -> sb.append(' ').append(fs).append(" x").append(count));
+            out.add(sb.toString());
+        }
+        out.addAll(unparsed);
+        return out;
+    }
+}
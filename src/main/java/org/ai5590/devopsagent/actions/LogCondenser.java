@@ -0,0 +1,51 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+// journalctl, docker logs, tail of a log file: lines that differ only in timestamp, PID or numbers are printed once
+// with a count, in the order they first appeared.
+class LogCondenser implements OutputCondenser {
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "^(?:[A-Z][a-z]{2} [ \\d]\\d \\d\\d:\\d\\d:\\d\\d"                                  // syslog / journalctl
+            + "|\\d{4}[-/]\\d\\d[-/]\\d\\d[T ]\\d\\d:\\d\\d:\\d\\d(?:[.,]\\d+)?(?:Z|[+-]\\d\\d:?\\d\\d)?" // ISO, nginx
+            + "|\\[\\s*\\d+\\.\\d+\\])\\s*");                                                       // dmesg
+    private static final Pattern VOLATILE = Pattern.compile("0x[0-9a-fA-F]+|\\b[0-9a-fA-F]{8,}\\b|\\d+");
+    // Keeping less than this share of the lines means the output is not repetitive enough to be worth rewriting.
+    private static final double MIN_SAVING = 0.2;
+
+    @Override
+    public String name() {
+        return "log";
+    }
+
+    @Override
+    public boolean accepts(List<String> lines) {
+        if (lines.get(0).startsWith("-- Logs begin at") || lines.get(0).startsWith("-- Journal begins at")) return true;
+        int stamped = 0;
+        for (String line : lines) {
+            if (TIMESTAMP.matcher(line).find()) stamped++;
+        }
+        return stamped * 2 > lines.size();
+    }
+
+    @Override
+    public List<String> condense(List<String> lines, AppConfig.OutputSettings settings) {
+        Map<String, int[]> counts = new LinkedHashMap<>();
+        Map<String, String> first = new HashMap<>();
+        for (String line : lines) {
+            String key = VOLATILE.matcher(TIMESTAMP.matcher(line).replaceFirst("")).replaceAll("#");
+            counts.computeIfAbsent(key, k -> new int[1])[0]++;
+            first.putIfAbsent(key, line);
+        }
+        if (counts.size() > lines.size() * (1 - MIN_SAVING)) return null;
+        List<String> out = new ArrayList<>(counts.size());
+        for (Map.Entry<String, int[]> e : counts.entrySet()) {
+            int n = e.getValue()[0];
+            out.add(n > 1 ? first.get(e.getKey()) + " [x" + n + "]" : first.get(e.getKey()));
+        }
+        return out;
+    }
+}
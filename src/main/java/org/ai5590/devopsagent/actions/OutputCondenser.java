@@ -0,0 +1,16 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.util.List;
+
+// Shrinks one kind of command output for the model. Outputs are recognized by their own shape (table header, log
+// line prefixes): a history message carries the output, not the command that produced it.
+public interface OutputCondenser {
+    String name();
+
+    boolean accepts(List<String> lines);
+
+    // null when this output does not parse after all; the generic head/tail pass still applies.
+    List<String> condense(List<String> lines, AppConfig.OutputSettings settings);
+}
@@ -0,0 +1,152 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigChange;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Rewrites action results in the history sent to the LLM: a command-specific condenser if one recognizes the output,
+// then head/tail plus error lines if it is still long. Stored messages, the UI and the audit keep the full output.
+@Component
+public class OutputCondensers {
+    private static final Pattern RESULT_BLOCK = Pattern.compile("(Action result \\([^)\\n]*\\):\\n```\\n)(.*?)(\\n```)", Pattern.DOTALL);
+    // ssh.execute_many output: one block per server.
+    private static final Pattern SECTION = Pattern.compile("^=== .+ ===$");
+    private static final Pattern ERROR_LINE = Pattern.compile(
+            "(?i)\\b(error|fail(ed|ure)?|fatal|panic|crit(ical)?|denied|refused|exception|oom|killed|segfault|timed? ?out|unreachable|warn(ing)?)\\b");
+    // Stored messages never change, so each one is condensed once; the same history goes out on every turn.
+    private static final int MEMO_ENTRIES = 512;
+
+    private final ConfigLoader configLoader;
+    private final List<OutputCondenser> condensers = List.of(
+            new ProcessTableCondenser(), new DiskUsageCondenser(), new ContainerTableCondenser(), new LogCondenser());
+    private final Map<Long, String> memo = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MEMO_ENTRIES;
+        }
+    };
+
+    public OutputCondensers(ConfigLoader configLoader) {
+        this.configLoader = configLoader;
+        configLoader.addListener(this::onConfigChange);
+    }
+
+    private void onConfigChange(ConfigChange change) {
+        if (!change.changed("outputs")) return;
+        synchronized (memo) {
+            memo.clear();
+        }
+    }
+
+    public List<Message> forModel(List<Message> history) {
+        AppConfig.OutputSettings settings = configLoader.getConfig().getOutputs();
+        if (!settings.isCondenseEnabled()) return history;
+        List<Message> result = new ArrayList<>(history.size());
+        for (Message m : history) {
+            if (!"assistant".equals(m.role()) || m.content() == null || !m.content().contains("Action result (")) {
+                result.add(m);
+                continue;
+            }
+            String condensed;
+            synchronized (memo) {
+                condensed = m.id() > 0 ? memo.get(m.id()) : null;
+            }
+            if (condensed == null) {
+                condensed = condenseMessage(m.content(), settings);
+                if (m.id() > 0) {
+                    synchronized (memo) {
+                        memo.put(m.id(), condensed);
+                    }
+                }
+            }
+            result.add(condensed.equals(m.content()) ? m : new Message(m.id(), m.role(), condensed, m.createdAt()));
+        }
+        return result;
+    }
+
+    String condenseMessage(String content, AppConfig.OutputSettings settings) {
+        Matcher matcher = RESULT_BLOCK.matcher(content);
+        StringBuilder sb = new StringBuilder(content.length());
+        while (matcher.find()) {
+            String output = condense(matcher.group(2), settings);
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group(1) + output + matcher.group(3)));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    public String condense(String output, AppConfig.OutputSettings settings) {
+        List<String> lines = Arrays.asList(output.split("\n", -1));
+        StringBuilder sb = new StringBuilder(output.length());
+        List<String> section = new ArrayList<>();
+        for (String line : lines) {
+            if (SECTION.matcher(line).matches()) {
+                appendSection(sb, section, settings);
+                section.clear();
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(line);
+                continue;
+            }
+            section.add(line);
+        }
+        appendSection(sb, section, settings);
+        return sb.toString();
+    }
+
+    private void appendSection(StringBuilder sb, List<String> lines, AppConfig.OutputSettings settings) {
+        if (lines.isEmpty()) return;
+        if (sb.length() > 0) sb.append('\n');
+        int start = 0;
+        while (start < lines.size() && lines.get(start).isBlank()) start++;
+        List<String> body = lines.subList(start, lines.size());
+        String condensed = body.size() >= Math.max(1, settings.getCondenseMinLines()) ? condenseLines(body, settings) : null;
+        String original = String.join("\n", lines);
+        sb.append(condensed != null && condensed.length() < original.length() ? condensed : original);
+    }
+
+    private String condenseLines(List<String> lines, AppConfig.OutputSettings settings) {
+        String name = null;
+        List<String> body = lines;
+        for (OutputCondenser c : condensers) {
+            if (!c.accepts(lines)) continue;
+            List<String> condensed = c.condense(lines, settings);
+            if (condensed != null) {
+                body = condensed;
+                name = c.name();
+            }
+            break;
+        }
+        int keep = settings.getCondenseHeadLines() + settings.getCondenseTailLines() + settings.getCondenseMaxErrorLines();
+        if (body.size() > keep) {
+            body = headTailErrors(body, settings);
+            name = name == null ? "head/tail" : name + ", head/tail";
+        }
+        if (name == null) return null;
+        return "[condensed (" + name + "): " + lines.size() + " -> " + body.size()
+                + " lines; the user sees the full output]\n" + String.join("\n", body);
+    }
+
+    static List<String> headTailErrors(List<String> lines, AppConfig.OutputSettings settings) {
+        int head = Math.min(lines.size(), settings.getCondenseHeadLines());
+        int tailStart = Math.max(head, lines.size() - settings.getCondenseTailLines());
+        List<String> out = new ArrayList<>(lines.subList(0, head));
+        int errors = 0;
+        int last = head;
+        for (int i = head; i < tailStart && errors < settings.getCondenseMaxErrorLines(); i++) {
+            if (!ERROR_LINE.matcher(lines.get(i)).find()) continue;
+            if (i > last) out.add("[... " + (i - last) + " lines omitted ...]");
+            out.add(lines.get(i));
+            errors++;
+            last = i + 1;
+        }
+        if (tailStart > last) out.add("[... " + (tailStart - last) + " lines omitted ...]");
+        out.addAll(lines.subList(tailStart, lines.size()));
+        return out;
+    }
+}
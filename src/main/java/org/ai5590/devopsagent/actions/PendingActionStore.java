@@ -0,0 +1,452 @@
+package org.ai5590.devopsagent.actions;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.ActionLeaseRepository;
+import org.ai5590.devopsagent.db.DatabaseInitializer;
+import org.ai5590.devopsagent.db.PendingActionsRepository;
+import org.ai5590.devopsagent.db.StorageBackend;
+import org.ai5590.devopsagent.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Component
+public class PendingActionStore {
+    private static final Logger log = LoggerFactory.getLogger(PendingActionStore.class);
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final ObjectReader STATES_READER = Json.MAPPER.readerForMapOf(String.class);
+    private static final ObjectWriter STATES_WRITER = Json.MAPPER.writer();
+    private static final int USER_LOCKS = 64;
+    // Users whose actions have been written and not looked at for this long are dropped from memory.
+    private static final long IDLE_EVICT_MS = TimeUnit.MINUTES.toMillis(10);
+
+    public enum ActionState {
+        PENDING, RUNNING, DONE;
+
+        public String jsonName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final PendingActionsRepository repository;
+    private final ActionLeaseRepository leases;
+    private final StorageBackend backend;
+    private final Duration leaseDuration;
+    // Leases of actions running on this node, by action, to the lease id claimed; renewed until the action finishes.
+    private final Map<HeldLease, String> held = new ConcurrentHashMap<>();
+    // Loading and writing a user's row hold the user's lock, so an older snapshot of the states is never written after
+    // a newer one, and a row is never read back while a write of it is in flight.
+    private final Object[] userLocks = new Object[USER_LOCKS];
+    // Versions are unique across users and reloads; the flusher compares them with the version last written.
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private final Map<String, UserActions> users = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pending-actions-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PendingActionStore(PendingActionsRepository repository, ActionLeaseRepository leases,
+                              DatabaseInitializer db, ConfigLoader configLoader) {
+        this.repository = repository;
+        this.leases = leases;
+        this.backend = db.backend();
+        this.leaseDuration = Duration.ofSeconds(configLoader.getConfig().getCluster().getActionLeaseSeconds());
+        for (int i = 0; i < userLocks.length; i++) userLocks[i] = new Object();
+        backend.addChangeListener(userLogin -> {
+            if (userLogin == null) users.keySet().forEach(this::detach);
+            else detach(userLogin);
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::evictSafely, IDLE_EVICT_MS, IDLE_EVICT_MS / 10, TimeUnit.MILLISECONDS);
+        if (backend.isShared()) {
+            long renewMs = Math.max(1000, leaseDuration.toMillis() / 3);
+            flusher.scheduleWithFixedDelay(this::renewLeases, renewMs, renewMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private record HeldLease(String userLogin, String actionId) {
+    }
+
+    private static final class UserActions {
+        String json;
+        ActionBatch batch;
+        final Map<String, ActionState> states = new LinkedHashMap<>();
+        long version = VERSIONS.incrementAndGet();
+        long persistedVersion = version;
+        String tag;
+        long tagVersion;
+        String persistedJson;
+        // Set once the entry is dropped from the map: changes go to the entry loaded in its place.
+        volatile boolean detached;
+        volatile long lastUsed = System.currentTimeMillis();
+    }
+
+    public ActionBatch getBatch(String userLogin) {
+        UserActions u = load(userLogin);
+        synchronized (u) {
+            return u.batch;
+        }
+    }
+
+    public String getActionsJson(String userLogin) {
+        UserActions u = load(userLogin);
+        synchronized (u) {
+            return u.json;
+        }
+    }
+
+    // A digest of the actions and their states: every node, restarted ones included, gives the same tag for the same
+    // content, which the per-process version cannot. Computed once per change.
+    public String getStateTag(String userLogin) {
+        UserActions u = load(userLogin);
+        synchronized (u) {
+            if (u.tag == null || u.tagVersion != u.version) {
+                u.tag = digest(u.json, u.states);
+                u.tagVersion = u.version;
+            }
+            return u.tag;
+        }
+    }
+
+    private static String digest(String json, Map<String, ActionState> states) {
+        if (json == null) return "0";
+        MessageDigest md = sha256();
+        md.update(json.getBytes(StandardCharsets.UTF_8));
+        states.forEach((id, state) -> md.update(("\n" + id + '=' + state.jsonName()).getBytes(StandardCharsets.UTF_8)));
+        return HexFormat.of().formatHex(md.digest(), 0, 8);
+    }
+
+    public Map<String, String> getStates(String userLogin) {
+        UserActions u = load(userLogin);
+        synchronized (u) {
+            Map<String, String> result = new LinkedHashMap<>();
+            u.states.forEach((id, state) -> result.put(id, state.jsonName()));
+            return result;
+        }
+    }
+
+    public void replace(String userLogin, String actionsJson, ActionBatch batch) {
+        boolean changed = update(userLogin, u -> {
+            if (Objects.equals(u.json, actionsJson)) {
+                if (!u.states.containsValue(ActionState.DONE)) return false;
+                u.states.replaceAll((id, state) -> ActionState.PENDING);
+                return true;
+            }
+            u.json = actionsJson;
+            u.batch = batch;
+            u.states.clear();
+            for (Action a : batch.actions()) {
+                if (a.id() != null) u.states.putIfAbsent(a.id(), ActionState.PENDING);
+            }
+            return true;
+        });
+        if (changed && backend.isShared()) leases.clearDone(userLogin);
+    }
+
+    public void clear(String userLogin) {
+        boolean changed = update(userLogin, u -> {
+            if (u.json == null) return false;
+            u.json = null;
+            u.batch = null;
+            u.states.clear();
+            return true;
+        });
+        if (changed && backend.isShared()) leases.clearDone(userLogin);
+    }
+
+    // Returns false when the action is unknown, already running or already done, so neither a double click nor a
+    // repeated POST executes it twice. With a shared database the lease decides across nodes: it is renewed while the
+    // action runs, so an expired lease means the node running it went away and RUNNING may be taken over. The lease
+    // id carries the batch, because the model reuses action ids, and a finished action keeps its lease marked done.
+    public boolean markRunning(String userLogin, String actionId) {
+        if (!backend.isShared()) return transition(userLogin, actionId, ActionState.RUNNING, EnumSet.of(ActionState.PENDING));
+        String json = getActionsJson(userLogin);
+        if (json == null) return false;
+        String leaseId = batchKey(json) + ':' + actionId;
+        // The cache may not have seen another node's change yet (its NOTIFY is still on the way), so the row is read
+        // again whether the claim succeeds or not: a refusal then reports the state the other node left.
+        boolean claimed = leases.claim(userLogin, leaseId, leaseDuration);
+        boolean reloaded = reload(userLogin);
+        if (!claimed) return false;
+        if (!reloaded || !json.equals(getActionsJson(userLogin))
+                || !transition(userLogin, actionId, ActionState.RUNNING, EnumSet.of(ActionState.PENDING, ActionState.RUNNING))) {
+            leases.release(userLogin, leaseId);
+            return false;
+        }
+        held.put(new HeldLease(userLogin, actionId), leaseId);
+        return true;
+    }
+
+    public void markDone(String userLogin, String actionId) {
+        if (backend.isShared()) {
+            String leaseId = held.remove(new HeldLease(userLogin, actionId));
+            if (leaseId != null) leases.complete(userLogin, leaseId);
+        }
+        transition(userLogin, actionId, ActionState.DONE, EnumSet.of(ActionState.PENDING, ActionState.RUNNING));
+    }
+
+    public void markPending(String userLogin, String actionId) {
+        transition(userLogin, actionId, ActionState.PENDING, EnumSet.of(ActionState.RUNNING, ActionState.DONE));
+        if (backend.isShared()) {
+            String leaseId = held.remove(new HeldLease(userLogin, actionId));
+            if (leaseId != null) leases.release(userLogin, leaseId);
+        }
+    }
+
+    private void renewLeases() {
+        held.forEach((lease, leaseId) -> {
+            try {
+                if (!leases.renew(lease.userLogin(), leaseId, leaseDuration) && held.containsKey(lease)) {
+                    log.warn("Could not renew the lease of action {} for {}", lease.actionId(), lease.userLogin());
+                }
+            } catch (RuntimeException e) {
+                log.error("Lease renewal failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    private boolean transition(String userLogin, String actionId, ActionState next, Set<ActionState> from) {
+        return update(userLogin, u -> {
+            ActionState current = u.states.get(actionId);
+            if (current == null || !from.contains(current)) return false;
+            u.states.put(actionId, next);
+            return true;
+        });
+    }
+
+    // Applies a change to the user's current entry. An entry detached in the meantime (changed on another node) is
+    // not modified, since nobody would read or write it any more: the change is retried on the entry loaded instead.
+    private boolean update(String userLogin, Predicate<UserActions> change) {
+        while (true) {
+            UserActions u = load(userLogin);
+            synchronized (u) {
+                if (u.detached) continue;
+                if (!change.test(u)) return false;
+                u.version = VERSIONS.incrementAndGet();
+            }
+            markDirty(userLogin, u);
+            return true;
+        }
+    }
+
+    // With a shared database other nodes read pending actions directly, so changes are written through and announced.
+    private void markDirty(String userLogin, UserActions u) {
+        if (!backend.isShared()) {
+            dirty.add(userLogin);
+            return;
+        }
+        if (flushUser(userLogin, u)) backend.publishChange(userLogin);
+    }
+
+    private Object userLock(String userLogin) {
+        return userLocks[Math.floorMod(userLogin.hashCode(), userLocks.length)];
+    }
+
+    // The row is read under the user's lock rather than in computeIfAbsent, which would hold the map's bin lock (and
+    // block unrelated users) during the query.
+    private UserActions load(String userLogin) {
+        UserActions cached = users.get(userLogin);
+        if (cached != null && !cached.detached) {
+            cached.lastUsed = System.currentTimeMillis();
+            return cached;
+        }
+        synchronized (userLock(userLogin)) {
+            cached = users.get(userLogin);
+            if (cached != null && !cached.detached) return cached;
+            UserActions loaded = read(userLogin);
+            users.put(userLogin, loaded);
+            return loaded;
+        }
+    }
+
+    private void detach(String userLogin) {
+        UserActions u = users.remove(userLogin);
+        if (u == null) return;
+        synchronized (u) {
+            u.detached = true;
+        }
+    }
+
+    // Detaching first stops further changes to the cached entry; writing it out before the read keeps a change made
+    // just before from being lost. When that write fails the entry stays, and false tells the caller the row is stale.
+    private boolean reload(String userLogin) {
+        synchronized (userLock(userLogin)) {
+            UserActions u = users.get(userLogin);
+            if (u == null) return true;
+            detach(userLogin);
+            if (flushUser(userLogin, u)) return true;
+            synchronized (u) {
+                u.detached = false;
+            }
+            users.put(userLogin, u);
+            return false;
+        }
+    }
+
+    private void evictSafely() {
+        try {
+            evictIdle(IDLE_EVICT_MS);
+        } catch (RuntimeException e) {
+            log.error("Pending actions eviction failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // Only entries whose changes are in the database go, and none with an action running here: read back on a single
+    // node, RUNNING would become PENDING. The user's lock keeps a load or flush from overlapping.
+    int evictIdle(long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (Map.Entry<String, UserActions> e : users.entrySet()) {
+            UserActions u = e.getValue();
+            if (u.lastUsed > cutoff) continue;
+            synchronized (userLock(e.getKey())) {
+                synchronized (u) {
+                    if (u.lastUsed > cutoff || u.version != u.persistedVersion || u.states.containsValue(ActionState.RUNNING)) {
+                        continue;
+                    }
+                    u.detached = true;
+                }
+                if (users.remove(e.getKey(), u)) evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private UserActions read(String login) {
+        UserActions u = new UserActions();
+        PendingActionsRepository.PendingActionsRow row = repository.getPendingActions(login);
+        if (row == null) return u;
+        try {
+            u.batch = ActionBatch.parse(row.actionsJson());
+            u.json = row.actionsJson();
+            u.persistedJson = row.actionsJson();
+            for (Action a : u.batch.actions()) {
+                if (a.id() != null) u.states.putIfAbsent(a.id(), ActionState.PENDING);
+            }
+            if (row.actionStatesJson() != null) {
+                Map<String, String> saved = STATES_READER.readValue(row.actionStatesJson());
+                // On a single node a RUNNING state left over from a previous process never finished, so it is
+                // offered again; with a shared database another node may still be running it under its lease.
+                saved.forEach((id, state) -> {
+                    if (!u.states.containsKey(id)) return;
+                    if (ActionState.DONE.jsonName().equals(state)) {
+                        u.states.put(id, ActionState.DONE);
+                    } else if (backend.isShared() && ActionState.RUNNING.jsonName().equals(state)) {
+                        u.states.put(id, ActionState.RUNNING);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            log.error("Error parsing pending actions for {}: {}", login, e.getMessage());
+        }
+        return u;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Pending actions flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void flush() {
+        // A copy, so that a user put back after a failed write waits for the next round.
+        for (String userLogin : new ArrayList<>(dirty)) {
+            dirty.remove(userLogin);
+            UserActions u = users.get(userLogin);
+            if (u != null && flushUser(userLogin, u) && backend.isShared()) backend.publishChange(userLogin);
+        }
+    }
+
+    // Returns false when the write failed: the entry keeps its unwritten version and goes back on the dirty list, so
+    // the next flush tries again.
+    private boolean flushUser(String userLogin, UserActions u) {
+        synchronized (userLock(userLogin)) {
+            String json;
+            String statesJson;
+            boolean jsonChanged;
+            long version;
+            synchronized (u) {
+                if (u.version == u.persistedVersion) return true;
+                json = u.json;
+                jsonChanged = !Objects.equals(json, u.persistedJson);
+                statesJson = json != null ? writeStates(u.states) : null;
+                version = u.version;
+            }
+
+            boolean written;
+            if (json == null) {
+                written = repository.clearPendingActions(userLogin);
+            } else if (jsonChanged) {
+                written = repository.savePendingActions(userLogin, json, statesJson);
+            } else {
+                written = repository.updateActionStates(userLogin, json, statesJson);
+            }
+            if (!written) {
+                dirty.add(userLogin);
+                return false;
+            }
+
+            synchronized (u) {
+                u.persistedVersion = version;
+                u.persistedJson = json;
+            }
+            return true;
+        }
+    }
+
+    private static String batchKey(String json) {
+        return HexFormat.of().formatHex(sha256().digest(json.getBytes(StandardCharsets.UTF_8)), 0, 6);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String writeStates(Map<String, ActionState> states) {
+        Map<String, String> names = new LinkedHashMap<>();
+        states.forEach((id, state) -> names.put(id, state.jsonName()));
+        try {
+            return STATES_WRITER.writeValueAsString(names);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!dirty.isEmpty()) log.warn("Pending actions of {} users could not be written before shutdown", dirty.size());
+        held.clear();
+        if (backend.isShared()) leases.releaseAll();
+    }
+}
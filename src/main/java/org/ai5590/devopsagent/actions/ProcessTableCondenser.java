@@ -0,0 +1,114 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.util.*;
+
+// ps aux / ps -ef / ps -eo ...: the busiest processes stay as rows (PID included, the model may need it), the rest
+// are counted per program, kernel threads as one group.
+class ProcessTableCondenser implements OutputCondenser {
+    private static final Set<String> KEPT_COLUMNS = Set.of("USER", "UID", "PID", "PPID", "%CPU", "%MEM", "RSS", "STAT");
+    private static final int MAX_COMMAND_CHARS = 120;
+
+    private record Row(String[] cells, double cpu, double mem, String program) {
+    }
+
+    @Override
+    public String name() {
+        return "ps";
+    }
+
+    @Override
+    public boolean accepts(List<String> lines) {
+        String header = lines.get(0);
+        return header.contains("PID") && (header.trim().endsWith("COMMAND") || header.trim().endsWith("CMD"));
+    }
+
+    @Override
+    public List<String> condense(List<String> lines, AppConfig.OutputSettings settings) {
+        String[] header = lines.get(0).trim().split("\\s+");
+        int cpuCol = indexOf(header, "%CPU");
+        int memCol = indexOf(header, "%MEM");
+        List<Row> rows = new ArrayList<>();
+        List<String> unparsed = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            // The command is the last column and may contain spaces.
+            String[] cells = line.trim().split("\\s+", header.length);
+            if (cells.length < header.length) {
+                unparsed.add(line);
+                continue;
+            }
+            rows.add(new Row(cells, number(cells, cpuCol), number(cells, memCol), program(cells[header.length - 1])));
+        }
+        if (rows.isEmpty()) return null;
+
+        List<Row> top = new ArrayList<>(rows);
+        if (cpuCol >= 0 || memCol >= 0) {
+            top.sort(Comparator.comparingDouble((Row r) -> r.cpu() + r.mem()).reversed());
+        }
+        int shown = Math.min(top.size(), settings.getCondenseMaxRows());
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < header.length; c++) {
+            if (c == header.length - 1 || KEPT_COLUMNS.contains(header[c])) sb.append(sb.length() > 0 ? " " : "").append(header[c]);
+        }
+        out.add(sb.toString());
+        for (Row r : top.subList(0, shown)) {
+            sb.setLength(0);
+            for (int c = 0; c < header.length; c++) {
+                if (c == header.length - 1) sb.append(sb.length() > 0 ? " " : "").append(truncate(r.cells()[c]));
+                else if (KEPT_COLUMNS.contains(header[c])) sb.append(sb.length() > 0 ? " " : "").append(r.cells()[c]);
+            }
+            out.add(sb.toString());
+        }
+        if (shown < top.size()) {
+            Map<String, double[]> groups = new LinkedHashMap<>();
+            for (Row r : top.subList(shown, top.size())) {
+                double[] g = groups.computeIfAbsent(r.program(), k -> new double[3]);
+                g[0]++;
+                g[1] += r.cpu();
+                g[2] += r.mem();
+            }
+            List<Map.Entry<String, double[]>> sorted = new ArrayList<>(groups.entrySet());
+            sorted.sort(Comparator.comparingDouble((Map.Entry<String, double[]> e) -> e.getValue()[0]).reversed());
+            out.add(String.format(Locale.ROOT, "... %d more processes by program (count, %%CPU, %%MEM):", top.size() - shown));
+            int listed = Math.min(sorted.size(), settings.getCondenseMaxRows());
+            for (Map.Entry<String, double[]> e : sorted.subList(0, listed)) {
+                double[] g = e.getValue();
+                out.add(String.format(Locale.ROOT, "  %s x%d cpu %.1f mem %.1f", e.getKey(), (int) g[0], g[1], g[2]));
+            }
+            if (listed < sorted.size()) out.add("  ... " + (sorted.size() - listed) + " other programs");
+        }
+        out.addAll(unparsed);
+        return out;
+    }
+
+    private static String program(String command) {
+        if (command.startsWith("[")) return "[kernel threads]";
+        String first = command.split("\\s+", 2)[0];
+        int slash = first.lastIndexOf('/');
+        String name = slash >= 0 && slash < first.length() - 1 ? first.substring(slash + 1) : first;
+        return name.endsWith(":") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    private static String truncate(String command) {
+        return command.length() <= MAX_COMMAND_CHARS ? command : command.substring(0, MAX_COMMAND_CHARS) + "...";
+    }
+
+    private static double number(String[] cells, int col) {
+        if (col < 0) return 0;
+        try {
+            return Double.parseDouble(cells[col]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static int indexOf(String[] header, String column) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(column)) return i;
+        }
+        return -1;
+    }
+}
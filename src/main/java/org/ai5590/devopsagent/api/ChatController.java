@@ -1,30 +1,55 @@
 package org.ai5590.devopsagent.api;
 
+import org.ai5590.devopsagent.actions.Action;
+import org.ai5590.devopsagent.actions.ActionBatch;
 import org.ai5590.devopsagent.actions.ActionExecutor;
-import org.ai5590.devopsagent.db.PendingActionsRepository;
+import org.ai5590.devopsagent.actions.ActionOutputs;
+import org.ai5590.devopsagent.actions.BatchExecutor;
+import org.ai5590.devopsagent.actions.PendingActionStore;
 import org.ai5590.devopsagent.db.MessageRepository;
+import org.ai5590.devopsagent.db.OutputBlobRepository;
+import org.ai5590.devopsagent.json.Json;
 import org.ai5590.devopsagent.service.ChatService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
+    private static final long BATCH_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(15);
     private final ChatService chatService;
     private final ActionExecutor actionExecutor;
-    private final PendingActionsRepository pendingActionsRepository;
+    private final PendingActionStore pendingActionStore;
     private final MessageRepository messageRepository;
+    private final ActionOutputs actionOutputs;
+    private final OutputBlobRepository outputBlobRepository;
+    private final BatchExecutor batchExecutor;
 
     public ChatController(ChatService chatService, ActionExecutor actionExecutor,
-                          PendingActionsRepository pendingActionsRepository,
-                          MessageRepository messageRepository) {
+                          PendingActionStore pendingActionStore,
+                          MessageRepository messageRepository,
+                          ActionOutputs actionOutputs,
+                          OutputBlobRepository outputBlobRepository,
+                          BatchExecutor batchExecutor) {
         this.chatService = chatService;
         this.actionExecutor = actionExecutor;
-        this.pendingActionsRepository = pendingActionsRepository;
+        this.pendingActionStore = pendingActionStore;
         this.messageRepository = messageRepository;
+        this.actionOutputs = actionOutputs;
+        this.outputBlobRepository = outputBlobRepository;
+        this.batchExecutor = batchExecutor;
     }
 
     @PostMapping("/send")
@@ -46,25 +71,146 @@ public class ChatController {
     @PostMapping("/action/{id}")
     public ResponseEntity<Map<String, Object>> executeAction(@PathVariable("id") String actionId, Authentication auth) {
         String userLogin = auth.getName();
-        String actionsJson = pendingActionsRepository.getPendingActions(userLogin);
-        if (actionsJson == null) {
+        ActionBatch batch = pendingActionStore.getBatch(userLogin);
+        if (batch == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "No pending actions"));
         }
-        Map<String, Object> result = actionExecutor.executeAction(userLogin, actionsJson, actionId);
-
+        Action action = batch.find(actionId);
+        String unmet = action != null ? batch.unmetDependency(action, pendingActionStore.getStates(userLogin)) : null;
+        if (unmet != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Action " + actionId + " depends on " + unmet + ", which has not completed"));
+        }
+        if (action != null && !pendingActionStore.markRunning(userLogin, actionId)) {
+            String state = pendingActionStore.getStates(userLogin).get(actionId);
+            String error = PendingActionStore.ActionState.DONE.jsonName().equals(state)
+                    ? "Action has already been executed: " : "Action is already running: ";
+            return ResponseEntity.badRequest().body(Map.of("error", error + actionId));
+        }
+        Map<String, Object> result = actionExecutor.executeAction(userLogin, batch, actionId);
         if (Boolean.TRUE.equals(result.get("success"))) {
-            String output = (String) result.get("output");
-            String api = (String) result.get("api");
-            String resultMsg = "Action result (" + api + "):\n```\n" + output + "\n```";
-            messageRepository.addMessage(userLogin, "assistant", resultMsg);
+            pendingActionStore.markDone(userLogin, actionId);
+            ActionOutputs.Stored stored = actionOutputs.store(userLogin, (String) result.get("output"));
+            messageRepository.addMessage(userLogin, "assistant", actionOutputs.toMessage((String) result.get("api"), stored)).join();
+            result.put("output", stored.text());
+            result.put("outputRef", stored.ref());
+        } else {
+            pendingActionStore.markPending(userLogin, actionId);
         }
 
         return ResponseEntity.ok(result);
     }
 
+    // Streams one NDJSON line per action as it finishes, then a summary line with "finished": true.
+    @PostMapping("/actions/execute-all")
+    public ResponseEntity<?> executeAll(Authentication auth) {
+        String userLogin = auth.getName();
+        ActionBatch batch = pendingActionStore.getBatch(userLogin);
+        if (batch == null || batch.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No pending actions"));
+        }
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MS);
+        batchExecutor.executeAll(userLogin, batch, result -> sendLine(emitter, result))
+                .whenComplete((summary, error) -> {
+                    if (error != null) {
+                        emitter.completeWithError(error);
+                        return;
+                    }
+                    try {
+                        sendLine(emitter, summary);
+                        emitter.complete();
+                    } catch (UncheckedIOException e) {
+                        emitter.completeWithError(e);
+                    }
+                });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(MediaType.APPLICATION_NDJSON_VALUE)).body(emitter);
+    }
+
+    private static void sendLine(ResponseBodyEmitter emitter, Map<String, Object> line) {
+        try {
+            emitter.send(Json.MAPPER.writeValueAsString(line) + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The tag is computed before the state is built, so an unchanged poll is answered with an empty 304.
     @GetMapping("/state")
-    public ResponseEntity<Map<String, Object>> getState(@RequestParam(value = "since", defaultValue = "0") long sinceId, Authentication auth) {
+    public ResponseEntity<Map<String, Object>> getState(@RequestParam(value = "since", defaultValue = "0") long sinceId,
+                                                        Authentication auth, WebRequest request) {
+        String eTag = chatService.getStateTag(auth.getName());
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
         Map<String, Object> state = chatService.getState(auth.getName(), sinceId);
-        return ResponseEntity.ok(state);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate()).eTag(eTag).body(state);
+    }
+
+    // Blobs never change under a hash, so the body is cacheable and Range requests need no If-Range handling.
+    @GetMapping("/output/{hash}")
+    public ResponseEntity<byte[]> getOutput(@PathVariable("hash") String hash,
+                                            @RequestHeader(value = "Range", required = false) String range,
+                                            Authentication auth) throws IOException {
+        if (!ActionOutputs.isReference(hash)) {
+            return ResponseEntity.badRequest().build();
+        }
+        OutputBlobRepository.Blob blob = outputBlobRepository.find(auth.getName(), hash);
+        if (blob == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long size = blob.rawSize();
+        long start = 0;
+        long end = size - 1;
+        // Other units and multi-range requests are answered with the whole body, which RFC 9110 allows.
+        boolean partial = range != null && range.startsWith("bytes=") && range.indexOf(',') < 0;
+        if (partial) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + size).build();
+            }
+            start = bounds[0];
+            end = bounds[1];
+        }
+        byte[] body;
+        try (InputStream in = blob.open()) {
+            in.skipNBytes(start);
+            body = in.readNBytes((int) (end - start + 1));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .contentType(MediaType.parseMediaType("text/plain;charset=UTF-8"))
+                .header("Accept-Ranges", "bytes")
+                .eTag("\"" + hash + "\"")
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate());
+        if (partial) {
+            response.header("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        }
+        return response.body(body);
+    }
+
+    // Single ranges only ("bytes=a-b", "bytes=a-", "bytes=-n"); a multipart reply is not worth it for a log viewer.
+    static long[] parseRange(String header, long size) {
+        if (size == 0) return null;
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (from.isEmpty()) {
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) return null;
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? size - 1 : Math.min(Long.parseLong(to), size - 1);
+            }
+            if (start < 0 || start >= size || end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,56 @@
+package org.ai5590.devopsagent.api;
+
+import org.ai5590.devopsagent.db.UserSettingsRepository;
+import org.ai5590.devopsagent.openai.LlmClientFactory;
+import org.ai5590.devopsagent.openai.LlmResponseCache;
+import org.ai5590.devopsagent.tracing.TraceStore;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/debug")
+public class DebugController {
+    private final TraceStore traceStore;
+    private final UserSettingsRepository userSettingsRepository;
+    private final LlmClientFactory llmClientFactory;
+    private final LlmResponseCache llmResponseCache;
+
+    public DebugController(TraceStore traceStore, UserSettingsRepository userSettingsRepository,
+                           LlmClientFactory llmClientFactory, LlmResponseCache llmResponseCache) {
+        this.traceStore = traceStore;
+        this.userSettingsRepository = userSettingsRepository;
+        this.llmClientFactory = llmClientFactory;
+        this.llmResponseCache = llmResponseCache;
+    }
+
+    @GetMapping("/traces/{traceId}")
+    public ResponseEntity<Map<String, Object>> getTrace(@PathVariable("traceId") String traceId, Authentication auth) {
+        if (!userSettingsRepository.getShowDebug(auth.getName())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Debug mode is disabled"));
+        }
+        Map<String, Object> breakdown = traceStore.getBreakdown(traceId, auth.getName());
+        if (breakdown == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Trace not found: " + traceId));
+        }
+        return ResponseEntity.ok(breakdown);
+    }
+
+    @GetMapping("/llm-routing")
+    public ResponseEntity<Map<String, Object>> getLlmRouting(Authentication auth) {
+        if (!userSettingsRepository.getShowDebug(auth.getName())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Debug mode is disabled"));
+        }
+        return ResponseEntity.ok(Map.of("servers", llmClientFactory.routingStats()));
+    }
+
+    @GetMapping("/llm-cache")
+    public ResponseEntity<Map<String, Object>> getLlmCache(Authentication auth) {
+        if (!userSettingsRepository.getShowDebug(auth.getName())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Debug mode is disabled"));
+        }
+        return ResponseEntity.ok(llmResponseCache.stats());
+    }
+}
@@ -1,33 +1,46 @@
 package org.ai5590.devopsagent.api;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.WebRequest;
 
 @Controller
 public class PageController {
+    private final StaticAssets staticAssets;
+
+    public PageController(StaticAssets staticAssets) {
+        this.staticAssets = staticAssets;
+    }
 
     @GetMapping("/chat")
-    public String chat() {
-        return "forward:/chat.html";
+    public ResponseEntity<byte[]> chat(WebRequest request) {
+        return staticAssets.page("chat.html", request);
     }
 
     @GetMapping("/help")
-    public String help() {
-        return "forward:/help.html";
+    public ResponseEntity<byte[]> help(WebRequest request) {
+        return staticAssets.page("help.html", request);
     }
 
     @GetMapping("/login")
-    public String login() {
-        return "forward:/login.html";
+    public ResponseEntity<byte[]> login(WebRequest request) {
+        return staticAssets.page("login.html", request);
     }
 
     @GetMapping("/settings")
-    public String settings() {
-        return "forward:/settings.html";
+    public ResponseEntity<byte[]> settings(WebRequest request) {
+        return staticAssets.page("settings.html", request);
     }
 
     @GetMapping("/servers")
-    public String servers() {
-        return "forward:/servers.html";
+    public ResponseEntity<byte[]> servers(WebRequest request) {
+        return staticAssets.page("servers.html", request);
+    }
+
+    @GetMapping("/assets/{name:.+}")
+    public ResponseEntity<byte[]> asset(@PathVariable("name") String name, WebRequest request) {
+        return staticAssets.asset(name, request);
     }
 }
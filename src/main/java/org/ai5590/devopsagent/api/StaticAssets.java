@@ -0,0 +1,137 @@
+package org.ai5590.devopsagent.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Pages and their stylesheet/script are read once at startup. Assets get a content hash in the URL, so they can be
+// cached for a year; pages keep their URLs and are revalidated by ETag. Both are gzipped once here, not per request.
+@Component
+public class StaticAssets {
+    private static final Logger log = LoggerFactory.getLogger(StaticAssets.class);
+    private static final List<String> ASSETS = List.of("chat.css", "chat.js");
+    private static final List<String> PAGES = List.of("chat.html", "help.html", "login.html", "settings.html", "servers.html");
+    private static final CacheControl ASSET_CACHE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl PAGE_CACHE = CacheControl.noCache();
+
+    private record Entry(byte[] body, byte[] gzipped, String hash, MediaType contentType, CacheControl cacheControl) {
+    }
+
+    private final Map<String, Entry> assets = new LinkedHashMap<>();
+    private final Map<String, Entry> pages = new LinkedHashMap<>();
+
+    public StaticAssets() {
+        Map<String, String> links = new LinkedHashMap<>();
+        for (String name : ASSETS) {
+            byte[] body = read(name);
+            String hash = sha256(body).substring(0, 16);
+            int dot = name.lastIndexOf('.');
+            String versioned = name.substring(0, dot) + "." + hash + name.substring(dot);
+            assets.put(versioned, new Entry(body, gzip(body), hash, contentType(name), ASSET_CACHE));
+            links.put("\"/" + name + "\"", "\"/assets/" + versioned + "\"");
+        }
+        for (String name : PAGES) {
+            String html = new String(read(name), StandardCharsets.UTF_8);
+            for (Map.Entry<String, String> link : links.entrySet()) {
+                html = html.replace(link.getKey(), link.getValue());
+            }
+            byte[] body = html.getBytes(StandardCharsets.UTF_8);
+            pages.put(name, new Entry(body, gzip(body), sha256(body).substring(0, 16), contentType(name), PAGE_CACHE));
+        }
+        log.info("Static assets: {}", assets.keySet());
+    }
+
+    public ResponseEntity<byte[]> asset(String versionedName, WebRequest request) {
+        return serve(assets.get(versionedName), request);
+    }
+
+    public ResponseEntity<byte[]> page(String name, WebRequest request) {
+        return serve(pages.get(name), request);
+    }
+
+    private static ResponseEntity<byte[]> serve(Entry entry, WebRequest request) {
+        if (entry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // The two encodings are different representations, so each gets its own strong ETag.
+        boolean gzip = acceptsGzip(request.getHeader("Accept-Encoding")) && entry.gzipped().length < entry.body().length;
+        String eTag = "\"" + entry.hash() + (gzip ? "-gz" : "") + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(entry.contentType())
+                .cacheControl(entry.cacheControl())
+                .eTag(eTag)
+                .header("Vary", "Accept-Encoding");
+        if (gzip) {
+            response.header("Content-Encoding", "gzip");
+        }
+        return response.body(gzip ? entry.gzipped() : entry.body());
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] coding = part.trim().split(";");
+            if (!coding[0].trim().equalsIgnoreCase("gzip")) continue;
+            return coding.length < 2 || !coding[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    private static MediaType contentType(String name) {
+        if (name.endsWith(".css")) return MediaType.parseMediaType("text/css;charset=UTF-8");
+        if (name.endsWith(".js")) return MediaType.parseMediaType("text/javascript;charset=UTF-8");
+        return MediaType.parseMediaType("text/html;charset=UTF-8");
+    }
+
+    private static byte[] read(String name) {
+        try (InputStream in = StaticAssets.class.getResourceAsStream("/static/" + name)) {
+            if (in == null) throw new IllegalStateException("Missing static resource: " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read static resource " + name, e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
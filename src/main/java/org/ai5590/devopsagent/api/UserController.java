@@ -3,7 +3,10 @@ package org.ai5590.devopsagent.api;
 import org.ai5590.devopsagent.config.AppConfig;
 import org.ai5590.devopsagent.config.ConfigLoader;
 import org.ai5590.devopsagent.db.UserSettingsRepository;
-import org.ai5590.devopsagent.sshagent.SshAgentService;
+import org.ai5590.devopsagent.openai.LlmClientFactory;
+import org.ai5590.devopsagent.sshagent.ServerHealthTracker;
+import org.ai5590.devopsagent.sshagent.ServerInventory;
+import org.ai5590.devopsagent.sshagent.ServerRecord;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -15,12 +18,15 @@ import java.util.*;
 public class UserController {
     private final UserSettingsRepository userSettingsRepository;
     private final ConfigLoader configLoader;
-    private final SshAgentService sshAgentService;
+    private final ServerInventory serverInventory;
+    private final ServerHealthTracker serverHealth;
 
-    public UserController(UserSettingsRepository userSettingsRepository, ConfigLoader configLoader, SshAgentService sshAgentService) {
+    public UserController(UserSettingsRepository userSettingsRepository, ConfigLoader configLoader,
+                          ServerInventory serverInventory, ServerHealthTracker serverHealth) {
         this.userSettingsRepository = userSettingsRepository;
         this.configLoader = configLoader;
-        this.sshAgentService = sshAgentService;
+        this.serverInventory = serverInventory;
+        this.serverHealth = serverHealth;
     }
 
     @GetMapping("/user/id")
@@ -51,7 +57,9 @@ public class UserController {
         boolean showDebug = Boolean.TRUE.equals(body.get("showDebug"));
         String selectedLlmServerId = (String) body.get("selectedLlmServerId");
         String modelOverride = (String) body.get("modelOverride");
-        userSettingsRepository.saveSettings(auth.getName(), showDebug, selectedLlmServerId, modelOverride);
+        boolean agentMode = Boolean.TRUE.equals(body.get("agentMode"));
+        boolean llmCache = !Boolean.FALSE.equals(body.get("llmCache"));
+        userSettingsRepository.saveSettings(auth.getName(), showDebug, selectedLlmServerId, modelOverride, agentMode, llmCache);
         return ResponseEntity.ok(Map.of("success", true, "message", "Настройки сохранены"));
     }
 
@@ -59,12 +67,20 @@ public class UserController {
     public ResponseEntity<Map<String, Object>> getLlmServers(Authentication auth) {
         AppConfig config = configLoader.getConfig();
         List<Map<String, Object>> servers = new ArrayList<>();
+        if (config.getLlmRouting().isEnabled() && config.getEnabledLlmServers().size() > 1) {
+            Map<String, Object> auto = new LinkedHashMap<>();
+            auto.put("id", LlmClientFactory.AUTO_SERVER_ID);
+            auto.put("title", "Авто (выбор сервера по запросу)");
+            auto.put("type", "AUTO");
+            servers.add(auto);
+        }
         for (AppConfig.LlmServer s : config.getEnabledLlmServers()) {
             Map<String, Object> m = new LinkedHashMap<>();
             m.put("id", s.getId());
             m.put("title", s.getTitle());
             m.put("type", s.getType());
             m.put("defaultModel", s.getDefaultModel());
+            m.put("tier", s.getTier());
             servers.add(m);
         }
         String defaultId = config.getDefaults().getDefaultLlmServerId();
@@ -79,7 +95,31 @@ public class UserController {
 
     @GetMapping("/servers")
     public ResponseEntity<Map<String, Object>> getServers(Authentication auth) {
-        String result = sshAgentService.listServers();
-        return ResponseEntity.ok(Map.of("result", result));
+        // The page is an explicit "show me now", so it always asks the agents instead of serving the snapshot.
+        ServerInventory.Snapshot inventory = serverInventory.refresh();
+        String result = inventory.raw();
+        List<Map<String, Object>> servers = new ArrayList<>();
+        Set<String> listed = new HashSet<>();
+        for (ServerRecord e : inventory.servers()) {
+            Map<String, Object> server = new LinkedHashMap<>();
+            server.put("name", e.name());
+            server.put("host", e.host());
+            server.put("agent", e.agent());
+            server.put("tags", e.tags());
+            server.put("details", e.details());
+            server.put("health", serverHealth.get(e.name()).toMap());
+            servers.add(server);
+            listed.add(e.name());
+        }
+        // Hosts that were called but are not listed (removed servers, names the model made up) keep their health.
+        for (ServerHealthTracker.Snapshot h : serverHealth.snapshot()) {
+            if (listed.contains(h.server())) continue;
+            Map<String, Object> server = new LinkedHashMap<>();
+            server.put("name", h.server());
+            server.put("listed", false);
+            server.put("health", h.toMap());
+            servers.add(server);
+        }
+        return ResponseEntity.ok(Map.of("result", result, "servers", servers));
     }
 }
@@ -0,0 +1,36 @@
+package org.ai5590.devopsagent.app;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class StartupReport {
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+    private static final Map<String, Long> PHASES = new ConcurrentHashMap<>();
+
+    // Phases run on different threads and some before the Spring context exists, so they report here statically.
+    public static void phase(String name, long startNanos) {
+        long ms = (System.nanoTime() - startNanos) / 1_000_000;
+        PHASES.put(name, ms);
+        log.info("Startup phase '{}' took {} ms", name, ms);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void report() {
+        StringBuilder sb = new StringBuilder();
+        PHASES.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> sb.append(sb.isEmpty() ? "" : ", ").append(e.getKey()).append('=').append(e.getValue()).append("ms"));
+        log.info("Started in {} ms since JVM start; phases: {}", ManagementFactory.getRuntimeMXBean().getUptime(), sb);
+    }
+}
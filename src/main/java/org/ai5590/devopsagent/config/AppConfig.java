@@ -1,5 +1,6 @@
 package org.ai5590.devopsagent.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +15,18 @@ public class AppConfig {
     private List<BootstrapUser> bootstrapUsers = List.of();
     private Defaults defaults;
     private List<LlmServer> llmServers;
+    private TracingSettings tracing;
+    private StorageSettings storage;
+    private ClusterSettings cluster;
+    private PasswordSettings passwords;
+    private OutputSettings outputs;
+    private AgentSettings agent;
+    private SshAgentSettings sshAgent;
+    private List<SshAgentEndpoint> sshAgents = List.of();
+    private ServerHealthSettings serverHealth;
+    private InventorySettings inventory;
+    private LlmRoutingSettings llmRouting;
+    private LlmCacheSettings llmCache;
 
     public static class Defaults {
         private String defaultLlmServerId = "openai_default";
@@ -21,6 +34,329 @@ public class AppConfig {
         public void setDefaultLlmServerId(String v) { this.defaultLlmServerId = v; }
     }
 
+    public static class TracingSettings {
+        private boolean enabled = true;
+        private String exportFile = "data/logs/traces.jsonl";
+        private int maxStoredTraces = 500;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getExportFile() { return exportFile; }
+        public void setExportFile(String exportFile) { this.exportFile = exportFile; }
+        public int getMaxStoredTraces() { return maxStoredTraces; }
+        public void setMaxStoredTraces(int maxStoredTraces) { this.maxStoredTraces = maxStoredTraces; }
+    }
+
+    public static class StorageSettings {
+        private String type = "sqlite";
+        private String sqlitePath = "data/app.db";
+        private String jdbcUrl;
+        private String username;
+        private String passwordEnv = "DEVOPS_AGENT_DB_PASSWORD";
+        private int poolSize = 10;
+        // type "sqlite-sharded": sqlitePath keeps users, audit and sessions, per-user tables go to shardDir.
+        private String shardDir = "data/shards";
+        private String shardBy = "user";
+        private int shardBuckets = 64;
+        private int maxOpenShards = 128;
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public String getSqlitePath() { return sqlitePath; }
+        public void setSqlitePath(String sqlitePath) { this.sqlitePath = sqlitePath; }
+        public String getJdbcUrl() { return jdbcUrl; }
+        public void setJdbcUrl(String jdbcUrl) { this.jdbcUrl = jdbcUrl; }
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+        public String getPasswordEnv() { return passwordEnv; }
+        public void setPasswordEnv(String passwordEnv) { this.passwordEnv = passwordEnv; }
+        public int getPoolSize() { return poolSize; }
+        public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+        public String getShardDir() { return shardDir; }
+        public void setShardDir(String shardDir) { this.shardDir = shardDir; }
+        public String getShardBy() { return shardBy; }
+        public void setShardBy(String shardBy) { this.shardBy = shardBy; }
+        public int getShardBuckets() { return shardBuckets; }
+        public void setShardBuckets(int shardBuckets) { this.shardBuckets = shardBuckets; }
+        public int getMaxOpenShards() { return maxOpenShards; }
+        public void setMaxOpenShards(int maxOpenShards) { this.maxOpenShards = maxOpenShards; }
+
+        public String resolvePassword() {
+            if (passwordEnv == null || passwordEnv.isBlank()) return "";
+            String val = System.getenv(passwordEnv);
+            return val != null ? val : "";
+        }
+    }
+
+    public static class ClusterSettings {
+        private String sessionStore = "local";
+        private int sessionTimeoutMinutes = 30;
+        private int actionLeaseSeconds = 300;
+
+        public String getSessionStore() { return sessionStore; }
+        public void setSessionStore(String sessionStore) { this.sessionStore = sessionStore; }
+        public int getSessionTimeoutMinutes() { return sessionTimeoutMinutes; }
+        public void setSessionTimeoutMinutes(int sessionTimeoutMinutes) { this.sessionTimeoutMinutes = sessionTimeoutMinutes; }
+        public int getActionLeaseSeconds() { return actionLeaseSeconds; }
+        public void setActionLeaseSeconds(int actionLeaseSeconds) { this.actionLeaseSeconds = actionLeaseSeconds; }
+    }
+
+    public static class PasswordSettings {
+        private String algorithm = "bcrypt";
+        private int bcryptCost = 10;
+        private int hashThreads = 0;
+        private int hashQueueSize = 0;
+        private int userCacheSize = 1000;
+        private int userCacheTtlSeconds = 300;
+
+        public String getAlgorithm() { return algorithm; }
+        public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
+        public int getBcryptCost() { return bcryptCost; }
+        public void setBcryptCost(int bcryptCost) { this.bcryptCost = bcryptCost; }
+        public int getHashThreads() { return hashThreads; }
+        public void setHashThreads(int hashThreads) { this.hashThreads = hashThreads; }
+        public int getHashQueueSize() { return hashQueueSize; }
+        public void setHashQueueSize(int hashQueueSize) { this.hashQueueSize = hashQueueSize; }
+        public int getUserCacheSize() { return userCacheSize; }
+        public void setUserCacheSize(int userCacheSize) { this.userCacheSize = userCacheSize; }
+        public int getUserCacheTtlSeconds() { return userCacheTtlSeconds; }
+        public void setUserCacheTtlSeconds(int userCacheTtlSeconds) { this.userCacheTtlSeconds = userCacheTtlSeconds; }
+
+        public int resolveHashThreads() {
+            return hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    public static class OutputSettings {
+        private int inlineLimitBytes = 16384;
+        private int previewHeadChars = 4000;
+        private int previewTailChars = 2000;
+        private boolean condenseEnabled = true;
+        private int condenseMinLines = 20;
+        private int condenseMaxRows = 25;
+        private int condenseHeadLines = 15;
+        private int condenseTailLines = 15;
+        private int condenseMaxErrorLines = 20;
+
+        public int getInlineLimitBytes() { return inlineLimitBytes; }
+        public void setInlineLimitBytes(int inlineLimitBytes) { this.inlineLimitBytes = inlineLimitBytes; }
+        public int getPreviewHeadChars() { return previewHeadChars; }
+        public void setPreviewHeadChars(int previewHeadChars) { this.previewHeadChars = previewHeadChars; }
+        public int getPreviewTailChars() { return previewTailChars; }
+        public void setPreviewTailChars(int previewTailChars) { this.previewTailChars = previewTailChars; }
+        public boolean isCondenseEnabled() { return condenseEnabled; }
+        public void setCondenseEnabled(boolean condenseEnabled) { this.condenseEnabled = condenseEnabled; }
+        public int getCondenseMinLines() { return condenseMinLines; }
+        public void setCondenseMinLines(int condenseMinLines) { this.condenseMinLines = condenseMinLines; }
+        public int getCondenseMaxRows() { return condenseMaxRows; }
+        public void setCondenseMaxRows(int condenseMaxRows) { this.condenseMaxRows = condenseMaxRows; }
+        public int getCondenseHeadLines() { return condenseHeadLines; }
+        public void setCondenseHeadLines(int condenseHeadLines) { this.condenseHeadLines = condenseHeadLines; }
+        public int getCondenseTailLines() { return condenseTailLines; }
+        public void setCondenseTailLines(int condenseTailLines) { this.condenseTailLines = condenseTailLines; }
+        public int getCondenseMaxErrorLines() { return condenseMaxErrorLines; }
+        public void setCondenseMaxErrorLines(int condenseMaxErrorLines) { this.condenseMaxErrorLines = condenseMaxErrorLines; }
+    }
+
+    public static class AgentSettings {
+        private boolean enabled = false;
+        private int maxSteps = 5;
+        private int maxSeconds = 120;
+        private List<String> autoApis = List.of("ssh.list_servers", "ssh.execute", "ssh.execute_many");
+        // Matched as prefixes, so each entry is a form whose further arguments only choose what is shown: date,
+        // hostname and ip change state through an argument and are listed only as their read-only forms.
+        private List<String> readOnlyCommands = List.of(
+                "ls", "pwd", "whoami", "id", "uname", "uptime", "df", "du", "free", "nproc", "lsblk",
+                "hostnamectl status", "timedatectl status", "ip addr show", "ip link show", "ip route show",
+                "ss", "netstat", "ping -c", "cat", "tail -n", "head", "grep", "wc", "ps",
+                "top -b -n 1", "journalctl -n", "systemctl status", "systemctl is-active", "systemctl list-units",
+                "docker ps", "docker logs --tail", "docker inspect", "docker compose ps");
+        // "<command prefix> <argument>": the argument may not appear anywhere after that prefix, whichever entry of
+        // readOnlyCommands matched, so older lists with bare date or journalctl are covered too. A trailing * matches
+        // by prefix (--vacuum-size=1G, and * alone any argument); a one-letter flag also matches inside a group (-fu).
+        private List<String> deniedArguments = List.of(
+                "journalctl -f", "journalctl --follow", "journalctl --vacuum*", "journalctl --rotate",
+                "journalctl --flush", "journalctl --sync", "journalctl --relinquish-var",
+                "journalctl --smart-relinquish-var", "journalctl --setup-keys", "journalctl --update-catalog",
+                "tail -f", "tail -F", "tail --follow*", "tail --retry", "docker logs -f", "docker logs --follow",
+                "ss -K", "ss --kill", "ping -f", "date -s", "date --set*", "hostname *", "ip del", "ip delete", "ip flush", "ip add", "ip change",
+                "ip replace", "ip set");
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getMaxSteps() { return maxSteps; }
+        public void setMaxSteps(int maxSteps) { this.maxSteps = maxSteps; }
+        public int getMaxSeconds() { return maxSeconds; }
+        public void setMaxSeconds(int maxSeconds) { this.maxSeconds = maxSeconds; }
+        public List<String> getAutoApis() { return autoApis; }
+        public void setAutoApis(List<String> autoApis) { this.autoApis = autoApis; }
+        public List<String> getReadOnlyCommands() { return readOnlyCommands; }
+        public void setReadOnlyCommands(List<String> readOnlyCommands) { this.readOnlyCommands = readOnlyCommands; }
+        public List<String> getDeniedArguments() { return deniedArguments; }
+        public void setDeniedArguments(List<String> deniedArguments) { this.deniedArguments = deniedArguments; }
+    }
+
+    public static class SshAgentSettings {
+        private String transport = "auto";
+        private String channelUrl;
+        private int maxInFlight = 64;
+        private int retryUnsupportedSeconds = 300;
+        private int healthCheckSeconds = 15;
+
+        public String getTransport() { return transport; }
+        public void setTransport(String transport) { this.transport = transport; }
+        public String getChannelUrl() { return channelUrl; }
+        public void setChannelUrl(String channelUrl) { this.channelUrl = channelUrl; }
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+        public int getRetryUnsupportedSeconds() { return retryUnsupportedSeconds; }
+        public void setRetryUnsupportedSeconds(int retryUnsupportedSeconds) { this.retryUnsupportedSeconds = retryUnsupportedSeconds; }
+        public int getHealthCheckSeconds() { return healthCheckSeconds; }
+        public void setHealthCheckSeconds(int healthCheckSeconds) { this.healthCheckSeconds = healthCheckSeconds; }
+
+        public boolean channelEnabled() {
+            return !"rest".equalsIgnoreCase(transport);
+        }
+
+        public String resolveChannelUrl(String baseUrl) {
+            return channelUrlFor(baseUrl, channelUrl);
+        }
+
+        // Defaults to /ws on the REST base URL, with the scheme switched to ws/wss.
+        public static String channelUrlFor(String baseUrl, String explicit) {
+            if (explicit != null && !explicit.isBlank()) return explicit;
+            String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            return base.replaceFirst("^http", "ws") + "/ws";
+        }
+    }
+
+    // One agent of a sharded pool. servers holds name patterns (* and ?); an agent without patterns is routed to
+    // for the servers its own listServers reported.
+    public static class SshAgentEndpoint {
+        private String id;
+        private String baseUrl;
+        private String channelUrl;
+        private List<String> servers = List.of();
+        private boolean enabled = true;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getBaseUrl() { return baseUrl; }
+        public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+        public String getChannelUrl() { return channelUrl; }
+        public void setChannelUrl(String channelUrl) { this.channelUrl = channelUrl; }
+        public List<String> getServers() { return servers; }
+        public void setServers(List<String> servers) { this.servers = servers; }
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    public static class ServerHealthSettings {
+        private boolean enabled = true;
+        private int windowSize = 20;
+        private int failureThreshold = 3;
+        private int openSeconds = 30;
+        private int maxOpenSeconds = 300;
+        private int minTimeoutSeconds = 60;
+        private int maxTimeoutSeconds = 180;
+        private double timeoutP99Multiplier = 4.0;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getWindowSize() { return windowSize; }
+        public void setWindowSize(int windowSize) { this.windowSize = windowSize; }
+        public int getFailureThreshold() { return failureThreshold; }
+        public void setFailureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; }
+        public int getOpenSeconds() { return openSeconds; }
+        public void setOpenSeconds(int openSeconds) { this.openSeconds = openSeconds; }
+        public int getMaxOpenSeconds() { return maxOpenSeconds; }
+        public void setMaxOpenSeconds(int maxOpenSeconds) { this.maxOpenSeconds = maxOpenSeconds; }
+        public int getMinTimeoutSeconds() { return minTimeoutSeconds; }
+        public void setMinTimeoutSeconds(int minTimeoutSeconds) { this.minTimeoutSeconds = minTimeoutSeconds; }
+        public int getMaxTimeoutSeconds() { return maxTimeoutSeconds; }
+        public void setMaxTimeoutSeconds(int maxTimeoutSeconds) { this.maxTimeoutSeconds = maxTimeoutSeconds; }
+        public double getTimeoutP99Multiplier() { return timeoutP99Multiplier; }
+        public void setTimeoutP99Multiplier(double timeoutP99Multiplier) { this.timeoutP99Multiplier = timeoutP99Multiplier; }
+    }
+
+    public static class InventorySettings {
+        private boolean enabled = true;
+        private int refreshAheadSeconds = 240;
+        private int ttlSeconds = 600;
+        private int promptBudgetChars = 1500;
+        private int maxTargets = 20;
+        private int parallelism = 8;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getRefreshAheadSeconds() { return refreshAheadSeconds; }
+        public void setRefreshAheadSeconds(int refreshAheadSeconds) { this.refreshAheadSeconds = refreshAheadSeconds; }
+        public int getTtlSeconds() { return ttlSeconds; }
+        public void setTtlSeconds(int ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+        public int getPromptBudgetChars() { return promptBudgetChars; }
+        public void setPromptBudgetChars(int promptBudgetChars) { this.promptBudgetChars = promptBudgetChars; }
+        public int getMaxTargets() { return maxTargets; }
+        public void setMaxTargets(int maxTargets) { this.maxTargets = maxTargets; }
+        public int getParallelism() { return parallelism; }
+        public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+    }
+
+    public static class LlmRoutingSettings {
+        private boolean enabled = true;
+        private int newConversationTier = 1;
+        private int conversationTier = 1;
+        private int toolOutputTier = 2;
+        private int largePromptTokens = 6000;
+        private int largePromptTier = 2;
+        private double latencyCostPerSecond = 0.0005;
+        private int defaultLatencyMs = 5000;
+        private double latencyAlpha = 0.3;
+        private int failureCooldownSeconds = 60;
+        private int maxAttempts = 2;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getNewConversationTier() { return newConversationTier; }
+        public void setNewConversationTier(int newConversationTier) { this.newConversationTier = newConversationTier; }
+        public int getConversationTier() { return conversationTier; }
+        public void setConversationTier(int conversationTier) { this.conversationTier = conversationTier; }
+        public int getToolOutputTier() { return toolOutputTier; }
+        public void setToolOutputTier(int toolOutputTier) { this.toolOutputTier = toolOutputTier; }
+        public int getLargePromptTokens() { return largePromptTokens; }
+        public void setLargePromptTokens(int largePromptTokens) { this.largePromptTokens = largePromptTokens; }
+        public int getLargePromptTier() { return largePromptTier; }
+        public void setLargePromptTier(int largePromptTier) { this.largePromptTier = largePromptTier; }
+        public double getLatencyCostPerSecond() { return latencyCostPerSecond; }
+        public void setLatencyCostPerSecond(double latencyCostPerSecond) { this.latencyCostPerSecond = latencyCostPerSecond; }
+        public int getDefaultLatencyMs() { return defaultLatencyMs; }
+        public void setDefaultLatencyMs(int defaultLatencyMs) { this.defaultLatencyMs = defaultLatencyMs; }
+        public double getLatencyAlpha() { return latencyAlpha; }
+        public void setLatencyAlpha(double latencyAlpha) { this.latencyAlpha = latencyAlpha; }
+        public int getFailureCooldownSeconds() { return failureCooldownSeconds; }
+        public void setFailureCooldownSeconds(int failureCooldownSeconds) { this.failureCooldownSeconds = failureCooldownSeconds; }
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+    }
+
+    public static class LlmCacheSettings {
+        private boolean enabled = true;
+        private int ttlSeconds = 3600;
+        private int maxMemoryEntries = 500;
+        private int maxStoredEntries = 10000;
+        private int pruneIntervalSeconds = 600;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getTtlSeconds() { return ttlSeconds; }
+        public void setTtlSeconds(int ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+        public int getMaxMemoryEntries() { return maxMemoryEntries; }
+        public void setMaxMemoryEntries(int maxMemoryEntries) { this.maxMemoryEntries = maxMemoryEntries; }
+        public int getMaxStoredEntries() { return maxStoredEntries; }
+        public void setMaxStoredEntries(int maxStoredEntries) { this.maxStoredEntries = maxStoredEntries; }
+        public int getPruneIntervalSeconds() { return pruneIntervalSeconds; }
+        public void setPruneIntervalSeconds(int pruneIntervalSeconds) { this.pruneIntervalSeconds = pruneIntervalSeconds; }
+    }
+
     public static class LlmServer {
         private String id;
         private String title;
@@ -29,6 +365,10 @@ public class AppConfig {
         private String apiKeyEnv = "";
         private String defaultModel;
         private boolean enabled = true;
+        private int tier = 2;
+        private double costPer1kTokens;
+        private int maxPromptTokens;
+        private int expectedLatencyMs;
 
         public String getId() { return id; }
         public void setId(String id) { this.id = id; }
@@ -44,6 +384,14 @@ public class AppConfig {
         public void setDefaultModel(String defaultModel) { this.defaultModel = defaultModel; }
         public boolean isEnabled() { return enabled; }
         public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getTier() { return tier; }
+        public void setTier(int tier) { this.tier = tier; }
+        public double getCostPer1kTokens() { return costPer1kTokens; }
+        public void setCostPer1kTokens(double costPer1kTokens) { this.costPer1kTokens = costPer1kTokens; }
+        public int getMaxPromptTokens() { return maxPromptTokens; }
+        public void setMaxPromptTokens(int maxPromptTokens) { this.maxPromptTokens = maxPromptTokens; }
+        public int getExpectedLatencyMs() { return expectedLatencyMs; }
+        public void setExpectedLatencyMs(int expectedLatencyMs) { this.expectedLatencyMs = expectedLatencyMs; }
 
         public String resolveApiKey() {
             if (apiKeyEnv == null || apiKeyEnv.isBlank()) return "";
@@ -65,6 +413,39 @@ public class AppConfig {
         if (defaults == null) {
             defaults = new Defaults();
         }
+        if (tracing == null) {
+            tracing = new TracingSettings();
+        }
+        if (storage == null) {
+            storage = new StorageSettings();
+        }
+        if (cluster == null) {
+            cluster = new ClusterSettings();
+        }
+        if (passwords == null) {
+            passwords = new PasswordSettings();
+        }
+        if (outputs == null) {
+            outputs = new OutputSettings();
+        }
+        if (agent == null) {
+            agent = new AgentSettings();
+        }
+        if (sshAgent == null) {
+            sshAgent = new SshAgentSettings();
+        }
+        if (serverHealth == null) {
+            serverHealth = new ServerHealthSettings();
+        }
+        if (inventory == null) {
+            inventory = new InventorySettings();
+        }
+        if (llmRouting == null) {
+            llmRouting = new LlmRoutingSettings();
+        }
+        if (llmCache == null) {
+            llmCache = new LlmCacheSettings();
+        }
         if (llmServers == null || llmServers.isEmpty()) {
             llmServers = new ArrayList<>();
             LlmServer s = new LlmServer();
@@ -87,6 +468,7 @@ public class AppConfig {
         return null;
     }
 
+    @JsonIgnore
     public List<LlmServer> getEnabledLlmServers() {
         if (llmServers == null) return List.of();
         List<LlmServer> result = new ArrayList<>();
@@ -112,4 +494,28 @@ public class AppConfig {
     public void setDefaults(Defaults v) { this.defaults = v; }
     public List<LlmServer> getLlmServers() { return llmServers; }
     public void setLlmServers(List<LlmServer> v) { this.llmServers = v; }
+    public TracingSettings getTracing() { return tracing; }
+    public void setTracing(TracingSettings v) { this.tracing = v; }
+    public StorageSettings getStorage() { return storage; }
+    public void setStorage(StorageSettings v) { this.storage = v; }
+    public ClusterSettings getCluster() { return cluster; }
+    public void setCluster(ClusterSettings v) { this.cluster = v; }
+    public PasswordSettings getPasswords() { return passwords; }
+    public void setPasswords(PasswordSettings v) { this.passwords = v; }
+    public OutputSettings getOutputs() { return outputs; }
+    public void setOutputs(OutputSettings v) { this.outputs = v; }
+    public AgentSettings getAgent() { return agent; }
+    public void setAgent(AgentSettings v) { this.agent = v; }
+    public SshAgentSettings getSshAgent() { return sshAgent; }
+    public void setSshAgent(SshAgentSettings v) { this.sshAgent = v; }
+    public List<SshAgentEndpoint> getSshAgents() { return sshAgents; }
+    public void setSshAgents(List<SshAgentEndpoint> v) { this.sshAgents = v != null ? v : List.of(); }
+    public ServerHealthSettings getServerHealth() { return serverHealth; }
+    public void setServerHealth(ServerHealthSettings v) { this.serverHealth = v; }
+    public InventorySettings getInventory() { return inventory; }
+    public void setInventory(InventorySettings v) { this.inventory = v; }
+    public LlmRoutingSettings getLlmRouting() { return llmRouting; }
+    public void setLlmRouting(LlmRoutingSettings v) { this.llmRouting = v; }
+    public LlmCacheSettings getLlmCache() { return llmCache; }
+    public void setLlmCache(LlmCacheSettings v) { this.llmCache = v; }
 }
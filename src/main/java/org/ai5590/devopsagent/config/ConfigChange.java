@@ -0,0 +1,13 @@
+package org.ai5590.devopsagent.config;
+
+import java.util.Set;
+
+// changedKeys holds top-level config.json properties plus "promptPart1" / "promptPart2";
+// changedLlmServers holds ids of servers that were added, removed or edited.
+public record ConfigChange(ConfigSnapshot previous, ConfigSnapshot current,
+                           Set<String> changedKeys, Set<String> changedLlmServers) {
+
+    public boolean changed(String key) {
+        return changedKeys.contains(key);
+    }
+}
@@ -1,7 +1,10 @@
 package org.ai5590.devopsagent.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import jakarta.annotation.PostConstruct;
+import org.ai5590.devopsagent.app.StartupReport;
+import org.ai5590.devopsagent.json.Json;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -10,54 +13,137 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Component
 public class ConfigLoader {
     private static final Logger log = LoggerFactory.getLogger(ConfigLoader.class);
-    private static final String CONFIG_PATH = "data/config.json";
-    private AppConfig config;
-    private volatile String cachedPrompt;
+    static final Path DATA_DIR = Path.of("data");
+    static final String CONFIG_FILE = "config.json";
+    static final String PROMPT_RU_FILE = "prompt_ru.txt";
+    static final String PROMPT_PART1_FILE = "system_prompt_part1_default.txt";
+    static final String PROMPT_PART2_FILE = "system_prompt_part2_apis.md";
+    private static final ObjectReader CONFIG_READER = Json.MAPPER.readerFor(AppConfig.class);
+    private static final Set<String> RESTART_KEYS = Set.of("storage", "cluster", "passwords", "tracing");
+
+    private final AtomicReference<ConfigSnapshot> current = new AtomicReference<>();
+    private final List<Consumer<ConfigChange>> listeners = new CopyOnWriteArrayList<>();
 
     @PostConstruct
     public void init() {
-        load();
-        reloadPrompt();
+        long start = System.nanoTime();
+        CompletableFuture<String> part1 = CompletableFuture.supplyAsync(this::loadPromptFromFile);
+        CompletableFuture<String> part2 = CompletableFuture.supplyAsync(this::loadPromptPart2FromFile);
+        AppConfig config = readConfig();
+        if (config == null) {
+            config = new AppConfig();
+            config.ensureDefaults();
+        }
+        current.set(new ConfigSnapshot(config, part1.join(), part2.join(), 1));
+        StartupReport.phase("config and prompt", start);
+    }
+
+    public void addListener(Consumer<ConfigChange> listener) {
+        listeners.add(listener);
     }
 
     public synchronized void load() {
+        AppConfig config = readConfig();
+        if (config == null) return;
+        ConfigSnapshot prev = current.get();
+        publish(new ConfigSnapshot(config, prev.promptPart1(), prev.promptPart2(), prev.version() + 1));
+    }
+
+    public synchronized void reloadPrompt() {
+        ConfigSnapshot prev = current.get();
+        publish(new ConfigSnapshot(prev.config(), loadPromptFromFile(), loadPromptPart2FromFile(), prev.version() + 1));
+        log.info("Prompt reloaded");
+    }
+
+    public synchronized void reloadAll() {
+        ConfigSnapshot prev = current.get();
+        AppConfig config = readConfig();
+        publish(new ConfigSnapshot(config != null ? config : prev.config(), loadPromptFromFile(),
+                loadPromptPart2FromFile(), prev.version() + 1));
+        log.info("All settings reloaded");
+    }
+
+    // A file that does not parse (e.g. half-written by an editor) keeps the previous snapshot; only startup falls back to defaults.
+    private AppConfig readConfig() {
+        File file = DATA_DIR.resolve(CONFIG_FILE).toFile();
+        if (!file.exists()) {
+            log.error("Config file not found: {}", file.getPath());
+            return null;
+        }
         try {
-            File file = new File(CONFIG_PATH);
-            if (!file.exists()) {
-                log.error("Config file not found: {}", CONFIG_PATH);
-                config = new AppConfig();
-                config.ensureDefaults();
-                return;
-            }
-            ObjectMapper mapper = new ObjectMapper();
-            config = mapper.readValue(file, AppConfig.class);
+            AppConfig config = CONFIG_READER.readValue(file);
             config.ensureDefaults();
-            log.info("Config loaded from {}", CONFIG_PATH);
+            log.info("Config loaded from {}", file.getPath());
+            return config;
         } catch (IOException e) {
             log.error("Failed to load config: {}", e.getMessage());
-            config = new AppConfig();
-            config.ensureDefaults();
+            return null;
         }
     }
 
-    public void reloadPrompt() {
-        cachedPrompt = loadPromptFromFile();
-        log.info("Prompt reloaded");
+    private void publish(ConfigSnapshot next) {
+        ConfigSnapshot prev = current.getAndSet(next);
+        ConfigChange change = diff(prev, next);
+        if (change.changedKeys().isEmpty()) return;
+        log.info("Config changed: {}{}", change.changedKeys(),
+                change.changedLlmServers().isEmpty() ? "" : " (LLM servers " + change.changedLlmServers() + ")");
+        for (String key : change.changedKeys()) {
+            if (RESTART_KEYS.contains(key)) log.warn("Change to '{}' takes effect after a restart", key);
+        }
+        for (Consumer<ConfigChange> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                log.error("Config change listener failed: {}", e.getMessage(), e);
+            }
+        }
     }
 
-    public synchronized void reloadAll() {
-        load();
-        reloadPrompt();
-        log.info("All settings reloaded");
+    static ConfigChange diff(ConfigSnapshot prev, ConfigSnapshot next) {
+        Set<String> keys = new TreeSet<>();
+        Set<String> servers = new TreeSet<>();
+        if (prev.config() != next.config()) {
+            JsonNode a = Json.MAPPER.valueToTree(prev.config());
+            JsonNode b = Json.MAPPER.valueToTree(next.config());
+            Set<String> names = new HashSet<>();
+            a.fieldNames().forEachRemaining(names::add);
+            b.fieldNames().forEachRemaining(names::add);
+            for (String name : names) {
+                if (!Objects.equals(a.get(name), b.get(name))) keys.add(name);
+            }
+            if (keys.contains("llmServers")) {
+                Map<String, JsonNode> before = serversById(a.path("llmServers"));
+                Map<String, JsonNode> after = serversById(b.path("llmServers"));
+                Set<String> ids = new HashSet<>(before.keySet());
+                ids.addAll(after.keySet());
+                for (String id : ids) {
+                    if (!Objects.equals(before.get(id), after.get(id))) servers.add(id);
+                }
+            }
+        }
+        if (!Objects.equals(prev.promptPart1(), next.promptPart1())) keys.add("promptPart1");
+        if (!Objects.equals(prev.promptPart2(), next.promptPart2())) keys.add("promptPart2");
+        return new ConfigChange(prev, next, keys, servers);
+    }
+
+    private static Map<String, JsonNode> serversById(JsonNode servers) {
+        Map<String, JsonNode> result = new HashMap<>();
+        for (JsonNode s : servers) result.put(s.path("id").asText(), s);
+        return result;
     }
 
     private String loadPromptFromFile() {
         try {
-            Path promptRu = Path.of("data/prompt_ru.txt");
+            Path promptRu = DATA_DIR.resolve(PROMPT_RU_FILE);
             if (Files.exists(promptRu)) {
                 return Files.readString(promptRu);
             }
@@ -65,39 +151,44 @@ public class ConfigLoader {
             log.warn("Could not load prompt_ru.txt: {}", e.getMessage());
         }
         try {
-            return Files.readString(Path.of("data/system_prompt_part1_default.txt"));
+            return Files.readString(DATA_DIR.resolve(PROMPT_PART1_FILE));
         } catch (IOException e) {
             log.warn("Could not load default system prompt: {}", e.getMessage());
             return "Ты — DevOps-ассистент. Помогай пользователям управлять серверами.";
         }
     }
 
+    private String loadPromptPart2FromFile() {
+        try {
+            return Files.readString(DATA_DIR.resolve(PROMPT_PART2_FILE));
+        } catch (IOException e) {
+            log.warn("Could not load system prompt part2: {}", e.getMessage());
+            return "";
+        }
+    }
+
+    public ConfigSnapshot snapshot() {
+        return current.get();
+    }
+
     public AppConfig getConfig() {
-        return config;
+        return current.get().config();
     }
 
     public String getSystemPrompt() {
-        if (cachedPrompt == null) {
-            cachedPrompt = loadPromptFromFile();
-        }
-        String part2 = loadSystemPromptPart2();
-        return cachedPrompt + "\n\n" + part2;
+        ConfigSnapshot s = current.get();
+        return s.promptPart1() + "\n\n" + s.promptPart2();
     }
 
     public String getCachedPromptPart1() {
-        return cachedPrompt != null ? cachedPrompt : loadPromptFromFile();
+        return current.get().promptPart1();
     }
 
     public String loadSystemPromptPart1Default() {
         return getCachedPromptPart1();
     }
 
-    public String loadSystemPromptPart2() {
-        try {
-            return Files.readString(Path.of("data/system_prompt_part2_apis.md"));
-        } catch (IOException e) {
-            log.warn("Could not load system prompt part2: {}", e.getMessage());
-            return "";
-        }
+    public String getCachedPromptPart2() {
+        return current.get().promptPart2();
     }
 }
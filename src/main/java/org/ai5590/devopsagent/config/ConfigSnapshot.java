@@ -0,0 +1,6 @@
+package org.ai5590.devopsagent.config;
+
+// Published as a whole, so a reader never sees the config of one reload with the prompts of another.
+// The AppConfig inside is not modified after it has been published.
+public record ConfigSnapshot(AppConfig config, String promptPart1, String promptPart2, long version) {
+}
@@ -0,0 +1,118 @@
+package org.ai5590.devopsagent.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class ConfigWatcher {
+    private static final Logger log = LoggerFactory.getLogger(ConfigWatcher.class);
+    // Editors save in several writes (truncate, write, rename), so a reload waits for the directory to settle.
+    private static final long DEBOUNCE_MS = 300;
+    private static final Set<String> CONFIG_FILES = Set.of(ConfigLoader.CONFIG_FILE);
+    private static final Set<String> PROMPT_FILES = Set.of(
+            ConfigLoader.PROMPT_RU_FILE, ConfigLoader.PROMPT_PART1_FILE, ConfigLoader.PROMPT_PART2_FILE);
+
+    private final ConfigLoader configLoader;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "config-reload");
+        t.setDaemon(true);
+        return t;
+    });
+    private WatchService watchService;
+    private Thread watchThread;
+    private ScheduledFuture<?> pending;
+    private boolean configDirty;
+    private boolean promptDirty;
+
+    public ConfigWatcher(ConfigLoader configLoader) {
+        this.configLoader = configLoader;
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            ConfigLoader.DATA_DIR.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("Config file watching disabled: {}", e.getMessage());
+            return;
+        }
+        watchThread = new Thread(this::watchLoop, "config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("Watching {} for config and prompt changes", ConfigLoader.DATA_DIR.toAbsolutePath());
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    schedule(true, true);
+                } else if (event.context() instanceof Path name) {
+                    String file = name.getFileName().toString();
+                    if (CONFIG_FILES.contains(file)) schedule(true, false);
+                    else if (PROMPT_FILES.contains(file)) schedule(false, true);
+                }
+            }
+            if (!key.reset()) {
+                log.warn("Config directory is no longer watchable");
+                return;
+            }
+        }
+    }
+
+    private synchronized void schedule(boolean config, boolean prompt) {
+        configDirty |= config;
+        promptDirty |= prompt;
+        if (pending != null) pending.cancel(false);
+        pending = scheduler.schedule(this::reload, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void reload() {
+        boolean config;
+        boolean prompt;
+        synchronized (this) {
+            config = configDirty;
+            prompt = promptDirty;
+            configDirty = false;
+            promptDirty = false;
+        }
+        try {
+            if (config && prompt) configLoader.reloadAll();
+            else if (config) configLoader.load();
+            else if (prompt) configLoader.reloadPrompt();
+        } catch (RuntimeException e) {
+            log.error("Config reload failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Error closing config watcher: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.UUID;
+
+@Repository
+public class ActionLeaseRepository {
+    private static final Logger log = LoggerFactory.getLogger(ActionLeaseRepository.class);
+    private final DatabaseInitializer db;
+    private final Tracing tracing;
+    private final String owner = UUID.randomUUID().toString();
+
+    public ActionLeaseRepository(DatabaseInitializer db, Tracing tracing) {
+        this.db = db;
+        this.tracing = tracing;
+    }
+
+    // Succeeds when nobody holds the action or the previous holder's lease ran out (its node stopped mid-run). A lease
+    // marked done is never handed out again: the row outlives the run so that a node whose cache still shows the action
+    // as pending cannot start it a second time.
+    public boolean claim(String userLogin, String actionId, Duration lease) {
+        return tracing.call("db.action_leases.claim", () -> {
+            long now = System.currentTimeMillis();
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "INSERT INTO action_leases (user_login, action_id, owner, expires_at) VALUES (?, ?, ?, ?) " +
+                         "ON CONFLICT(user_login, action_id) DO UPDATE SET owner = excluded.owner, expires_at = excluded.expires_at " +
+                         "WHERE action_leases.done = 0 AND action_leases.expires_at < ?")) {
+                ps.setString(1, userLogin);
+                ps.setString(2, actionId);
+                ps.setString(3, owner);
+                ps.setLong(4, now + lease.toMillis());
+                ps.setLong(5, now);
+                return ps.executeUpdate() == 1;
+            } catch (SQLException e) {
+                log.error("Error claiming action lease: {}", e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    // Pushes the expiry forward while the action runs; false when another node has taken the lease over meanwhile.
+    public boolean renew(String userLogin, String actionId, Duration lease) {
+        return tracing.call("db.action_leases.renew", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "UPDATE action_leases SET expires_at = ? WHERE user_login = ? AND action_id = ? AND owner = ?")) {
+                ps.setLong(1, System.currentTimeMillis() + lease.toMillis());
+                ps.setString(2, userLogin);
+                ps.setString(3, actionId);
+                ps.setString(4, owner);
+                return ps.executeUpdate() == 1;
+            } catch (SQLException e) {
+                log.error("Error renewing action lease: {}", e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    public void complete(String userLogin, String actionId) {
+        tracing.run("db.action_leases.complete", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "UPDATE action_leases SET done = 1 WHERE user_login = ? AND action_id = ? AND owner = ?")) {
+                ps.setString(1, userLogin);
+                ps.setString(2, actionId);
+                ps.setString(3, owner);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error completing action lease: {}", e.getMessage());
+            }
+        });
+    }
+
+    // A new batch of actions for the user (or the same batch offered again) makes the finished ones runnable again.
+    public void clearDone(String userLogin) {
+        tracing.run("db.action_leases.clearDone", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("DELETE FROM action_leases WHERE user_login = ? AND done = 1")) {
+                ps.setString(1, userLogin);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error clearing finished action leases: {}", e.getMessage());
+            }
+        });
+    }
+
+    public void release(String userLogin, String actionId) {
+        tracing.run("db.action_leases.release", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "DELETE FROM action_leases WHERE user_login = ? AND action_id = ? AND owner = ? AND done = 0")) {
+                ps.setString(1, userLogin);
+                ps.setString(2, actionId);
+                ps.setString(3, owner);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error releasing action lease: {}", e.getMessage());
+            }
+        });
+    }
+
+    public void releaseAll() {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM action_leases WHERE owner = ? AND done = 0")) {
+            ps.setString(1, owner);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Error releasing action leases: {}", e.getMessage());
+        }
+    }
+}
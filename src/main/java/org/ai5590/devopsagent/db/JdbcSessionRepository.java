@@ -0,0 +1,169 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+
+import java.io.*;
+import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class JdbcSessionRepository implements SessionRepository<MapSession> {
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionRepository.class);
+    // Every request touches its session; only the access time changed, so that write is skipped until it drifts this far.
+    private static final Duration ACCESS_WRITE_INTERVAL = Duration.ofSeconds(60);
+
+    private final DatabaseInitializer db;
+    private final Tracing tracing;
+    private final Duration maxInactive;
+    private final Map<String, Persisted> persisted = new ConcurrentHashMap<>();
+
+    private record Persisted(byte[] attributes, Instant lastAccessed, Duration maxInactive) {
+    }
+
+    public JdbcSessionRepository(DatabaseInitializer db, Tracing tracing, Duration maxInactive) {
+        this.db = db;
+        this.tracing = tracing;
+        this.maxInactive = maxInactive;
+    }
+
+    @Override
+    public MapSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(maxInactive);
+        return session;
+    }
+
+    @Override
+    public void save(MapSession session) {
+        String id = session.getId();
+        String originalId = session.getOriginalId();
+        boolean idChanged = !id.equals(originalId);
+        byte[] attributes = serialize(session);
+        Persisted prev = persisted.get(originalId);
+        if (!idChanged && prev != null && Arrays.equals(prev.attributes(), attributes)
+                && prev.maxInactive().equals(session.getMaxInactiveInterval())
+                && Duration.between(prev.lastAccessed(), session.getLastAccessedTime()).compareTo(ACCESS_WRITE_INTERVAL) < 0) {
+            return;
+        }
+
+        tracing.run("db.sessions.save", () -> {
+            try (Connection conn = db.getConnection()) {
+                conn.setAutoCommit(false);
+                if (idChanged) {
+                    try (PreparedStatement del = conn.prepareStatement("DELETE FROM http_sessions WHERE id = ?")) {
+                        del.setString(1, originalId);
+                        del.executeUpdate();
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO http_sessions (id, created_at, last_accessed_at, max_inactive_seconds, expires_at, attributes) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(id) DO UPDATE SET last_accessed_at = excluded.last_accessed_at, " +
+                        "max_inactive_seconds = excluded.max_inactive_seconds, expires_at = excluded.expires_at, attributes = excluded.attributes")) {
+                    long lastAccessed = session.getLastAccessedTime().toEpochMilli();
+                    ps.setString(1, id);
+                    ps.setLong(2, session.getCreationTime().toEpochMilli());
+                    ps.setLong(3, lastAccessed);
+                    ps.setInt(4, (int) session.getMaxInactiveInterval().toSeconds());
+                    ps.setLong(5, lastAccessed + session.getMaxInactiveInterval().toMillis());
+                    ps.setBytes(6, attributes);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                log.error("Error saving session: {}", e.getMessage());
+                return;
+            }
+            if (idChanged) persisted.remove(originalId);
+            persisted.put(id, new Persisted(attributes, session.getLastAccessedTime(), session.getMaxInactiveInterval()));
+        });
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        MapSession session = tracing.call("db.sessions.select", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT created_at, last_accessed_at, max_inactive_seconds, attributes FROM http_sessions WHERE id = ?")) {
+                ps.setString(1, id);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next()) return null;
+                MapSession s = new MapSession(id);
+                s.setCreationTime(Instant.ofEpochMilli(rs.getLong(1)));
+                s.setLastAccessedTime(Instant.ofEpochMilli(rs.getLong(2)));
+                s.setMaxInactiveInterval(Duration.ofSeconds(rs.getInt(3)));
+                byte[] attributes = rs.getBytes(4);
+                deserialize(attributes).forEach(s::setAttribute);
+                persisted.put(id, new Persisted(attributes, s.getLastAccessedTime(), s.getMaxInactiveInterval()));
+                return s;
+            } catch (SQLException e) {
+                log.error("Error loading session: {}", e.getMessage());
+                return null;
+            }
+        });
+        if (session != null && session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        persisted.remove(id);
+        tracing.run("db.sessions.delete", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("DELETE FROM http_sessions WHERE id = ?")) {
+                ps.setString(1, id);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error deleting session: {}", e.getMessage());
+            }
+        });
+    }
+
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        persisted.values().removeIf(p -> p.lastAccessed().plus(p.maxInactive()).isBefore(now));
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM http_sessions WHERE expires_at < ?")) {
+            ps.setLong(1, now.toEpochMilli());
+            int removed = ps.executeUpdate();
+            if (removed > 0) log.debug("Removed {} expired sessions", removed);
+        } catch (SQLException e) {
+            log.error("Error removing expired sessions: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] serialize(MapSession session) {
+        HashMap<String, Object> attributes = new HashMap<>();
+        for (String name : session.getAttributeNames()) {
+            attributes.put(name, session.getAttribute(name));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(attributes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Session attributes are not serializable", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> deserialize(byte[] attributes) {
+        if (attributes == null) return Map.of();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(attributes))) {
+            return (Map<String, Object>) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error reading session attributes: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+
+@Repository
+public class LlmCacheRepository {
+    private static final Logger log = LoggerFactory.getLogger(LlmCacheRepository.class);
+    private final DatabaseInitializer db;
+    private final Tracing tracing;
+
+    public record Entry(String serverId, String model, String response, long latencyMs, long createdAt) {
+    }
+
+    public LlmCacheRepository(DatabaseInitializer db, Tracing tracing) {
+        this.db = db;
+        this.tracing = tracing;
+    }
+
+    public Entry find(String cacheKey) {
+        return tracing.call("db.llm_cache.find", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT server_id, model, response, latency_ms, created_at FROM llm_cache WHERE cache_key = ?")) {
+                ps.setString(1, cacheKey);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return new Entry(rs.getString("server_id"), rs.getString("model"), rs.getString("response"),
+                            rs.getLong("latency_ms"), rs.getLong("created_at"));
+                }
+            } catch (SQLException e) {
+                log.error("Error loading cached LLM reply: {}", e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    // A repeated store replaces the old reply: it only happens after the old one expired.
+    public void put(String cacheKey, String userLogin, Entry entry) {
+        tracing.run("db.llm_cache.put", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(
+                         "INSERT INTO llm_cache (cache_key, user_login, server_id, model, response, latency_ms, created_at, last_hit_at, hits) " +
+                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0) ON CONFLICT(cache_key) DO UPDATE SET " +
+                         "response = excluded.response, latency_ms = excluded.latency_ms, " +
+                         "created_at = excluded.created_at, last_hit_at = excluded.last_hit_at, hits = 0")) {
+                ps.setString(1, cacheKey);
+                ps.setString(2, userLogin);
+                ps.setString(3, entry.serverId());
+                ps.setString(4, entry.model());
+                ps.setString(5, entry.response());
+                ps.setLong(6, entry.latencyMs());
+                ps.setLong(7, entry.createdAt());
+                ps.setLong(8, entry.createdAt());
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error storing cached LLM reply: {}", e.getMessage());
+            }
+        });
+    }
+
+    public void touch(String cacheKey, long hitAt) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE llm_cache SET last_hit_at = ?, hits = hits + 1 WHERE cache_key = ?")) {
+            ps.setLong(1, hitAt);
+            ps.setString(2, cacheKey);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Error updating cached LLM reply: {}", e.getMessage());
+        }
+    }
+
+    public void deleteServer(String serverId) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM llm_cache WHERE server_id = ?")) {
+            ps.setString(1, serverId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Error deleting cached LLM replies: {}", e.getMessage());
+        }
+    }
+
+    // Expired rows first, then the least recently hit ones beyond maxEntries.
+    public int prune(long createdBefore, int maxEntries) {
+        int removed = 0;
+        try (Connection conn = db.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM llm_cache WHERE created_at < ?")) {
+                ps.setLong(1, createdBefore);
+                removed += ps.executeUpdate();
+            }
+            long count;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM llm_cache");
+                 ResultSet rs = ps.executeQuery()) {
+                count = rs.next() ? rs.getLong(1) : 0;
+            }
+            if (count > maxEntries) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM llm_cache WHERE cache_key IN " +
+                        "(SELECT cache_key FROM llm_cache ORDER BY last_hit_at ASC LIMIT ?)")) {
+                    ps.setLong(1, count - maxEntries);
+                    removed += ps.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error pruning LLM cache: {}", e.getMessage());
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,6 @@
+package org.ai5590.devopsagent.db;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record Message(long id, String role, String content, @JsonProperty("created_at") String createdAt) {
+}
@@ -0,0 +1,331 @@
+package org.ai5590.devopsagent.db;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+@Component
+public class MessageJournal {
+    private static final Logger log = LoggerFactory.getLogger(MessageJournal.class);
+    private static final long GROUP_COMMIT_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int MAX_BATCH_ROWS = 256;
+    private static final DateTimeFormatter CREATED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DatabaseInitializer db;
+    private final BlockingQueue<Op> queue = new LinkedBlockingQueue<>();
+    private final Map<String, UserOverlay> overlays = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private final Thread writer;
+    private final boolean shared;
+    private long lastAssignedId;
+    private volatile long committedUpTo;
+    private volatile boolean running = true;
+    private Connection connection;
+
+    // message == null marks a "delete everything up to hideUpTo" operation for the user.
+    private record Op(String userLogin, Message message, long hideUpTo, CompletableFuture<Long> ack) {
+    }
+
+    private static final class UserOverlay {
+        final List<Message> pending = new ArrayList<>();
+        long hiddenUpTo;
+    }
+
+    public record Appended(Message message, CompletableFuture<Long> ack) {
+    }
+
+    public record Snapshot(List<Message> pending, long hiddenUpTo, long committedUpTo) {
+        // Adds overlay rows newer than sinceId that the DB query did not return; a row committed in between is kept once.
+        public List<Message> merge(List<Message> committed, long sinceId) {
+            if (pending.isEmpty()) return committed;
+            Set<Long> seen = new HashSet<>();
+            for (Message m : committed) seen.add(m.id());
+            List<Message> result = new ArrayList<>(committed);
+            for (Message m : pending) {
+                if (m.id() > sinceId && seen.add(m.id())) result.add(m);
+            }
+            if (result.size() > committed.size()) result.sort(Comparator.comparingLong(Message::id));
+            return result;
+        }
+    }
+
+    public MessageJournal(DatabaseInitializer db) {
+        this.db = db;
+        this.shared = db.backend().isShared();
+        try {
+            this.lastAssignedId = shared ? 0 : db.backend().currentMessageId();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot initialize message journal", e);
+        }
+        this.committedUpTo = lastAssignedId;
+        this.writer = new Thread(this::writeLoop, "message-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // The ack future completes with the message id once the row is committed, or -1 if the commit failed.
+    public Appended append(String userLogin, String role, String content) {
+        CompletableFuture<Long> ack = new CompletableFuture<>();
+        String createdAt = LocalDateTime.now(ZoneOffset.UTC).format(CREATED_AT_FORMAT);
+        // On a shared database other nodes insert too: ids come from the database sequence and the committed-id
+        // watermark is not used. Locally, ids are taken under the lock so that queue order is id order.
+        long sharedId = shared ? nextId() : 0;
+        Message message;
+        synchronized (appendLock) {
+            if (!running) throw new IllegalStateException("Message journal is closed");
+            lastAssignedId = shared ? Math.max(lastAssignedId, sharedId) : nextId();
+            message = new Message(shared ? sharedId : lastAssignedId, role, content, createdAt);
+            overlays.compute(userLogin, (k, overlay) -> {
+                UserOverlay o = overlay != null ? overlay : new UserOverlay();
+                synchronized (o) {
+                    o.pending.add(message);
+                }
+                return o;
+            });
+            queue.add(new Op(userLogin, message, 0, ack));
+        }
+        return new Appended(message, ack);
+    }
+
+    private long nextId() {
+        try {
+            return db.backend().nextMessageId();
+        } catch (SQLException e) {
+            log.error("Error assigning message id: {}", e.getMessage());
+            throw new IllegalStateException("Cannot assign message id", e);
+        }
+    }
+
+    public CompletableFuture<Long> deleteAll(String userLogin) {
+        CompletableFuture<Long> ack = new CompletableFuture<>();
+        synchronized (appendLock) {
+            if (!running) throw new IllegalStateException("Message journal is closed");
+            long hideUpTo = shared ? Long.MAX_VALUE : lastAssignedId;
+            overlays.compute(userLogin, (k, overlay) -> {
+                UserOverlay o = overlay != null ? overlay : new UserOverlay();
+                synchronized (o) {
+                    o.pending.clear();
+                    o.hiddenUpTo = hideUpTo;
+                }
+                return o;
+            });
+            queue.add(new Op(userLogin, null, hideUpTo, ack));
+        }
+        return ack;
+    }
+
+    // Read the snapshot before querying the DB: rows with id <= committedUpTo are guaranteed to be in the table,
+    // newer ones are taken from the overlay, so a row is never seen twice or missed while it is being committed.
+    public Snapshot snapshot(String userLogin) {
+        UserOverlay o = overlays.get(userLogin);
+        List<Message> pending = List.of();
+        long hiddenUpTo = 0;
+        if (o != null) {
+            synchronized (o) {
+                pending = new ArrayList<>(o.pending);
+                hiddenUpTo = o.hiddenUpTo;
+            }
+        }
+        return new Snapshot(pending, hiddenUpTo, shared ? Long.MAX_VALUE : committedUpTo);
+    }
+
+    private void writeLoop() {
+        List<Op> batch = new ArrayList<>(MAX_BATCH_ROWS);
+        while (running || !queue.isEmpty()) {
+            try {
+                Op first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + GROUP_COMMIT_WINDOW_NANOS;
+                while (batch.size() < MAX_BATCH_ROWS) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Op next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Message journal writer error: {}", e.getMessage(), e);
+                fail(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+        closeConnection();
+    }
+
+    // With a sharded backend each shard file is its own transaction; ops of one user always land in the same group,
+    // in queue order.
+    private void commit(List<Op> batch) {
+        StorageBackend backend = db.backend();
+        Map<String, List<Op>> byShard = new LinkedHashMap<>();
+        for (Op op : batch) {
+            String shard = backend.shardOf(op.userLogin());
+            byShard.computeIfAbsent(shard != null ? shard : "", k -> new ArrayList<>()).add(op);
+        }
+        if (byShard.size() == 1 && byShard.containsKey("")) {
+            commitMain(batch);
+            return;
+        }
+        for (List<Op> ops : byShard.values()) commitShard(ops);
+    }
+
+    private void commitMain(List<Op> batch) {
+        boolean committed = false;
+        try {
+            Connection conn = connection();
+            write(conn, batch);
+            conn.commit();
+            committed = true;
+        } catch (SQLException | RuntimeException e) {
+            log.error("Error committing {} journal entries: {}", batch.size(), e.getMessage());
+            rollbackQuietly();
+        }
+        publish(batch, committed);
+    }
+
+    // Shard connections are borrowed per batch so that the router can close shards of users that went quiet.
+    private void commitShard(List<Op> ops) {
+        boolean committed = false;
+        try (Connection conn = db.getConnection(ops.get(0).userLogin())) {
+            conn.setAutoCommit(false);
+            try {
+                write(conn, ops);
+                conn.commit();
+                committed = true;
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(conn);
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.error("Error committing {} journal entries: {}", ops.size(), e.getMessage());
+        }
+        publish(ops, committed);
+    }
+
+    private void write(Connection conn, List<Op> batch) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO messages (id, user_login, role, content, created_at) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement delete = conn.prepareStatement(
+                     "DELETE FROM messages WHERE user_login = ? AND id <= ?")) {
+            for (Op op : batch) {
+                Message m = op.message();
+                if (m != null) {
+                    insert.setLong(1, m.id());
+                    insert.setString(2, op.userLogin());
+                    insert.setString(3, m.role());
+                    insert.setString(4, m.content());
+                    insert.setString(5, m.createdAt());
+                    insert.addBatch();
+                } else {
+                    insert.executeBatch();
+                    delete.setString(1, op.userLogin());
+                    delete.setLong(2, op.hideUpTo());
+                    delete.executeUpdate();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private void publish(List<Op> batch, boolean committed) {
+        long maxId = committedUpTo;
+        for (Op op : batch) {
+            if (op.message() != null) maxId = Math.max(maxId, op.message().id());
+        }
+        // Failed rows are dropped from the overlay too; advancing the watermark keeps readers consistent either way.
+        committedUpTo = maxId;
+        Set<String> changedUsers = new LinkedHashSet<>();
+        for (Op op : batch) {
+            changedUsers.add(op.userLogin());
+            overlays.computeIfPresent(op.userLogin(), (k, o) -> {
+                synchronized (o) {
+                    if (op.message() != null) {
+                        o.pending.removeIf(m -> m.id() <= op.message().id());
+                    } else if (o.hiddenUpTo == op.hideUpTo()) {
+                        // A failed delete left the rows in the table, so they are shown again.
+                        o.hiddenUpTo = 0;
+                    }
+                    return o.pending.isEmpty() && o.hiddenUpTo == 0 ? null : o;
+                }
+            });
+            Message m = op.message();
+            op.ack().complete(!committed ? -1L : m != null ? m.id() : op.hideUpTo());
+        }
+        if (committed && shared) {
+            for (String userLogin : changedUsers) db.backend().publishChange(userLogin);
+        }
+    }
+
+    // Ops the failed batch has not acknowledged yet leave the overlay as failed rows do, so readers never keep seeing
+    // rows that were not written.
+    private void fail(List<Op> batch) {
+        List<Op> unacked = new ArrayList<>();
+        for (Op op : batch) {
+            if (!op.ack().isDone()) unacked.add(op);
+        }
+        try {
+            publish(unacked, false);
+        } catch (RuntimeException e) {
+            log.error("Error releasing failed journal entries: {}", e.getMessage());
+            for (Op op : unacked) op.ack().complete(-1L);
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = db.getConnection();
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+
+    private void rollbackQuietly() {
+        if (connection != null) rollbackQuietly(connection);
+        closeConnection();
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            log.warn("Rollback failed: {}", e.getMessage());
+        }
+    }
+
+    private void closeConnection() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Error closing journal connection: {}", e.getMessage());
+        }
+        connection = null;
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (appendLock) {
+            running = false;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,104 +1,182 @@
 package org.ai5590.devopsagent.db;
 
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Repository
 public class MessageRepository {
     private static final Logger log = LoggerFactory.getLogger(MessageRepository.class);
+    private static final int RECENT_WINDOW_SIZE = 50;
+    private static final long RECENT_BUDGET_BYTES = 64L * 1024 * 1024;
     private final DatabaseInitializer db;
+    private final MessageJournal journal;
+    private final Tracing tracing;
+    private final RecentMessageCache recent = new RecentMessageCache(RECENT_WINDOW_SIZE, RECENT_BUDGET_BYTES);
 
-    public MessageRepository(DatabaseInitializer db) {
+    public MessageRepository(DatabaseInitializer db, MessageJournal journal, Tracing tracing) {
         this.db = db;
+        this.journal = journal;
+        this.tracing = tracing;
+        db.backend().addChangeListener(userLogin -> {
+            if (userLogin == null) recent.clear();
+            else recent.invalidate(userLogin);
+        });
     }
 
-    public long addMessage(String userLogin, String role, String content) {
-        try (Connection conn = db.getConnection()) {
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO messages (user_login, role, content) VALUES (?, ?, ?)")) {
-                ps.setString(1, userLogin);
-                ps.setString(2, role);
-                ps.setString(3, content);
-                ps.executeUpdate();
+    public CompletableFuture<Long> addMessage(String userLogin, String role, String content) {
+        return tracing.call("db.messages.append", () -> {
+            MessageJournal.Appended appended = journal.append(userLogin, role, content);
+            RecentMessageCache.Window w = recent.peek(userLogin);
+            if (w != null) {
+                synchronized (w) {
+                    if (w.isLoaded()) {
+                        w.add(appended.message());
+                        recent.charge(userLogin, w);
+                    }
+                }
             }
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) return rs.getLong(1);
+            return appended.ack().thenApply(id -> {
+                if (id < 0) recent.invalidate(userLogin);
+                return id;
+            });
+        });
+    }
+
+    public List<Message> getLastMessages(String userLogin, int limit) {
+        return tracing.call("db.messages.selectLast", () -> {
+            if (limit <= recent.windowSize()) {
+                RecentMessageCache.Window w = window(userLogin);
+                synchronized (w) {
+                    return w.last(limit);
+                }
+            }
+            try {
+                return selectLast(userLogin, limit, journal.snapshot(userLogin));
+            } catch (SQLException e) {
+                log.error("Error getting messages: {}", e.getMessage());
+                return new ArrayList<>();
+            }
+        });
+    }
+
+    public List<Message> getMessagesSince(String userLogin, long sinceId) {
+        return tracing.call("db.messages.selectSince", () -> {
+            RecentMessageCache.Window w = window(userLogin);
+            synchronized (w) {
+                List<Message> cached = w.since(sinceId);
+                if (cached != null) return cached;
+            }
+            try {
+                return selectSince(userLogin, sinceId, journal.snapshot(userLogin));
+            } catch (SQLException e) {
+                log.error("Error getting messages since: {}", e.getMessage());
+                return new ArrayList<>();
             }
-        } catch (SQLException e) {
-            log.error("Error adding message: {}", e.getMessage());
+        });
+    }
+
+    public int getMessageCount(String userLogin) {
+        return tracing.call("db.messages.count", () -> {
+            RecentMessageCache.Window w = window(userLogin);
+            synchronized (w) {
+                return w.count();
+            }
+        });
+    }
+
+    public long getLastMessageId(String userLogin) {
+        RecentMessageCache.Window w = window(userLogin);
+        synchronized (w) {
+            return w.lastId();
         }
-        return -1;
     }
 
-    public List<Map<String, Object>> getLastMessages(String userLogin, int limit) {
-        List<Map<String, Object>> msgs = new ArrayList<>();
-        String sql = "SELECT id, role, content, created_at FROM messages WHERE user_login = ? ORDER BY id DESC LIMIT ?";
-        try (Connection conn = db.getConnection();
+    public CompletableFuture<Long> deleteAllMessages(String userLogin) {
+        return tracing.call("db.messages.deleteAll", () -> {
+            CompletableFuture<Long> ack = journal.deleteAll(userLogin);
+            recent.invalidate(userLogin);
+            // A window loaded while the delete was queued is empty; after a failed delete the rows are still there.
+            return ack.thenApply(id -> {
+                if (id < 0) recent.invalidate(userLogin);
+                return id;
+            });
+        });
+    }
+
+    private RecentMessageCache.Window window(String userLogin) {
+        RecentMessageCache.Window w = recent.acquire(userLogin);
+        synchronized (w) {
+            if (!w.isLoaded()) {
+                // On a DB error the window stays unloaded (empty) and the next call retries.
+                tracing.run("db.messages.loadRecent", () -> {
+                    MessageJournal.Snapshot snapshot = journal.snapshot(userLogin);
+                    try {
+                        w.fill(selectLast(userLogin, recent.windowSize(), snapshot), count(userLogin, snapshot));
+                    } catch (SQLException e) {
+                        log.error("Error loading recent messages: {}", e.getMessage());
+                    }
+                });
+                recent.charge(userLogin, w);
+            }
+        }
+        return w;
+    }
+
+    private List<Message> selectLast(String userLogin, int limit, MessageJournal.Snapshot snapshot) throws SQLException {
+        List<Message> msgs = new ArrayList<>();
+        String sql = "SELECT id, role, content, created_at FROM messages WHERE user_login = ? AND id > ? AND id <= ? ORDER BY id DESC LIMIT ?";
+        try (Connection conn = db.getConnection(userLogin);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userLogin);
-            ps.setInt(2, limit);
+            ps.setLong(2, snapshot.hiddenUpTo());
+            ps.setLong(3, snapshot.committedUpTo());
+            ps.setInt(4, limit);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                Map<String, Object> m = new LinkedHashMap<>();
-                m.put("id", rs.getLong("id"));
-                m.put("role", rs.getString("role"));
-                m.put("content", rs.getString("content"));
-                m.put("created_at", rs.getString("created_at"));
-                msgs.add(m);
+                msgs.add(new Message(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
             }
-        } catch (SQLException e) {
-            log.error("Error getting messages: {}", e.getMessage());
         }
         Collections.reverse(msgs);
-        return msgs;
+        msgs = snapshot.merge(msgs, 0);
+        return msgs.size() > limit ? new ArrayList<>(msgs.subList(msgs.size() - limit, msgs.size())) : msgs;
     }
 
-    public List<Map<String, Object>> getMessagesSince(String userLogin, long sinceId) {
-        List<Map<String, Object>> msgs = new ArrayList<>();
-        String sql = "SELECT id, role, content, created_at FROM messages WHERE user_login = ? AND id > ? ORDER BY id ASC";
-        try (Connection conn = db.getConnection();
+    private List<Message> selectSince(String userLogin, long sinceId, MessageJournal.Snapshot snapshot) throws SQLException {
+        List<Message> msgs = new ArrayList<>();
+        String sql = "SELECT id, role, content, created_at FROM messages WHERE user_login = ? AND id > ? AND id <= ? ORDER BY id ASC";
+        try (Connection conn = db.getConnection(userLogin);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userLogin);
-            ps.setLong(2, sinceId);
+            ps.setLong(2, Math.max(sinceId, snapshot.hiddenUpTo()));
+            ps.setLong(3, snapshot.committedUpTo());
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                Map<String, Object> m = new LinkedHashMap<>();
-                m.put("id", rs.getLong("id"));
-                m.put("role", rs.getString("role"));
-                m.put("content", rs.getString("content"));
-                m.put("created_at", rs.getString("created_at"));
-                msgs.add(m);
+                msgs.add(new Message(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
             }
-        } catch (SQLException e) {
-            log.error("Error getting messages since: {}", e.getMessage());
         }
-        return msgs;
+        return snapshot.merge(msgs, sinceId);
     }
 
-    public int getMessageCount(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM messages WHERE user_login = ?")) {
-            ps.setString(1, userLogin);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getInt(1);
-        } catch (SQLException e) {
-            log.error("Error counting messages: {}", e.getMessage());
+    private int count(String userLogin, MessageJournal.Snapshot snapshot) throws SQLException {
+        List<Message> pending = snapshot.pending();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM messages WHERE user_login = ? AND id > ? AND id <= ?");
+        if (!pending.isEmpty()) {
+            sql.append(" AND id NOT IN (").append("?, ".repeat(pending.size() - 1)).append("?)");
         }
-        return 0;
-    }
-
-    public void deleteAllMessages(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("DELETE FROM messages WHERE user_login = ?")) {
+        try (Connection conn = db.getConnection(userLogin);
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             ps.setString(1, userLogin);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            log.error("Error deleting messages: {}", e.getMessage());
+            ps.setLong(2, snapshot.hiddenUpTo());
+            ps.setLong(3, snapshot.committedUpTo());
+            for (int i = 0; i < pending.size(); i++) ps.setLong(4 + i, pending.get(i).id());
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) + pending.size() : pending.size();
         }
     }
 }
@@ -0,0 +1,114 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.HexFormat;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+@Repository
+public class OutputBlobRepository {
+    private static final Logger log = LoggerFactory.getLogger(OutputBlobRepository.class);
+    private final DatabaseInitializer db;
+    private final Tracing tracing;
+
+    public record Blob(String hash, long rawSize, long compressedSize, byte[] compressed) {
+        public InputStream open() {
+            return new InflaterInputStream(new ByteArrayInputStream(compressed));
+        }
+    }
+
+    public OutputBlobRepository(DatabaseInitializer db, Tracing tracing) {
+        this.db = db;
+        this.tracing = tracing;
+    }
+
+    // Keyed by user and content hash: repeated runs of the same command store the body once, and one user
+    // cannot probe for another user's outputs by hash.
+    public String store(String userLogin, byte[] raw) {
+        return tracing.call("db.output_blobs.store", () -> {
+            String hash = sha256(raw);
+            byte[] compressed = deflate(raw);
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "INSERT INTO output_blobs (user_login, hash, raw_size, compressed_size, content, created_at) " +
+                         "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(user_login, hash) DO NOTHING")) {
+                ps.setString(1, userLogin);
+                ps.setString(2, hash);
+                ps.setLong(3, raw.length);
+                ps.setLong(4, compressed.length);
+                ps.setBytes(5, compressed);
+                ps.setLong(6, System.currentTimeMillis());
+                ps.executeUpdate();
+                Tracing.tag("blob.raw_size", raw.length);
+                Tracing.tag("blob.compressed_size", compressed.length);
+                return hash;
+            } catch (SQLException e) {
+                log.error("Error storing output blob: {}", e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    public Blob find(String userLogin, String hash) {
+        return tracing.call("db.output_blobs.find", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT raw_size, compressed_size, content FROM output_blobs WHERE user_login = ? AND hash = ?")) {
+                ps.setString(1, userLogin);
+                ps.setString(2, hash);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return new Blob(hash, rs.getLong("raw_size"), rs.getLong("compressed_size"), rs.getBytes("content"));
+                }
+            } catch (SQLException e) {
+                log.error("Error loading output blob: {}", e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    public void deleteAll(String userLogin) {
+        tracing.run("db.output_blobs.delete_all", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("DELETE FROM output_blobs WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                log.error("Error deleting output blobs: {}", e.getMessage());
+            }
+        });
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater)) {
+            dos.write(raw);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] raw) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.ai5590.devopsagent.db;
 
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -10,46 +11,98 @@ import java.sql.*;
 public class PendingActionsRepository {
     private static final Logger log = LoggerFactory.getLogger(PendingActionsRepository.class);
     private final DatabaseInitializer db;
+    private final Tracing tracing;
 
-    public PendingActionsRepository(DatabaseInitializer db) {
+    public record PendingActionsRow(String actionsJson, String actionStatesJson) {
+    }
+
+    public PendingActionsRepository(DatabaseInitializer db, Tracing tracing) {
         this.db = db;
+        this.tracing = tracing;
     }
 
-    public void savePendingActions(String userLogin, String actionsJson) {
-        try (Connection conn = db.getConnection()) {
-            try (PreparedStatement del = conn.prepareStatement("DELETE FROM pending_actions WHERE user_login = ?")) {
-                del.setString(1, userLogin);
-                del.executeUpdate();
+    // The writes return false when the statement failed, so a write-behind caller keeps the change and tries again.
+    public boolean savePendingActions(String userLogin, String actionsJson, String actionStatesJson) {
+        return tracing.call("db.pending_actions.replace", () -> {
+            try (Connection conn = db.getConnection(userLogin)) {
+                conn.setAutoCommit(false);
+                // The connection may be reused (shard router, pool): never hand it back inside a transaction.
+                try {
+                    try (PreparedStatement del = conn.prepareStatement("DELETE FROM pending_actions WHERE user_login = ?")) {
+                        del.setString(1, userLogin);
+                        del.executeUpdate();
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT INTO pending_actions (user_login, actions_json, action_states) VALUES (?, ?, ?)")) {
+                        ps.setString(1, userLogin);
+                        ps.setString(2, actionsJson);
+                        ps.setString(3, actionStatesJson);
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                    return true;
+                } catch (SQLException e) {
+                    try {
+                        conn.rollback();
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                log.error("Error saving pending actions: {}", e.getMessage());
+                return false;
             }
-            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO pending_actions (user_login, actions_json) VALUES (?, ?)")) {
-                ps.setString(1, userLogin);
-                ps.setString(2, actionsJson);
+        });
+    }
+
+    // Only the states of the same actions are replaced: a node still holding an older batch must not stamp its states
+    // onto the batch another node stored meanwhile.
+    public boolean updateActionStates(String userLogin, String actionsJson, String actionStatesJson) {
+        return tracing.call("db.pending_actions.updateStates", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "UPDATE pending_actions SET action_states = ? WHERE user_login = ? AND actions_json = ?")) {
+                ps.setString(1, actionStatesJson);
+                ps.setString(2, userLogin);
+                ps.setString(3, actionsJson);
                 ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                log.error("Error updating action states: {}", e.getMessage());
+                return false;
             }
-        } catch (SQLException e) {
-            log.error("Error saving pending actions: {}", e.getMessage());
-        }
+        });
     }
 
-    public String getPendingActions(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT actions_json FROM pending_actions WHERE user_login = ? ORDER BY id DESC LIMIT 1")) {
-            ps.setString(1, userLogin);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getString("actions_json");
-        } catch (SQLException e) {
-            log.error("Error getting pending actions: {}", e.getMessage());
-        }
-        return null;
+    public PendingActionsRow getPendingActions(String userLogin) {
+        return tracing.call("db.pending_actions.select", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement(
+                         "SELECT actions_json, action_states FROM pending_actions WHERE user_login = ? ORDER BY id DESC LIMIT 1")) {
+                ps.setString(1, userLogin);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return new PendingActionsRow(rs.getString(1), rs.getString(2));
+            } catch (SQLException e) {
+                log.error("Error getting pending actions: {}", e.getMessage());
+            }
+            return null;
+        });
     }
 
-    public void clearPendingActions(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("DELETE FROM pending_actions WHERE user_login = ?")) {
-            ps.setString(1, userLogin);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            log.error("Error clearing pending actions: {}", e.getMessage());
-        }
+    public boolean clearPendingActions(String userLogin) {
+        return tracing.call("db.pending_actions.delete", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("DELETE FROM pending_actions WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                log.error("Error clearing pending actions: {}", e.getMessage());
+                return false;
+            }
+        });
     }
 }
@@ -0,0 +1,327 @@
+package org.ai5590.devopsagent.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class PostgresStorageBackend implements StorageBackend {
+    private static final Logger log = LoggerFactory.getLogger(PostgresStorageBackend.class);
+    private static final String CHANGE_CHANNEL = "devops_agent_chat_state";
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final HikariDataSource pool;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+    private Thread listenerThread;
+    private final Object idLock = new Object();
+    private final List<IdRequest> idWaiters = new ArrayList<>();
+    private boolean fetchingIds;
+
+    public PostgresStorageBackend(AppConfig.StorageSettings settings) {
+        this.jdbcUrl = settings.getJdbcUrl();
+        this.username = settings.getUsername();
+        this.password = settings.resolvePassword();
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(settings.getPoolSize());
+        config.setMinimumIdle(Math.min(2, settings.getPoolSize()));
+        config.setPoolName("devops-agent-db");
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        this.pool = new HikariDataSource(config);
+    }
+
+    @Override
+    public String name() {
+        return "postgres:" + jdbcUrl;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    @Override
+    public void createSchema() throws SQLException {
+        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS users (
+                    id BIGSERIAL PRIMARY KEY,
+                    login TEXT UNIQUE NOT NULL,
+                    password_hash TEXT NOT NULL,
+                    prompt_part1_override TEXT,
+                    pending_prompt_update INTEGER DEFAULT 0,
+                    bootstrap_fingerprint TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS messages (
+                    id BIGSERIAL PRIMARY KEY,
+                    user_login TEXT NOT NULL,
+                    role TEXT NOT NULL,
+                    content TEXT NOT NULL,
+                    created_at TEXT DEFAULT to_char(now() AT TIME ZONE 'UTC', 'YYYY-MM-DD HH24:MI:SS')
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS user_settings (
+                    user_login TEXT PRIMARY KEY,
+                    show_debug INTEGER DEFAULT 0,
+                    selected_llm_server_id TEXT,
+                    model_override TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS audit (
+                    id BIGSERIAL PRIMARY KEY,
+                    timestamp TEXT NOT NULL,
+                    login TEXT NOT NULL,
+                    action TEXT NOT NULL,
+                    server TEXT,
+                    command TEXT,
+                    duration_ms BIGINT,
+                    result_snippet TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS pending_actions (
+                    id BIGSERIAL PRIMARY KEY,
+                    user_login TEXT NOT NULL,
+                    actions_json TEXT NOT NULL,
+                    action_states TEXT,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS action_leases (
+                    user_login TEXT NOT NULL,
+                    action_id TEXT NOT NULL,
+                    owner TEXT NOT NULL,
+                    expires_at BIGINT NOT NULL,
+                    done INTEGER NOT NULL DEFAULT 0,
+                    PRIMARY KEY (user_login, action_id)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS http_sessions (
+                    id TEXT PRIMARY KEY,
+                    created_at BIGINT NOT NULL,
+                    last_accessed_at BIGINT NOT NULL,
+                    max_inactive_seconds INTEGER NOT NULL,
+                    expires_at BIGINT NOT NULL,
+                    attributes BYTEA
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS output_blobs (
+                    user_login TEXT NOT NULL,
+                    hash TEXT NOT NULL,
+                    raw_size BIGINT NOT NULL,
+                    compressed_size BIGINT NOT NULL,
+                    content BYTEA NOT NULL,
+                    created_at BIGINT NOT NULL,
+                    PRIMARY KEY (user_login, hash)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS llm_cache (
+                    cache_key TEXT PRIMARY KEY,
+                    user_login TEXT NOT NULL,
+                    server_id TEXT,
+                    model TEXT,
+                    response TEXT NOT NULL,
+                    latency_ms BIGINT NOT NULL,
+                    created_at BIGINT NOT NULL,
+                    last_hit_at BIGINT NOT NULL,
+                    hits BIGINT DEFAULT 0
+                )
+            """);
+            stmt.executeUpdate("ALTER TABLE pending_actions ADD COLUMN IF NOT EXISTS action_states TEXT");
+            stmt.executeUpdate("ALTER TABLE users ADD COLUMN IF NOT EXISTS bootstrap_fingerprint TEXT");
+            stmt.executeUpdate("ALTER TABLE action_leases ADD COLUMN IF NOT EXISTS done INTEGER NOT NULL DEFAULT 0");
+            stmt.executeUpdate("ALTER TABLE user_settings ADD COLUMN IF NOT EXISTS agent_mode INTEGER DEFAULT 0");
+            stmt.executeUpdate("ALTER TABLE user_settings ADD COLUMN IF NOT EXISTS llm_cache INTEGER DEFAULT 1");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_user ON messages(user_login, id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_audit_login ON audit(login)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_pending_actions_user ON pending_actions(user_login)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_http_sessions_expires ON http_sessions(expires_at)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_llm_cache_last_hit ON llm_cache(last_hit_at)");
+        }
+        startListener();
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public long currentMessageId() throws SQLException {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM messages")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // Appends on this node that ask for an id while a fetch is in flight wait for it and are served together by the
+    // next one: one round trip per wave of concurrent messages instead of one per message. Ids are not fetched ahead
+    // of demand, since a block held by one node would be committed after higher ids of other nodes and readers
+    // polling past those would never see it.
+    @Override
+    public long nextMessageId() throws SQLException {
+        IdRequest mine = new IdRequest();
+        List<IdRequest> batch;
+        synchronized (idLock) {
+            idWaiters.add(mine);
+            while (!mine.done && fetchingIds) {
+                try {
+                    idLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    idWaiters.remove(mine);
+                    throw new SQLException("Interrupted while waiting for a message id", e);
+                }
+            }
+            if (!mine.done) {
+                fetchingIds = true;
+                batch = new ArrayList<>(idWaiters);
+                idWaiters.clear();
+            } else {
+                batch = List.of();
+            }
+        }
+        if (!batch.isEmpty()) {
+            long[] ids = null;
+            SQLException error = null;
+            try {
+                ids = fetchMessageIds(batch.size());
+            } catch (SQLException e) {
+                error = e;
+            }
+            synchronized (idLock) {
+                for (int i = 0; i < batch.size(); i++) {
+                    IdRequest r = batch.get(i);
+                    if (ids != null) r.id = ids[i];
+                    r.error = error;
+                    r.done = true;
+                }
+                fetchingIds = false;
+                idLock.notifyAll();
+            }
+        }
+        if (mine.error != null) throw mine.error;
+        return mine.id;
+    }
+
+    private long[] fetchMessageIds(int count) throws SQLException {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT nextval('messages_id_seq') FROM generate_series(1, ?)")) {
+            ps.setInt(1, count);
+            long[] ids = new long[count];
+            int n = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && n < count) ids[n++] = rs.getLong(1);
+            }
+            if (n < count) throw new SQLException("Sequence returned " + n + " of " + count + " message ids");
+            Arrays.sort(ids);
+            return ids;
+        }
+    }
+
+    private static final class IdRequest {
+        long id;
+        SQLException error;
+        boolean done;
+    }
+
+    @Override
+    public void publishChange(String userLogin) {
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+            ps.setString(1, CHANGE_CHANNEL);
+            ps.setString(2, nodeId + ":" + userLogin);
+            ps.execute();
+        } catch (SQLException e) {
+            log.error("Error publishing change for {}: {}", userLogin, e.getMessage());
+        }
+    }
+
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    private synchronized void startListener() {
+        if (listenerThread != null) return;
+        listenerThread = new Thread(this::listenLoop, "pg-change-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    // LISTEN needs a connection of its own that stays open, so it does not come from the pool.
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(jdbcUrl, username, password)) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANGE_CHANNEL);
+                }
+                // Events published while we were not listening are lost, so caches start over.
+                dispatch(null);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(500);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        String payload = n.getParameter();
+                        int sep = payload.indexOf(':');
+                        if (sep < 0 || payload.substring(0, sep).equals(nodeId)) continue;
+                        dispatch(payload.substring(sep + 1));
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                log.warn("Change listener disconnected: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String userLogin) {
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(userLogin);
+            } catch (RuntimeException e) {
+                log.error("Change listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (listenerThread != null) listenerThread.interrupt();
+        pool.close();
+    }
+}
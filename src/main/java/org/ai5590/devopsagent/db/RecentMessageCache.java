@@ -0,0 +1,143 @@
+package org.ai5590.devopsagent.db;
+
+import java.util.*;
+
+class RecentMessageCache {
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final int windowSize;
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Window> windows = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    RecentMessageCache(int windowSize, long budgetBytes) {
+        this.windowSize = windowSize;
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Last windowSize messages of one user plus the exact total count. Guarded by its own monitor.
+    final class Window {
+        private final ArrayDeque<Message> messages = new ArrayDeque<>();
+        private boolean loaded;
+        private int count;
+        private long bytes;
+        private long charged;
+
+        boolean isLoaded() {
+            return loaded;
+        }
+
+        void fill(List<Message> lastMessages, int totalCount) {
+            messages.clear();
+            bytes = 0;
+            for (Message m : lastMessages) {
+                messages.addLast(m);
+                bytes += sizeOf(m);
+            }
+            trim();
+            count = totalCount;
+            loaded = true;
+        }
+
+        void add(Message m) {
+            Message last = messages.peekLast();
+            if (last == null || m.id() > last.id()) {
+                messages.addLast(m);
+            } else {
+                // Two concurrent appends for the same user can arrive out of id order.
+                List<Message> sorted = new ArrayList<>(messages);
+                for (Message existing : sorted) {
+                    if (existing.id() == m.id()) return;
+                }
+                sorted.add(m);
+                sorted.sort(Comparator.comparingLong(Message::id));
+                messages.clear();
+                messages.addAll(sorted);
+            }
+            bytes += sizeOf(m);
+            count++;
+            trim();
+        }
+
+        List<Message> last(int limit) {
+            List<Message> result = new ArrayList<>(Math.min(limit, messages.size()));
+            int skip = messages.size() - limit;
+            for (Message m : messages) {
+                if (skip-- > 0) continue;
+                result.add(m);
+            }
+            return result;
+        }
+
+        // Returns null when older rows than the window may still be newer than the cursor.
+        List<Message> since(long sinceId) {
+            Message first = messages.peekFirst();
+            if (count > messages.size() && first != null && sinceId < first.id() - 1) return null;
+            List<Message> result = new ArrayList<>();
+            for (Message m : messages) {
+                if (m.id() > sinceId) result.add(m);
+            }
+            return result;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long lastId() {
+            Message last = messages.peekLast();
+            return last != null ? last.id() : 0;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        private void trim() {
+            while (messages.size() > windowSize) {
+                bytes -= sizeOf(messages.removeFirst());
+            }
+        }
+    }
+
+    int windowSize() {
+        return windowSize;
+    }
+
+    synchronized Window acquire(String userLogin) {
+        return windows.computeIfAbsent(userLogin, k -> new Window());
+    }
+
+    synchronized Window peek(String userLogin) {
+        return windows.get(userLogin);
+    }
+
+    synchronized void invalidate(String userLogin) {
+        Window w = windows.remove(userLogin);
+        if (w != null) totalBytes -= w.charged;
+    }
+
+    synchronized void clear() {
+        windows.clear();
+        totalBytes = 0;
+    }
+
+    // Called with the window's monitor held; evicts the least recently used users until the budget fits.
+    synchronized void charge(String userLogin, Window w) {
+        if (windows.get(userLogin) != w) return;
+        totalBytes += w.bytes - w.charged;
+        w.charged = w.bytes;
+        Iterator<Map.Entry<String, Window>> it = windows.entrySet().iterator();
+        while (totalBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<String, Window> eldest = it.next();
+            if (eldest.getValue() == w) continue;
+            totalBytes -= eldest.getValue().charged;
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(Message m) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (m.content().length() + m.role().length()
+                + (m.createdAt() != null ? m.createdAt().length() : 0));
+    }
+}
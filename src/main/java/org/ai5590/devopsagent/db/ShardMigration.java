@@ -0,0 +1,132 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// ./gradlew splitSqliteShards, with the application stopped: moves the per-user tables of the SQLite database into
+// shard files laid out by storage.shardDir / shardBy / shardBuckets. The database is backed up first, and rows are
+// copied with INSERT OR IGNORE, so an interrupted run can simply be repeated.
+public class ShardMigration {
+    private static final List<String> USER_TABLES = List.of("user_settings", "pending_actions", "output_blobs", "messages");
+    private static final int BATCH_ROWS = 500;
+    private static final DateTimeFormatter BACKUP_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final AppConfig.StorageSettings settings;
+    private final boolean keepSource;
+
+    public ShardMigration(AppConfig.StorageSettings settings, boolean keepSource) {
+        this.settings = settings;
+        this.keepSource = keepSource;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unexpected argument: " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        ConfigLoader configLoader = new ConfigLoader();
+        configLoader.init();
+        AppConfig.StorageSettings settings = configLoader.getConfig().getStorage();
+        if (!Files.exists(Path.of(settings.getSqlitePath()))) {
+            System.err.println("No database at " + settings.getSqlitePath());
+            System.exit(1);
+        }
+        new ShardMigration(settings, Boolean.parseBoolean(options.getOrDefault("keepSource", "false"))).run();
+        if (!"sqlite-sharded".equalsIgnoreCase(settings.getType())) {
+            System.out.println("Set storage.type to \"sqlite-sharded\" in data/config.json before starting the application.");
+        }
+    }
+
+    public void run() throws IOException, SQLException {
+        Path source = Path.of(settings.getSqlitePath());
+        Path backup = source.resolveSibling(source.getFileName() + ".before-sharding-" + LocalDateTime.now().format(BACKUP_SUFFIX));
+        Files.copy(source, backup);
+        System.out.println("Backup: " + backup);
+        Path shardDir = Path.of(settings.getShardDir());
+        Files.createDirectories(shardDir);
+        try (ShardRouter router = new ShardRouter(shardDir, settings.getShardBy(), settings.getShardBuckets(), settings.getMaxOpenShards());
+             Connection src = DriverManager.getConnection("jdbc:sqlite:" + source)) {
+            // An app.db written by an older version gets the current columns, so that both sides have the same tables.
+            SqliteStorageBackend.createUserTables(src);
+            for (String table : USER_TABLES) {
+                System.out.printf("%s: %d rows copied%n", table, copy(src, router, table));
+            }
+            if (!keepSource) clear(src);
+        }
+    }
+
+    private long copy(Connection src, ShardRouter router, String table) throws SQLException {
+        List<String> columns = columns(src, table);
+        String list = String.join(", ", columns);
+        String select = "SELECT " + list + " FROM " + table + " WHERE user_login = ?";
+        String insert = "INSERT OR IGNORE INTO " + table + " (" + list + ") VALUES (" + "?, ".repeat(columns.size() - 1) + "?)";
+        long copied = 0;
+        for (List<String> users : usersByShard(src, router, table).values()) {
+            try (Connection dst = router.getConnection(users.get(0));
+                 PreparedStatement in = src.prepareStatement(select);
+                 PreparedStatement out = dst.prepareStatement(insert)) {
+                dst.setAutoCommit(false);
+                for (String user : users) {
+                    in.setString(1, user);
+                    try (ResultSet rs = in.executeQuery()) {
+                        while (rs.next()) {
+                            for (int i = 1; i <= columns.size(); i++) out.setObject(i, rs.getObject(i));
+                            out.addBatch();
+                            if (++copied % BATCH_ROWS == 0) out.executeBatch();
+                        }
+                    }
+                }
+                out.executeBatch();
+                dst.commit();
+            }
+        }
+        return copied;
+    }
+
+    private static Map<String, List<String>> usersByShard(Connection src, ShardRouter router, String table) throws SQLException {
+        Map<String, List<String>> users = new TreeMap<>();
+        try (Statement stmt = src.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT user_login FROM " + table)) {
+            while (rs.next()) {
+                String user = rs.getString(1);
+                users.computeIfAbsent(router.shardOf(user), k -> new ArrayList<>()).add(user);
+            }
+        }
+        return users;
+    }
+
+    private static List<String> columns(Connection conn, String table) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) columns.add(rs.getString("name"));
+        }
+        return columns;
+    }
+
+    // The tables stay, empty: sqlite_sequence keeps the last message id, which the sharded backend continues from.
+    private static void clear(Connection src) throws SQLException {
+        src.setAutoCommit(false);
+        try (Statement stmt = src.createStatement()) {
+            for (String table : USER_TABLES) stmt.executeUpdate("DELETE FROM " + table);
+        }
+        src.commit();
+        src.setAutoCommit(true);
+        try (Statement stmt = src.createStatement()) {
+            stmt.executeUpdate("VACUUM");
+        }
+        System.out.println("Per-user tables cleared in the main database");
+    }
+}
@@ -0,0 +1,201 @@
+package org.ai5590.devopsagent.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Connections to the shard files. A closed connection goes back to its shard for reuse; when more than maxOpen shards
+// hold connections, the least recently used shards that have nothing borrowed are closed.
+class ShardRouter implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+    private static final int IDLE_PER_SHARD = 2;
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final Path dir;
+    private final boolean byHash;
+    private final int buckets;
+    private final int maxOpen;
+    private final Map<String, Shard> open = new LinkedHashMap<>(64, 0.75f, true);
+    // Shards whose schema was checked since startup; a shard reopened after eviction does not repeat it.
+    private final Set<String> initialized = ConcurrentHashMap.newKeySet();
+    private boolean closed;
+
+    private static final class Shard {
+        final String key;
+        final String url;
+        final Deque<Connection> idle = new ArrayDeque<>();
+        int borrowed;
+
+        Shard(String key, String url) {
+            this.key = key;
+            this.url = url;
+        }
+    }
+
+    ShardRouter(Path dir, String shardBy, int buckets, int maxOpen) {
+        this.dir = dir;
+        this.byHash = "hash".equalsIgnoreCase(shardBy);
+        this.buckets = Math.max(1, buckets);
+        this.maxOpen = Math.max(1, maxOpen);
+    }
+
+    // Two logins that map to the same file (case-insensitive file systems, replaced characters) simply share it:
+    // every per-user table is keyed by user_login.
+    String shardOf(String userLogin) {
+        if (byHash) return String.format(Locale.ROOT, "bucket-%03d", Math.floorMod(userLogin.hashCode(), buckets));
+        String name = userLogin.replaceAll("[^A-Za-z0-9._-]", "_");
+        return "user-" + (name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name);
+    }
+
+    Path dir() {
+        return dir;
+    }
+
+    Connection getConnection(String userLogin) throws SQLException {
+        String key = shardOf(userLogin);
+        Shard shard;
+        Connection conn;
+        List<Shard> closing;
+        synchronized (this) {
+            if (closed) throw new SQLException("Shard router is closed");
+            shard = open.get(key);
+            if (shard == null) {
+                shard = new Shard(key, "jdbc:sqlite:" + dir.resolve(key + ".db"));
+                open.put(key, shard);
+            }
+            shard.borrowed++;
+            conn = shard.idle.pollFirst();
+            closing = evictIdle();
+        }
+        closeShards(closing);
+        try {
+            if (conn == null) conn = DriverManager.getConnection(shard.url);
+            if (!initialized.contains(key)) initialize(shard, conn);
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(conn);
+            release(shard, null);
+            throw e;
+        }
+        return lease(shard, conn);
+    }
+
+    private void initialize(Shard shard, Connection conn) throws SQLException {
+        synchronized (shard) {
+            if (initialized.contains(shard.key)) return;
+            SqliteStorageBackend.createUserTables(conn);
+            initialized.add(shard.key);
+        }
+    }
+
+    // The caller sees a connection whose close() hands the real one back to the shard.
+    private Connection lease(Shard shard, Connection conn) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (released.compareAndSet(false, true)) release(shard, conn);
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            if (released.get()) return true;
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        default -> {
+                        }
+                    }
+                    if (released.get() && method.getDeclaringClass() != Object.class) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void release(Shard shard, Connection conn) {
+        boolean reuse = conn != null && reset(conn);
+        List<Shard> closing;
+        synchronized (this) {
+            shard.borrowed--;
+            if (reuse && !closed && shard.idle.size() < IDLE_PER_SHARD) {
+                shard.idle.push(conn);
+                conn = null;
+            }
+            // Shards that were busy when the limit was reached are closed once they are returned.
+            closing = evictIdle();
+        }
+        closeQuietly(conn);
+        closeShards(closing);
+    }
+
+    private static boolean reset(Connection conn) {
+        try {
+            if (conn.isClosed()) return false;
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            log.warn("Discarding shard connection: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Caller holds the lock. Iterating the values does not count as access, so they come least recently used first.
+    private List<Shard> evictIdle() {
+        if (open.size() <= maxOpen) return List.of();
+        List<Shard> closing = new ArrayList<>();
+        Iterator<Shard> it = open.values().iterator();
+        while (open.size() > maxOpen && it.hasNext()) {
+            Shard s = it.next();
+            if (s.borrowed > 0) continue;
+            it.remove();
+            closing.add(s);
+        }
+        return closing;
+    }
+
+    private static void closeShards(List<Shard> shards) {
+        for (Shard s : shards) {
+            for (Connection conn : s.idle) closeQuietly(conn);
+            s.idle.clear();
+            log.debug("Closed shard {}", s.key);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            log.warn("Error closing shard connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            closeShards(new ArrayList<>(open.values()));
+            open.clear();
+        }
+    }
+}
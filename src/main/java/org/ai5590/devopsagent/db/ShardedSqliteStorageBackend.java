@@ -0,0 +1,167 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// SQLite allows one writer per file: with every user in app.db, message inserts, pending-action updates and audit
+// rows of all users queue behind each other. Here the main database keeps users, audit and cluster tables, and the
+// per-user tables live in one file per user (shardBy "user") or per hash bucket (shardBy "hash").
+public class ShardedSqliteStorageBackend implements StorageBackend {
+    private static final Logger log = LoggerFactory.getLogger(ShardedSqliteStorageBackend.class);
+    // Message ids stay unique across shards. The main database records how far ids are reserved, so startup neither
+    // scans the shards nor reuses an id after a crash; a block costs one write per ID_BLOCK messages.
+    private static final long ID_BLOCK = 1000;
+
+    private final String dbPath;
+    private final String dbUrl;
+    private final ShardRouter router;
+    private final AtomicLong lastMessageId = new AtomicLong();
+    private volatile long reservedUpTo;
+
+    public ShardedSqliteStorageBackend(AppConfig.StorageSettings settings) {
+        this.dbPath = settings.getSqlitePath();
+        this.dbUrl = "jdbc:sqlite:" + dbPath;
+        this.router = new ShardRouter(Path.of(settings.getShardDir()), settings.getShardBy(),
+                settings.getShardBuckets(), settings.getMaxOpenShards());
+    }
+
+    @Override
+    public String name() {
+        return "sqlite-sharded:" + dbPath + " + " + router.dir() + "/*.db";
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(dbUrl);
+    }
+
+    @Override
+    public Connection getUserConnection(String userLogin) throws SQLException {
+        return router.getConnection(userLogin);
+    }
+
+    @Override
+    public String shardOf(String userLogin) {
+        return router.shardOf(userLogin);
+    }
+
+    @Override
+    public void createSchema() throws SQLException {
+        File parent = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        try {
+            Files.createDirectories(router.dir());
+        } catch (IOException e) {
+            throw new SQLException("Cannot create shard directory " + router.dir() + ": " + e.getMessage(), e);
+        }
+        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
+            SqliteStorageBackend.createSharedTables(conn);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS id_reservations (
+                    name TEXT PRIMARY KEY,
+                    reserved_up_to INTEGER NOT NULL
+                )
+            """);
+            long unsplit = countUnsplitMessages(conn);
+            if (unsplit > 0) {
+                log.warn("{} still holds {} messages from before sharding; they are not shown until " +
+                        "`./gradlew splitSqliteShards` moves them to {}", dbPath, unsplit, router.dir());
+            }
+            long last;
+            try (ResultSet rs = stmt.executeQuery("SELECT reserved_up_to FROM id_reservations WHERE name = 'messages'")) {
+                last = rs.next() ? rs.getLong(1) : lastIdInFiles(conn);
+            }
+            lastMessageId.set(last);
+            reserve(conn, last + ID_BLOCK);
+        }
+    }
+
+    // Messages left in the main database by the unsharded backend.
+    private static long countUnsplitMessages(Connection conn) throws SQLException {
+        if (!hasMessagesTable(conn)) return 0;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM messages")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static boolean hasMessagesTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'messages'")) {
+            return rs.next();
+        }
+    }
+
+    // First start in sharded mode, or the reservation row was lost: the largest id in the main database
+    // (ids of split messages included, via sqlite_sequence) and in every shard file.
+    private long lastIdInFiles(Connection conn) throws SQLException {
+        long last = hasMessagesTable(conn) ? SqliteStorageBackend.loadLastMessageId(conn) : 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(router.dir(), "*.db")) {
+            for (Path file : files) {
+                try (Connection shard = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+                    if (hasMessagesTable(shard)) last = Math.max(last, SqliteStorageBackend.loadLastMessageId(shard));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cannot list shard directory " + router.dir() + ": " + e.getMessage(), e);
+        }
+        log.info("Message ids continue after {} (shard scan)", last);
+        return last;
+    }
+
+    private void reserve(Connection conn, long upTo) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO id_reservations (name, reserved_up_to) VALUES ('messages', ?) " +
+                "ON CONFLICT(name) DO UPDATE SET reserved_up_to = excluded.reserved_up_to")) {
+            ps.setLong(1, upTo);
+            ps.executeUpdate();
+        }
+        reservedUpTo = upTo;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public long currentMessageId() {
+        return lastMessageId.get();
+    }
+
+    @Override
+    public long nextMessageId() throws SQLException {
+        long id = lastMessageId.incrementAndGet();
+        if (id > reservedUpTo) reserveFor(id);
+        return id;
+    }
+
+    private synchronized void reserveFor(long id) throws SQLException {
+        if (id <= reservedUpTo) return;
+        try (Connection conn = getConnection()) {
+            reserve(conn, id + ID_BLOCK);
+        }
+    }
+
+    @Override
+    public void publishChange(String userLogin) {
+    }
+
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+    }
+
+    @Override
+    public void close() {
+        router.close();
+    }
+}
@@ -0,0 +1,209 @@
+package org.ai5590.devopsagent.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class SqliteStorageBackend implements StorageBackend {
+    private static final Logger log = LoggerFactory.getLogger(SqliteStorageBackend.class);
+    private final String dbPath;
+    private final String dbUrl;
+    private final AtomicLong lastMessageId = new AtomicLong();
+
+    public SqliteStorageBackend(String dbPath) {
+        this.dbPath = dbPath;
+        this.dbUrl = "jdbc:sqlite:" + dbPath;
+    }
+
+    @Override
+    public String name() {
+        return "sqlite:" + dbPath;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(dbUrl);
+    }
+
+    @Override
+    public void createSchema() throws SQLException {
+        File parent = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        try (Connection conn = getConnection()) {
+            createSharedTables(conn);
+            createUserTables(conn);
+            lastMessageId.set(loadLastMessageId(conn));
+        }
+    }
+
+    // users, audit and cluster state; with sharding these stay in the main database.
+    static void createSharedTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS users (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    login TEXT UNIQUE NOT NULL,
+                    password_hash TEXT NOT NULL,
+                    prompt_part1_override TEXT,
+                    pending_prompt_update INTEGER DEFAULT 0,
+                    bootstrap_fingerprint TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS audit (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    timestamp TEXT NOT NULL,
+                    login TEXT NOT NULL,
+                    action TEXT NOT NULL,
+                    server TEXT,
+                    command TEXT,
+                    duration_ms INTEGER,
+                    result_snippet TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS action_leases (
+                    user_login TEXT NOT NULL,
+                    action_id TEXT NOT NULL,
+                    owner TEXT NOT NULL,
+                    expires_at INTEGER NOT NULL,
+                    done INTEGER NOT NULL DEFAULT 0,
+                    PRIMARY KEY (user_login, action_id)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS http_sessions (
+                    id TEXT PRIMARY KEY,
+                    created_at INTEGER NOT NULL,
+                    last_accessed_at INTEGER NOT NULL,
+                    max_inactive_seconds INTEGER NOT NULL,
+                    expires_at INTEGER NOT NULL,
+                    attributes BLOB
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS llm_cache (
+                    cache_key TEXT PRIMARY KEY,
+                    user_login TEXT NOT NULL,
+                    server_id TEXT,
+                    model TEXT,
+                    response TEXT NOT NULL,
+                    latency_ms INTEGER NOT NULL,
+                    created_at INTEGER NOT NULL,
+                    last_hit_at INTEGER NOT NULL,
+                    hits INTEGER DEFAULT 0
+                )
+            """);
+            addColumnIfMissing(conn, "users", "bootstrap_fingerprint", "TEXT");
+            addColumnIfMissing(conn, "action_leases", "done", "INTEGER NOT NULL DEFAULT 0");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_audit_login ON audit(login)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_http_sessions_expires ON http_sessions(expires_at)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_llm_cache_last_hit ON llm_cache(last_hit_at)");
+        }
+    }
+
+    // Tables that are only ever read and written for one user at a time; with sharding they live in the shard files.
+    static void createUserTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS messages (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    user_login TEXT NOT NULL,
+                    role TEXT NOT NULL,
+                    content TEXT NOT NULL,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS user_settings (
+                    user_login TEXT PRIMARY KEY,
+                    show_debug INTEGER DEFAULT 0,
+                    selected_llm_server_id TEXT,
+                    model_override TEXT
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS pending_actions (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    user_login TEXT NOT NULL,
+                    actions_json TEXT NOT NULL,
+                    action_states TEXT,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS output_blobs (
+                    user_login TEXT NOT NULL,
+                    hash TEXT NOT NULL,
+                    raw_size INTEGER NOT NULL,
+                    compressed_size INTEGER NOT NULL,
+                    content BLOB NOT NULL,
+                    created_at INTEGER NOT NULL,
+                    PRIMARY KEY (user_login, hash)
+                )
+            """);
+            addColumnIfMissing(conn, "pending_actions", "action_states", "TEXT");
+            addColumnIfMissing(conn, "user_settings", "agent_mode", "INTEGER DEFAULT 0");
+            addColumnIfMissing(conn, "user_settings", "llm_cache", "INTEGER DEFAULT 1");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_user ON messages(user_login)");
+        }
+    }
+
+    private static void addColumnIfMissing(Connection conn, String table, String column, String type) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+            log.info("Added column {}.{}", table, column);
+        }
+    }
+
+    // Ids are handed out in-process; sqlite_sequence also covers rows that were deleted from the end of the table.
+    static long loadLastMessageId(Connection conn) throws SQLException {
+        long maxId = 0;
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM messages")) {
+                if (rs.next()) maxId = rs.getLong(1);
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'messages'")) {
+                if (rs.next()) maxId = Math.max(maxId, rs.getLong(1));
+            }
+        }
+        return maxId;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public long currentMessageId() {
+        return lastMessageId.get();
+    }
+
+    @Override
+    public long nextMessageId() {
+        return lastMessageId.incrementAndGet();
+    }
+
+    @Override
+    public void publishChange(String userLogin) {
+    }
+
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,38 @@
+package org.ai5590.devopsagent.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+public interface StorageBackend extends AutoCloseable {
+    String name();
+
+    Connection getConnection() throws SQLException;
+
+    // messages, pending_actions, user_settings and output_blobs; a sharded backend keeps them in a database per user.
+    default Connection getUserConnection(String userLogin) throws SQLException {
+        return getConnection();
+    }
+
+    // Users with the same shard share a database file and can be written in one transaction; null when not sharded.
+    default String shardOf(String userLogin) {
+        return null;
+    }
+
+    void createSchema() throws SQLException;
+
+    // True when several application nodes share the database, so per-node caches must follow change events.
+    boolean isShared();
+
+    long currentMessageId() throws SQLException;
+
+    long nextMessageId() throws SQLException;
+
+    void publishChange(String userLogin);
+
+    // The listener receives the user whose chat state changed on another node, or null when events may have been lost.
+    void addChangeListener(Consumer<String> listener);
+
+    @Override
+    void close();
+}
@@ -1,19 +1,27 @@
 package org.ai5590.devopsagent.db;
 
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
 public class UserRepository {
     private static final Logger log = LoggerFactory.getLogger(UserRepository.class);
     private final DatabaseInitializer db;
+    private final Tracing tracing;
 
-    public UserRepository(DatabaseInitializer db) {
+    public record StoredCredentials(String passwordHash, String bootstrapFingerprint) {
+    }
+
+    public UserRepository(DatabaseInitializer db, Tracing tracing) {
         this.db = db;
+        this.tracing = tracing;
     }
 
     public boolean existsByLogin(String login) {
@@ -53,6 +61,42 @@ public class UserRepository {
         }
     }
 
+    public void updatePasswordHash(String login, String passwordHash) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE users SET password_hash = ? WHERE login = ?")) {
+            ps.setString(1, passwordHash);
+            ps.setString(2, login);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Error updating password for {}: {}", login, e.getMessage());
+        }
+    }
+
+    public Map<String, StoredCredentials> getAllCredentials() {
+        Map<String, StoredCredentials> result = new HashMap<>();
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT login, password_hash, bootstrap_fingerprint FROM users")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                result.put(rs.getString(1), new StoredCredentials(rs.getString(2), rs.getString(3)));
+            }
+        } catch (SQLException e) {
+            log.error("Error loading users: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    public void setBootstrapFingerprint(String login, String fingerprint) {
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE users SET bootstrap_fingerprint = ? WHERE login = ?")) {
+            ps.setString(1, fingerprint);
+            ps.setString(2, login);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            log.error("Error saving bootstrap fingerprint for {}: {}", login, e.getMessage());
+        }
+    }
+
     public Optional<String> getPasswordHash(String login) {
         try (Connection conn = db.getConnection();
              PreparedStatement ps = conn.prepareStatement("SELECT password_hash FROM users WHERE login = ?")) {
@@ -66,15 +110,17 @@ public class UserRepository {
     }
 
     public String getPromptOverride(String login) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT prompt_part1_override FROM users WHERE login = ?")) {
-            ps.setString(1, login);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getString("prompt_part1_override");
-        } catch (SQLException e) {
-            log.error("Error getting prompt override: {}", e.getMessage());
-        }
-        return null;
+        return tracing.call("db.users.selectPromptOverride", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT prompt_part1_override FROM users WHERE login = ?")) {
+                ps.setString(1, login);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getString("prompt_part1_override");
+            } catch (SQLException e) {
+                log.error("Error getting prompt override: {}", e.getMessage());
+            }
+            return null;
+        });
     }
 
     public void setPromptOverride(String login, String override) {
@@ -89,15 +135,17 @@ public class UserRepository {
     }
 
     public boolean isPendingPromptUpdate(String login) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT pending_prompt_update FROM users WHERE login = ?")) {
-            ps.setString(1, login);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getInt("pending_prompt_update") == 1;
-        } catch (SQLException e) {
-            log.error("Error checking pending prompt: {}", e.getMessage());
-        }
-        return false;
+        return tracing.call("db.users.selectPendingPromptUpdate", () -> {
+            try (Connection conn = db.getConnection();
+                 PreparedStatement ps = conn.prepareStatement("SELECT pending_prompt_update FROM users WHERE login = ?")) {
+                ps.setString(1, login);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getInt("pending_prompt_update") == 1;
+            } catch (SQLException e) {
+                log.error("Error checking pending prompt: {}", e.getMessage());
+            }
+            return false;
+        });
     }
 
     public void setPendingPromptUpdate(String login, boolean pending) {
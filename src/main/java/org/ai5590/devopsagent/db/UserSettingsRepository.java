@@ -1,5 +1,6 @@
 package org.ai5590.devopsagent.db;
 
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
@@ -12,9 +13,11 @@ import java.util.Map;
 public class UserSettingsRepository {
     private static final Logger log = LoggerFactory.getLogger(UserSettingsRepository.class);
     private final DatabaseInitializer db;
+    private final Tracing tracing;
 
-    public UserSettingsRepository(DatabaseInitializer db) {
+    public UserSettingsRepository(DatabaseInitializer db, Tracing tracing) {
         this.db = db;
+        this.tracing = tracing;
     }
 
     public Map<String, Object> getSettings(String userLogin) {
@@ -22,14 +25,18 @@ public class UserSettingsRepository {
         settings.put("showDebug", false);
         settings.put("selectedLlmServerId", null);
         settings.put("modelOverride", null);
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT show_debug, selected_llm_server_id, model_override FROM user_settings WHERE user_login = ?")) {
+        settings.put("agentMode", false);
+        settings.put("llmCache", true);
+        try (Connection conn = db.getConnection(userLogin);
+             PreparedStatement ps = conn.prepareStatement("SELECT show_debug, selected_llm_server_id, model_override, agent_mode, llm_cache FROM user_settings WHERE user_login = ?")) {
             ps.setString(1, userLogin);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
                 settings.put("showDebug", rs.getInt("show_debug") == 1);
                 settings.put("selectedLlmServerId", rs.getString("selected_llm_server_id"));
                 settings.put("modelOverride", rs.getString("model_override"));
+                settings.put("agentMode", rs.getInt("agent_mode") == 1);
+                settings.put("llmCache", rs.getInt("llm_cache") != 0);
             }
         } catch (SQLException e) {
             log.error("Error getting settings: {}", e.getMessage());
@@ -38,7 +45,7 @@ public class UserSettingsRepository {
     }
 
     public boolean getShowDebug(String userLogin) {
-        try (Connection conn = db.getConnection();
+        try (Connection conn = db.getConnection(userLogin);
              PreparedStatement ps = conn.prepareStatement("SELECT show_debug FROM user_settings WHERE user_login = ?")) {
             ps.setString(1, userLogin);
             ResultSet rs = ps.executeQuery();
@@ -51,7 +58,7 @@ public class UserSettingsRepository {
 
     public void setShowDebug(String userLogin, boolean showDebug) {
         String sql = "INSERT INTO user_settings (user_login, show_debug) VALUES (?, ?) ON CONFLICT(user_login) DO UPDATE SET show_debug = ?";
-        try (Connection conn = db.getConnection();
+        try (Connection conn = db.getConnection(userLogin);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userLogin);
             ps.setInt(2, showDebug ? 1 : 0);
@@ -62,42 +69,80 @@ public class UserSettingsRepository {
         }
     }
 
+    public boolean getAgentMode(String userLogin) {
+        return tracing.call("db.user_settings.selectAgentMode", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("SELECT agent_mode FROM user_settings WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getInt("agent_mode") == 1;
+            } catch (SQLException e) {
+                log.error("Error getting agent_mode: {}", e.getMessage());
+            }
+            return false;
+        });
+    }
+
+    // On unless the user turned it off; rows written before the column existed read as 1.
+    public boolean getLlmCache(String userLogin) {
+        return tracing.call("db.user_settings.selectLlmCache", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("SELECT llm_cache FROM user_settings WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getInt("llm_cache") != 0;
+            } catch (SQLException e) {
+                log.error("Error getting llm_cache: {}", e.getMessage());
+            }
+            return true;
+        });
+    }
+
     public String getSelectedLlmServerId(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT selected_llm_server_id FROM user_settings WHERE user_login = ?")) {
-            ps.setString(1, userLogin);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getString("selected_llm_server_id");
-        } catch (SQLException e) {
-            log.error("Error getting selectedLlmServerId: {}", e.getMessage());
-        }
-        return null;
+        return tracing.call("db.user_settings.selectLlmServer", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("SELECT selected_llm_server_id FROM user_settings WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getString("selected_llm_server_id");
+            } catch (SQLException e) {
+                log.error("Error getting selectedLlmServerId: {}", e.getMessage());
+            }
+            return null;
+        });
     }
 
     public String getModelOverride(String userLogin) {
-        try (Connection conn = db.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT model_override FROM user_settings WHERE user_login = ?")) {
-            ps.setString(1, userLogin);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) return rs.getString("model_override");
-        } catch (SQLException e) {
-            log.error("Error getting modelOverride: {}", e.getMessage());
-        }
-        return null;
+        return tracing.call("db.user_settings.selectModelOverride", () -> {
+            try (Connection conn = db.getConnection(userLogin);
+                 PreparedStatement ps = conn.prepareStatement("SELECT model_override FROM user_settings WHERE user_login = ?")) {
+                ps.setString(1, userLogin);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) return rs.getString("model_override");
+            } catch (SQLException e) {
+                log.error("Error getting modelOverride: {}", e.getMessage());
+            }
+            return null;
+        });
     }
 
-    public void saveSettings(String userLogin, boolean showDebug, String selectedLlmServerId, String modelOverride) {
-        String sql = "INSERT INTO user_settings (user_login, show_debug, selected_llm_server_id, model_override) VALUES (?, ?, ?, ?) " +
-                "ON CONFLICT(user_login) DO UPDATE SET show_debug = ?, selected_llm_server_id = ?, model_override = ?";
-        try (Connection conn = db.getConnection();
+    public void saveSettings(String userLogin, boolean showDebug, String selectedLlmServerId, String modelOverride,
+                             boolean agentMode, boolean llmCache) {
+        String sql = "INSERT INTO user_settings (user_login, show_debug, selected_llm_server_id, model_override, agent_mode, llm_cache) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT(user_login) DO UPDATE SET show_debug = ?, selected_llm_server_id = ?, model_override = ?, agent_mode = ?, llm_cache = ?";
+        try (Connection conn = db.getConnection(userLogin);
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, userLogin);
             ps.setInt(2, showDebug ? 1 : 0);
             ps.setString(3, selectedLlmServerId);
             ps.setString(4, modelOverride);
-            ps.setInt(5, showDebug ? 1 : 0);
-            ps.setString(6, selectedLlmServerId);
-            ps.setString(7, modelOverride);
+            ps.setInt(5, agentMode ? 1 : 0);
+            ps.setInt(6, llmCache ? 1 : 0);
+            ps.setInt(7, showDebug ? 1 : 0);
+            ps.setString(8, selectedLlmServerId);
+            ps.setString(9, modelOverride);
+            ps.setInt(10, agentMode ? 1 : 0);
+            ps.setInt(11, llmCache ? 1 : 0);
             ps.executeUpdate();
         } catch (SQLException e) {
             log.error("Error saving settings: {}", e.getMessage());
@@ -0,0 +1,76 @@
+package org.ai5590.devopsagent.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class Json {
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    public static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private Json() {
+    }
+
+    public interface BodyWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    public static byte[] writeBytes(BodyWriter writer) throws IOException {
+        try (ByteArrayBuilder out = new ByteArrayBuilder(4096);
+             JsonGenerator gen = FACTORY.createGenerator(out)) {
+            writer.write(gen);
+            gen.flush();
+            return out.toByteArray();
+        }
+    }
+
+    // Walks field names (and numeric array indexes) without building a tree; returns null when the path is missing.
+    public static String readString(InputStream in, String... path) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            if (p.nextToken() == null) return null;
+            return descend(p, path, 0);
+        }
+    }
+
+    public static String readString(String json, String... path) throws IOException {
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() == null) return null;
+            return descend(p, path, 0);
+        }
+    }
+
+    private static String descend(JsonParser p, String[] path, int depth) throws IOException {
+        JsonToken token = p.currentToken();
+        if (depth == path.length) {
+            return token.isScalarValue() && token != JsonToken.VALUE_NULL ? p.getValueAsString() : null;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                boolean match = path[depth].equals(p.currentName());
+                p.nextToken();
+                if (match) return descend(p, path, depth + 1);
+                p.skipChildren();
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index;
+            try {
+                index = Integer.parseInt(path[depth]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            for (int i = 0; p.nextToken() != JsonToken.END_ARRAY; i++) {
+                if (i == index) return descend(p, path, depth + 1);
+                p.skipChildren();
+            }
+        }
+        return null;
+    }
+}
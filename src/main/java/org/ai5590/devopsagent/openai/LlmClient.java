@@ -1,8 +1,9 @@
 package org.ai5590.devopsagent.openai;
 
+import org.ai5590.devopsagent.db.Message;
+
 import java.util.List;
-import java.util.Map;
 
 public interface LlmClient {
-    String chat(String systemPrompt, List<Map<String, Object>> history, String model);
+    String chat(String systemPrompt, List<Message> history, String model);
 }
@@ -1,67 +1,127 @@
 package org.ai5590.devopsagent.openai;
 
 import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigChange;
 import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.Message;
 import org.ai5590.devopsagent.db.UserSettingsRepository;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Component
 public class LlmClientFactory {
+    public static final String AUTO_SERVER_ID = "auto";
     private static final Logger log = LoggerFactory.getLogger(LlmClientFactory.class);
     private final ConfigLoader configLoader;
     private final UserSettingsRepository userSettingsRepository;
+    private final Tracing tracing;
+    private final Map<String, CachedClient> clients = new ConcurrentHashMap<>();
+    private final LlmRouter router = new LlmRouter();
+
+    // Clients keep their HttpClient (and its connection pool) until the server definition changes.
+    private record CachedClient(AppConfig.LlmServer server, LlmClient client) {
+    }
 
-    public LlmClientFactory(ConfigLoader configLoader, UserSettingsRepository userSettingsRepository) {
+    public LlmClientFactory(ConfigLoader configLoader, UserSettingsRepository userSettingsRepository, Tracing tracing) {
         this.configLoader = configLoader;
         this.userSettingsRepository = userSettingsRepository;
+        this.tracing = tracing;
+        configLoader.addListener(this::onConfigChange);
     }
 
-    public LlmClient getClientForUser(String userLogin) {
+    // Unchanged servers are re-bound to the new snapshot's definition, so only edited ones get a new client.
+    private void onConfigChange(ConfigChange change) {
+        if (!change.changed("llmServers")) return;
+        AppConfig config = change.current().config();
+        for (Map.Entry<String, CachedClient> e : clients.entrySet()) {
+            String id = e.getKey();
+            AppConfig.LlmServer server = config.findLlmServer(id);
+            if (server == null || change.changedLlmServers().contains(id)) {
+                clients.remove(id, e.getValue());
+            } else {
+                clients.replace(id, e.getValue(), new CachedClient(server, e.getValue().client()));
+            }
+        }
+    }
+
+    // One attempt: which server, which model, and why (for the trace and the log).
+    public record Route(String serverId, LlmClient client, String model, String phase, String reason) {
+    }
+
+    // Users on "auto" get a ranked list from the router; everyone else gets their selected (or the default) server.
+    public List<Route> route(String userLogin, String systemPrompt, List<Message> history) {
         AppConfig config = configLoader.getConfig();
         String serverId = userSettingsRepository.getSelectedLlmServerId(userLogin);
-        if (serverId == null || serverId.isBlank()) {
+        boolean selected = serverId != null && !serverId.isBlank();
+        if (!selected) {
             serverId = config.getDefaults().getDefaultLlmServerId();
         }
+        AppConfig.LlmRoutingSettings routing = config.getLlmRouting();
+        List<AppConfig.LlmServer> enabled = config.getEnabledLlmServers();
+        if (AUTO_SERVER_ID.equals(serverId) && routing.isEnabled() && !enabled.isEmpty()) {
+            LlmRouter.Classification c = LlmRouter.classify(systemPrompt, history, routing);
+            Tracing.tag("llm.route.phase", c.phase());
+            Tracing.tag("llm.route.required_tier", c.requiredTier());
+            Tracing.tag("llm.route.prompt_tokens", c.promptTokens());
+            List<Route> routes = new ArrayList<>();
+            for (LlmRouter.Candidate candidate : router.rank(c, enabled, routing)) {
+                AppConfig.LlmServer server = candidate.server();
+                routes.add(new Route(server.getId(), clientFor(server), server.getDefaultModel(), c.phase(), candidate.reason()));
+            }
+            return routes;
+        }
         AppConfig.LlmServer server = config.findLlmServer(serverId);
         if (server == null) {
-            var enabled = config.getEnabledLlmServers();
             if (!enabled.isEmpty()) {
                 server = enabled.get(0);
             } else {
                 log.error("No LLM servers available");
-                return (sys, hist, model) -> "Ошибка: нет доступных LLM серверов";
+                return List.of(new Route(null, (sys, hist, model) -> "Ошибка: нет доступных LLM серверов", null, "none", "no servers"));
             }
         }
-        return createClient(server);
+        String override = userSettingsRepository.getModelOverride(userLogin);
+        String model = override != null && !override.isBlank() ? override : server.getDefaultModel();
+        return List.of(new Route(server.getId(), clientFor(server), model, "selected",
+                selected ? "selected by user" : "defaults.defaultLlmServerId"));
     }
 
-    public String getModelForUser(String userLogin) {
-        AppConfig config = configLoader.getConfig();
-        String override = userSettingsRepository.getModelOverride(userLogin);
-        if (override != null && !override.isBlank()) {
-            return override;
-        }
-        String serverId = userSettingsRepository.getSelectedLlmServerId(userLogin);
-        if (serverId == null || serverId.isBlank()) {
-            serverId = config.getDefaults().getDefaultLlmServerId();
-        }
-        AppConfig.LlmServer server = config.findLlmServer(serverId);
-        if (server != null) {
-            return server.getDefaultModel();
+    public void recordOutcome(Route route, long elapsedMillis, boolean ok) {
+        if (route.serverId() == null) return;
+        router.record(route.serverId(), route.phase(), elapsedMillis, ok, configLoader.getConfig().getLlmRouting());
+    }
+
+    public static boolean isFailure(String reply) {
+        return LlmRouter.isFailure(reply);
+    }
+
+    public List<Map<String, Object>> routingStats() {
+        return router.snapshot(configLoader.getConfig());
+    }
+
+    private LlmClient clientFor(AppConfig.LlmServer server) {
+        CachedClient cached = clients.get(server.getId());
+        if (cached == null || cached.server() != server) {
+            cached = new CachedClient(server, createClient(server));
+            clients.put(server.getId(), cached);
         }
-        return "gpt-4o-mini";
+        return cached.client();
     }
 
     private LlmClient createClient(AppConfig.LlmServer server) {
         String type = server.getType().toUpperCase();
         switch (type) {
             case "OLLAMA":
-                return new OllamaClient(server.getBaseUrl());
+                return new OllamaClient(server.getBaseUrl(), tracing);
             case "OPENAI":
             default:
-                return new OpenAiClient(server.getBaseUrl(), server.resolveApiKey());
+                return new OpenAiClient(server.getBaseUrl(), server.resolveApiKey(), tracing);
         }
     }
 }
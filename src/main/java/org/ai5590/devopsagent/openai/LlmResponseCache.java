@@ -0,0 +1,184 @@
+package org.ai5590.devopsagent.openai;
+
+import jakarta.annotation.PreDestroy;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigChange;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.LlmCacheRepository;
+import org.ai5590.devopsagent.db.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Exact-match replies: the key covers everything the model sees (server, model, system prompt and every message),
+// so a hit is only possible for a request that is byte-for-byte the same. Recent entries are kept in memory, all of
+// them in llm_cache so they survive restarts and are shared by cluster nodes.
+@Component
+public class LlmResponseCache {
+    private static final Logger log = LoggerFactory.getLogger(LlmResponseCache.class);
+    private final LlmCacheRepository repository;
+    private final ConfigLoader configLoader;
+    private final Map<String, LlmCacheRepository.Entry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LlmCacheRepository.Entry> eldest) {
+            return size() > Math.max(0, configLoader.getConfig().getLlmCache().getMaxMemoryEntries());
+        }
+    };
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder storedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder savedLatencyMs = new LongAdder();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "llm-cache-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LlmResponseCache(LlmCacheRepository repository, ConfigLoader configLoader) {
+        this.repository = repository;
+        this.configLoader = configLoader;
+        configLoader.addListener(this::onConfigChange);
+        schedulePrune();
+    }
+
+    public boolean isEnabled() {
+        return configLoader.getConfig().getLlmCache().isEnabled();
+    }
+
+    // The user is part of the key, so one user cannot learn from hit timing what another one asked.
+    public static String key(String userLogin, String serverId, String model, String systemPrompt, List<Message> history) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // Length prefixes keep ("ab", "c") and ("a", "bc") apart.
+        update(digest, userLogin);
+        update(digest, serverId);
+        update(digest, model);
+        update(digest, systemPrompt);
+        for (Message m : history) {
+            update(digest, m.role());
+            update(digest, m.content());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    public LlmCacheRepository.Entry lookup(String key) {
+        long now = System.currentTimeMillis();
+        long ttl = configLoader.getConfig().getLlmCache().getTtlSeconds() * 1000L;
+        LlmCacheRepository.Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        boolean fromMemory = entry != null;
+        if (entry == null) {
+            entry = repository.find(key);
+        }
+        if (entry == null || now - entry.createdAt() > ttl) {
+            if (fromMemory) {
+                synchronized (memory) {
+                    memory.remove(key);
+                }
+            }
+            misses.increment();
+            return null;
+        }
+        if (fromMemory) {
+            memoryHits.increment();
+        } else {
+            storedHits.increment();
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+        }
+        savedLatencyMs.add(entry.latencyMs());
+        // The hit count only feeds LRU pruning of the table; the reply does not wait for it.
+        maintenance.execute(() -> repository.touch(key, now));
+        return entry;
+    }
+
+    public void store(String key, String userLogin, String serverId, String model, String response, long latencyMs) {
+        LlmCacheRepository.Entry entry = new LlmCacheRepository.Entry(serverId, model, response, latencyMs,
+                System.currentTimeMillis());
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        stores.increment();
+        repository.put(key, userLogin, entry);
+    }
+
+    public Map<String, Object> stats() {
+        long hits = memoryHits.sum() + storedHits.sum();
+        long total = hits + misses.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", isEnabled());
+        m.put("hits", hits);
+        m.put("memoryHits", memoryHits.sum());
+        m.put("storedHits", storedHits.sum());
+        m.put("misses", misses.sum());
+        m.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        m.put("stores", stores.sum());
+        m.put("savedLatencyMs", savedLatencyMs.sum());
+        synchronized (memory) {
+            m.put("memoryEntries", memory.size());
+        }
+        return m;
+    }
+
+    // A reply from an edited or removed server definition may no longer be what that server would answer.
+    private void onConfigChange(ConfigChange change) {
+        if (change.changedLlmServers().isEmpty()) return;
+        Set<String> ids = Set.copyOf(change.changedLlmServers());
+        synchronized (memory) {
+            memory.values().removeIf(e -> ids.contains(e.serverId()));
+        }
+        maintenance.execute(() -> {
+            for (String id : ids) repository.deleteServer(id);
+            log.info("LLM cache dropped for changed servers {}", ids);
+        });
+    }
+
+    private void schedulePrune() {
+        int seconds = Math.max(10, configLoader.getConfig().getLlmCache().getPruneIntervalSeconds());
+        maintenance.schedule(() -> {
+            try {
+                AppConfig.LlmCacheSettings settings = configLoader.getConfig().getLlmCache();
+                long cutoff = System.currentTimeMillis() - settings.getTtlSeconds() * 1000L;
+                int removed = repository.prune(cutoff, settings.getMaxStoredEntries());
+                if (removed > 0) log.debug("Removed {} cached LLM replies", removed);
+            } catch (RuntimeException e) {
+                log.warn("LLM cache prune failed: {}", e.getMessage());
+            } finally {
+                if (!maintenance.isShutdown()) schedulePrune();
+            }
+        }, seconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+}
@@ -0,0 +1,155 @@
+package org.ai5590.devopsagent.openai;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.db.Message;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Chooses the server for users on "auto": the request needs a quality tier (from the conversation phase and prompt
+// size), and among the servers that have it the lowest expected cost + waiting time wins. Latencies are learned
+// from every call, including those of users who picked a server themselves.
+class LlmRouter {
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int EXPECTED_REPLY_TOKENS = 600;
+    // Action results are appended as assistant messages; only recent ones mean the model has to read tool output now.
+    private static final int TOOL_OUTPUT_LOOKBACK = 4;
+
+    record Classification(int promptTokens, boolean toolOutput, String phase, int requiredTier) {
+    }
+
+    record Candidate(AppConfig.LlmServer server, String reason) {
+    }
+
+    private final Map<String, ServerStats> stats = new ConcurrentHashMap<>();
+
+    static Classification classify(String systemPrompt, List<Message> history, AppConfig.LlmRoutingSettings settings) {
+        long chars = systemPrompt.length();
+        boolean assistantSeen = false;
+        boolean toolOutput = false;
+        for (int i = 0; i < history.size(); i++) {
+            Message m = history.get(i);
+            chars += m.content() != null ? m.content().length() : 0;
+            if (!"assistant".equals(m.role())) continue;
+            assistantSeen = true;
+            if (i >= history.size() - TOOL_OUTPUT_LOOKBACK && m.content() != null && m.content().startsWith("Action result")) {
+                toolOutput = true;
+            }
+        }
+        int tokens = (int) Math.min(Integer.MAX_VALUE, chars / CHARS_PER_TOKEN);
+        String phase = toolOutput ? "tool_followup" : assistantSeen ? "conversation" : "new";
+        int tier = switch (phase) {
+            case "tool_followup" -> settings.getToolOutputTier();
+            case "conversation" -> settings.getConversationTier();
+            default -> settings.getNewConversationTier();
+        };
+        if (tokens > settings.getLargePromptTokens()) tier = Math.max(tier, settings.getLargePromptTier());
+        return new Classification(tokens, toolOutput, phase, tier);
+    }
+
+    // Best first, at most llmRouting.maxAttempts; the following ones are fallbacks for a failed reply.
+    List<Candidate> rank(Classification c, List<AppConfig.LlmServer> servers, AppConfig.LlmRoutingSettings settings) {
+        List<AppConfig.LlmServer> fitting = servers.stream()
+                .filter(s -> s.getMaxPromptTokens() <= 0 || c.promptTokens() <= s.getMaxPromptTokens()).toList();
+        String note = "";
+        if (fitting.isEmpty()) {
+            fitting = servers;
+            note = ", prompt exceeds every maxPromptTokens";
+        }
+        List<AppConfig.LlmServer> qualified = fitting.stream().filter(s -> s.getTier() >= c.requiredTier()).toList();
+        if (qualified.isEmpty()) {
+            int best = fitting.stream().mapToInt(AppConfig.LlmServer::getTier).max().orElse(0);
+            qualified = fitting.stream().filter(s -> s.getTier() == best).toList();
+            note += ", no server has tier " + c.requiredTier();
+        }
+        long now = System.currentTimeMillis();
+        long cooldown = settings.getFailureCooldownSeconds() * 1000L;
+        List<Scored> scored = new ArrayList<>();
+        for (AppConfig.LlmServer s : qualified) {
+            double cost = s.getCostPer1kTokens() * (c.promptTokens() + EXPECTED_REPLY_TOKENS) / 1000.0;
+            long latency = expectedLatency(s, settings);
+            ServerStats st = stats.get(s.getId());
+            boolean failing = st != null && now - st.lastFailureAt() < cooldown;
+            scored.add(new Scored(s, cost + latency / 1000.0 * settings.getLatencyCostPerSecond(), cost, latency, failing));
+        }
+        // A server that just failed goes last rather than away: it may still be the only one with the tier.
+        scored.sort(Comparator.comparing(Scored::failing).thenComparingDouble(Scored::score)
+                .thenComparingInt(x -> x.server().getTier()).thenComparing(x -> x.server().getId()));
+        List<Candidate> result = new ArrayList<>();
+        for (Scored x : scored.subList(0, Math.min(scored.size(), Math.max(1, settings.getMaxAttempts())))) {
+            result.add(new Candidate(x.server(), String.format(Locale.ROOT, "%s, tier>=%d, ~%d tokens, cost $%.4f, latency ~%d ms%s%s",
+                    c.phase(), c.requiredTier(), c.promptTokens(), x.cost(), x.latencyMs(),
+                    x.failing() ? ", recently failed" : "", note)));
+        }
+        return result;
+    }
+
+    private record Scored(AppConfig.LlmServer server, double score, double cost, long latencyMs, boolean failing) {
+    }
+
+    private long expectedLatency(AppConfig.LlmServer s, AppConfig.LlmRoutingSettings settings) {
+        ServerStats st = stats.get(s.getId());
+        if (st != null && st.latencyMs() >= 0) return st.latencyMs();
+        return s.getExpectedLatencyMs() > 0 ? s.getExpectedLatencyMs() : settings.getDefaultLatencyMs();
+    }
+
+    void record(String serverId, String phase, long elapsedMillis, boolean ok, AppConfig.LlmRoutingSettings settings) {
+        stats.computeIfAbsent(serverId, k -> new ServerStats()).record(phase, elapsedMillis, ok, settings.getLatencyAlpha());
+    }
+
+    static boolean isFailure(String reply) {
+        return reply == null || reply.startsWith("Ошибка");
+    }
+
+    List<Map<String, Object>> snapshot(AppConfig config) {
+        long cooldown = config.getLlmRouting().getFailureCooldownSeconds() * 1000L;
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (AppConfig.LlmServer s : config.getEnabledLlmServers()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", s.getId());
+            m.put("tier", s.getTier());
+            m.put("costPer1kTokens", s.getCostPer1kTokens());
+            m.put("expectedLatencyMs", expectedLatency(s, config.getLlmRouting()));
+            ServerStats st = stats.get(s.getId());
+            if (st != null) st.fill(m, cooldown);
+            result.add(m);
+        }
+        return result;
+    }
+
+    private static final class ServerStats {
+        private long requests;
+        private long failures;
+        private long latencyMs = -1;
+        private long lastFailureAt;
+        private final Map<String, Long> byPhase = new TreeMap<>();
+
+        synchronized void record(String phase, long elapsedMillis, boolean ok, double alpha) {
+            requests++;
+            byPhase.merge(phase, 1L, Long::sum);
+            if (!ok) {
+                failures++;
+                lastFailureAt = System.currentTimeMillis();
+                return;
+            }
+            // Failed calls are left out: an instant "connection refused" would make a dead server look fast.
+            latencyMs = latencyMs < 0 ? elapsedMillis : Math.round(alpha * elapsedMillis + (1 - alpha) * latencyMs);
+        }
+
+        synchronized long latencyMs() {
+            return latencyMs;
+        }
+
+        synchronized long lastFailureAt() {
+            return lastFailureAt;
+        }
+
+        synchronized void fill(Map<String, Object> m, long cooldown) {
+            m.put("requests", requests);
+            m.put("failures", failures);
+            m.put("observedLatencyMs", latencyMs);
+            m.put("recentlyFailed", System.currentTimeMillis() - lastFailureAt < cooldown);
+            m.put("byPhase", new TreeMap<>(byPhase));
+        }
+    }
+}
@@ -1,80 +1,99 @@
 package org.ai5590.devopsagent.openai;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.ai5590.devopsagent.db.Message;
+import org.ai5590.devopsagent.json.Json;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 
 public class OpenAiClient implements LlmClient {
     private static final Logger log = LoggerFactory.getLogger(OpenAiClient.class);
     private final String baseUrl;
     private final String apiKey;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final Tracing tracing;
     private final HttpClient httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
 
-    public OpenAiClient(String baseUrl, String apiKey) {
+    public OpenAiClient(String baseUrl, String apiKey, Tracing tracing) {
         this.baseUrl = baseUrl;
         this.apiKey = apiKey;
+        this.tracing = tracing;
     }
 
     @Override
-    public String chat(String systemPrompt, List<Map<String, Object>> history, String model) {
+    public String chat(String systemPrompt, List<Message> history, String model) {
         try {
-            ObjectNode body = mapper.createObjectNode();
-            body.put("model", model);
-
-            ArrayNode messages = body.putArray("messages");
-            ObjectNode sysMsg = messages.addObject();
-            sysMsg.put("role", "system");
-            sysMsg.put("content", systemPrompt);
-
-            for (Map<String, Object> msg : history) {
-                ObjectNode m = messages.addObject();
-                m.put("role", (String) msg.get("role"));
-                m.put("content", (String) msg.get("content"));
-            }
-
-            body.put("max_tokens", 4096);
-            body.put("temperature", 0.7);
-
-            String jsonBody = mapper.writeValueAsString(body);
+            byte[] jsonBody = buildRequestBody(systemPrompt, history, model);
             String url = baseUrl + "/chat/completions";
 
             HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .header("Content-Type", "application/json")
                     .timeout(Duration.ofSeconds(120))
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody));
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(jsonBody));
 
             if (apiKey != null && !apiKey.isBlank()) {
                 requestBuilder.header("Authorization", "Bearer " + apiKey);
             }
+            tracing.inject(requestBuilder);
 
             log.info("OpenAI request: model={}, url={}", model, url);
-            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<InputStream> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            Tracing.tag("http.status_code", response.statusCode());
 
             if (response.statusCode() != 200) {
-                log.error("OpenAI API error: {} {}", response.statusCode(), response.body());
+                String errorBody;
+                try (InputStream in = response.body()) {
+                    errorBody = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                log.error("OpenAI API error: {} {}", response.statusCode(), errorBody);
+                Tracing.markError("HTTP " + response.statusCode());
                 return "Ошибка AI-сервиса: HTTP " + response.statusCode();
             }
 
-            JsonNode root = mapper.readTree(response.body());
-            return root.path("choices").path(0).path("message").path("content").asText("");
+            try (InputStream in = response.body()) {
+                String content = Json.readString(in, "choices", "0", "message", "content");
+                return content != null ? content : "";
+            }
         } catch (Exception e) {
             log.error("OpenAI call failed: {}", e.getMessage(), e);
+            Tracing.markError(e.getMessage());
             return "Ошибка связи с AI-сервисом: " + e.getMessage();
         }
     }
+
+    byte[] buildRequestBody(String systemPrompt, List<Message> history, String model) throws IOException {
+        return Json.writeBytes(gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("model", model);
+            gen.writeArrayFieldStart("messages");
+            writeMessage(gen, "system", systemPrompt);
+            for (Message msg : history) {
+                writeMessage(gen, msg.role(), msg.content());
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("max_tokens", 4096);
+            gen.writeNumberField("temperature", 0.7);
+            gen.writeEndObject();
+        });
+    }
+
+    private static void writeMessage(JsonGenerator gen, String role, String content) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("role", role);
+        gen.writeStringField("content", content);
+        gen.writeEndObject();
+    }
 }
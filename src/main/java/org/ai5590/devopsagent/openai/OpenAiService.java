@@ -1,25 +1,70 @@
 package org.ai5590.devopsagent.openai;
 
+import org.ai5590.devopsagent.db.LlmCacheRepository;
+import org.ai5590.devopsagent.db.Message;
+import org.ai5590.devopsagent.db.UserSettingsRepository;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class OpenAiService {
     private static final Logger log = LoggerFactory.getLogger(OpenAiService.class);
     private final LlmClientFactory clientFactory;
+    private final LlmResponseCache cache;
+    private final UserSettingsRepository userSettingsRepository;
+    private final Tracing tracing;
 
-    public OpenAiService(LlmClientFactory clientFactory) {
+    public OpenAiService(LlmClientFactory clientFactory, LlmResponseCache cache,
+                         UserSettingsRepository userSettingsRepository, Tracing tracing) {
         this.clientFactory = clientFactory;
+        this.cache = cache;
+        this.userSettingsRepository = userSettingsRepository;
+        this.tracing = tracing;
     }
 
-    public String chat(String systemPrompt, List<Map<String, Object>> history, String userLogin) {
-        LlmClient client = clientFactory.getClientForUser(userLogin);
-        String model = clientFactory.getModelForUser(userLogin);
-        log.info("Chat request for user={}, model={}", userLogin, model);
-        return client.chat(systemPrompt, history, model);
+    public String chat(String systemPrompt, List<Message> history, String userLogin) {
+        return tracing.callClient("LlmClient.chat", () -> {
+            Tracing.tag("llm.history_size", history.size());
+            List<LlmClientFactory.Route> routes = clientFactory.route(userLogin, systemPrompt, history);
+            boolean useCache = cache.isEnabled() && userSettingsRepository.getLlmCache(userLogin);
+            Tracing.tag("llm.cache", useCache ? "miss" : "off");
+            String reply = null;
+            for (int i = 0; i < routes.size(); i++) {
+                LlmClientFactory.Route route = routes.get(i);
+                Tracing.tag("llm.server", route.serverId());
+                Tracing.tag("llm.model", route.model());
+                Tracing.tag("llm.route.reason", route.reason());
+                Tracing.tag("llm.route.attempt", i + 1);
+                String key = useCache && route.serverId() != null
+                        ? LlmResponseCache.key(userLogin, route.serverId(), route.model(), systemPrompt, history) : null;
+                LlmCacheRepository.Entry cached = key != null ? cache.lookup(key) : null;
+                if (cached != null) {
+                    // Not fed to the router: a hit says nothing about how fast the server is now.
+                    Tracing.tag("llm.cache", "hit");
+                    Tracing.tag("llm.cache.saved_ms", cached.latencyMs());
+                    log.info("Chat reply for user={} from cache, server={}, model={}", userLogin, route.serverId(), route.model());
+                    return cached.response();
+                }
+                log.info("Chat request for user={}, server={}, model={} ({})", userLogin, route.serverId(), route.model(), route.reason());
+                long start = System.currentTimeMillis();
+                reply = route.client().chat(systemPrompt, history, route.model());
+                long elapsed = System.currentTimeMillis() - start;
+                boolean ok = !LlmClientFactory.isFailure(reply);
+                clientFactory.recordOutcome(route, elapsed, ok);
+                if (ok) {
+                    // Errors are never stored, so a retry after a failure always reaches a server.
+                    if (key != null) cache.store(key, userLogin, route.serverId(), route.model(), reply, elapsed);
+                    break;
+                }
+                if (i + 1 < routes.size()) {
+                    log.warn("LLM server {} failed ({}), trying {}", route.serverId(), reply, routes.get(i + 1).serverId());
+                }
+            }
+            return reply;
+        });
     }
 }
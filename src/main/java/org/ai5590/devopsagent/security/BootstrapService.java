@@ -1,5 +1,6 @@
 package org.ai5590.devopsagent.security;
 
+import org.ai5590.devopsagent.app.StartupReport;
 import org.ai5590.devopsagent.config.AppConfig;
 import org.ai5590.devopsagent.config.ConfigLoader;
 import org.ai5590.devopsagent.db.UserRepository;
@@ -7,40 +8,130 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
 @Service
 public class BootstrapService {
     private static final Logger log = LoggerFactory.getLogger(BootstrapService.class);
+    private static final Path FINGERPRINT_KEY_PATH = Path.of("data/.bootstrap.key");
     private final ConfigLoader configLoader;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
+
+    private record Change(String login, String passwordHash, String fingerprint, boolean passwordChanged) {
+    }
 
-    public BootstrapService(ConfigLoader configLoader, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public BootstrapService(ConfigLoader configLoader, UserRepository userRepository, PasswordEncoder passwordEncoder,
+                            UserCache userCache) {
         this.configLoader = configLoader;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
     @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void bootstrap() {
+        long start = System.nanoTime();
         AppConfig config = configLoader.getConfig();
         String mode = config.getBootstrapUsersMode();
         log.info("Bootstrapping users in mode: {}", mode);
+        boolean upsert = "UPSERT".equalsIgnoreCase(mode);
+        if (!upsert && !"CREATE_ONLY".equalsIgnoreCase(mode)) {
+            log.warn("Unknown bootstrapUsersMode {}, no users changed", mode);
+            return;
+        }
+
+        byte[] key = loadFingerprintKey();
+        Map<String, UserRepository.StoredCredentials> stored = userRepository.getAllCredentials();
+        // bcrypt dominates startup, so entries are checked in parallel and only changed ones are hashed again.
+        List<Change> changes = config.getBootstrapUsers().parallelStream()
+                .map(user -> plan(user, stored.get(user.getLogin()), upsert, key))
+                .filter(Objects::nonNull)
+                .toList();
 
-        for (AppConfig.BootstrapUser user : config.getBootstrapUsers()) {
-            String hash = passwordEncoder.encode(user.getPassword());
-            if ("UPSERT".equalsIgnoreCase(mode)) {
-                userRepository.upsertUser(user.getLogin(), hash);
-            } else if ("CREATE_ONLY".equalsIgnoreCase(mode)) {
-                if (!userRepository.existsByLogin(user.getLogin())) {
-                    userRepository.createUser(user.getLogin(), hash);
+        int written = 0;
+        for (Change c : changes) {
+            if (c.passwordChanged()) {
+                if (upsert) {
+                    userRepository.upsertUser(c.login(), c.passwordHash());
                 } else {
-                    log.info("User {} already exists, skipping (CREATE_ONLY mode)", user.getLogin());
+                    userRepository.createUser(c.login(), c.passwordHash());
                 }
+                userCache.removeUserFromCache(c.login());
+                written++;
+            }
+            if (c.fingerprint() != null) userRepository.setBootstrapFingerprint(c.login(), c.fingerprint());
+        }
+        log.info("Bootstrap completed: {} users, {} passwords written, {} unchanged",
+                config.getBootstrapUsers().size(), written, config.getBootstrapUsers().size() - written);
+        StartupReport.phase("bootstrap users", start);
+    }
+
+    private Change plan(AppConfig.BootstrapUser user, UserRepository.StoredCredentials stored, boolean upsert, byte[] key) {
+        String login = user.getLogin();
+        if (stored != null && !upsert) {
+            log.info("User {} already exists, skipping (CREATE_ONLY mode)", login);
+            return null;
+        }
+        if (stored != null) {
+            if (key != null && Objects.equals(stored.bootstrapFingerprint(), fingerprint(key, user, stored.passwordHash()))) {
+                return null;
+            }
+            if (passwordEncoder.matches(user.getPassword(), stored.passwordHash())
+                    && !passwordEncoder.upgradeEncoding(stored.passwordHash())) {
+                return new Change(login, stored.passwordHash(), fingerprint(key, user, stored.passwordHash()), false);
+            }
+        }
+        String hash = passwordEncoder.encode(user.getPassword());
+        return new Change(login, hash, fingerprint(key, user, hash), true);
+    }
+
+    // Keyed so that a copy of the database alone does not give a fast way to test passwords; the key sits
+    // next to config.json, which holds the plaintext anyway. Including the hash invalidates it after any rehash.
+    private static String fingerprint(byte[] key, AppConfig.BootstrapUser user, String passwordHash) {
+        if (key == null) return null;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update((user.getLogin() + '\0' + user.getPassword() + '\0' + passwordHash).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private static byte[] loadFingerprintKey() {
+        try {
+            if (Files.exists(FINGERPRINT_KEY_PATH)) {
+                return HexFormat.of().parseHex(Files.readString(FINGERPRINT_KEY_PATH).trim());
             }
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            Files.createDirectories(FINGERPRINT_KEY_PATH.getParent());
+            Files.writeString(FINGERPRINT_KEY_PATH, HexFormat.of().formatHex(key));
+            return key;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Bootstrap fingerprint key unavailable, checking every password: {}", e.getMessage());
+            return null;
         }
-        log.info("Bootstrap completed");
     }
 }
@@ -0,0 +1,59 @@
+package org.ai5590.devopsagent.security;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class BoundedUserCache implements UserCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private record Entry(UserDetails user, long loadedAt) {
+    }
+
+    public BoundedUserCache(ConfigLoader configLoader) {
+        AppConfig.PasswordSettings settings = configLoader.getConfig().getPasswords();
+        this.maxSize = settings.getUserCacheSize();
+        this.ttlNanos = settings.getUserCacheTtlSeconds() * 1_000_000_000L;
+    }
+
+    // Copies go in and out: the authentication manager erases the password on the principal it returns.
+    @Override
+    public synchronized UserDetails getUserFromCache(String username) {
+        Entry e = entries.get(username);
+        if (e == null) return null;
+        if (System.nanoTime() - e.loadedAt() > ttlNanos) {
+            entries.remove(username);
+            return null;
+        }
+        return copy(e.user());
+    }
+
+    @Override
+    public synchronized void putUserInCache(UserDetails user) {
+        if (maxSize <= 0 || user.getPassword() == null) return;
+        entries.put(user.getUsername(), new Entry(copy(user), System.nanoTime()));
+        if (entries.size() > maxSize) {
+            var it = entries.entrySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void removeUserFromCache(String username) {
+        entries.remove(username);
+    }
+
+    private static UserDetails copy(UserDetails user) {
+        return new User(user.getUsername(), user.getPassword(), user.getAuthorities());
+    }
+}
@@ -1,8 +1,12 @@
 package org.ai5590.devopsagent.security;
 
 import org.ai5590.devopsagent.db.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -11,11 +15,14 @@ import java.util.Collections;
 import java.util.Optional;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+    private static final Logger log = LoggerFactory.getLogger(CustomUserDetailsService.class);
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, UserCache userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     @Override
@@ -26,4 +33,13 @@ public class CustomUserDetailsService implements UserDetailsService {
         }
         return new User(username, hash.get(), Collections.emptyList());
     }
+
+    // Called after a successful login when the stored hash uses an older algorithm or a lower cost.
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePasswordHash(user.getUsername(), newPassword);
+        userCache.removeUserFromCache(user.getUsername());
+        log.info("Rehashed password for {}", user.getUsername());
+        return new User(user.getUsername(), newPassword, user.getAuthorities());
+    }
 }
@@ -0,0 +1,103 @@
+package org.ai5590.devopsagent.security;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hash verification runs on a fixed pool with a bounded queue, so a login storm queues or is refused
+// instead of occupying every request thread with bcrypt.
+public class HashingPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(HashingPasswordEncoder.class);
+    private static final long WAIT_SECONDS = 10;
+    // The default queue is sized to drain in half the wait: the estimate below is for an otherwise idle CPU, and during
+    // a login storm request threads and GC compete for it.
+    private static final long QUEUE_DRAIN_SECONDS = WAIT_SECONDS / 2;
+    // One check on one vCPU (bcrypt cost 10 / Argon2 v5_8 defaults), rounded up; each bcrypt cost step doubles it.
+    private static final long BCRYPT_10_MILLIS = 110;
+    private static final long ARGON2_MILLIS = 90;
+    private static final int MAX_QUEUE = 256;
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+
+    public HashingPasswordEncoder(AppConfig.PasswordSettings settings) {
+        this.delegate = createDelegate(settings);
+        int threads = settings.resolveHashThreads();
+        int queueSize = resolveQueueSize(settings, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing: {} (bcrypt cost {}), {} threads, queue {}", settings.getAlgorithm(),
+                settings.getBcryptCost(), threads, queueSize);
+    }
+
+    // Without an explicit hashQueueSize the queue holds what the threads get through well within WAIT_SECONDS: a login
+    // that cannot be checked in time is refused at once instead of holding its request thread until the wait runs out.
+    static int resolveQueueSize(AppConfig.PasswordSettings settings, int threads) {
+        if (settings.getHashQueueSize() > 0) return settings.getHashQueueSize();
+        long checkMillis = "argon2".equalsIgnoreCase(settings.getAlgorithm()) ? ARGON2_MILLIS
+                : Math.max(1, Math.round(BCRYPT_10_MILLIS * Math.pow(2, settings.getBcryptCost() - 10)));
+        long fits = threads * TimeUnit.SECONDS.toMillis(QUEUE_DRAIN_SECONDS) / checkMillis;
+        return (int) Math.max(1, Math.min(MAX_QUEUE, fits));
+    }
+
+    // Stored hashes without an {id} prefix are the plain bcrypt hashes written by earlier versions.
+    static PasswordEncoder createDelegate(AppConfig.PasswordSettings settings) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(settings.getBcryptCost());
+        String idForEncode = "argon2".equalsIgnoreCase(settings.getAlgorithm()) ? "argon2" : "bcrypt";
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(idForEncode, Map.of(
+                "bcrypt", bcrypt,
+                "argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8()));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> delegate.matches(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            throw new AuthenticationServiceException("Too many concurrent logins");
+        }
+        try {
+            return result.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new AuthenticationServiceException("Password check timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Password check interrupted");
+        } catch (ExecutionException e) {
+            throw new AuthenticationServiceException("Password check failed", e.getCause());
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,65 @@
+package org.ai5590.devopsagent.security;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.DatabaseInitializer;
+import org.ai5590.devopsagent.db.JdbcSessionRepository;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.session.web.http.DefaultCookieSerializer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+    private static final Logger log = LoggerFactory.getLogger(SessionConfig.class);
+    private final Map<String, Session> localSessions = new ConcurrentHashMap<>();
+    private JdbcSessionRepository jdbcSessions;
+
+    @Bean
+    public SessionRepository<MapSession> sessionRepository(ConfigLoader configLoader, DatabaseInitializer db, Tracing tracing) {
+        AppConfig.ClusterSettings cluster = configLoader.getConfig().getCluster();
+        Duration timeout = Duration.ofMinutes(cluster.getSessionTimeoutMinutes());
+        if ("database".equalsIgnoreCase(cluster.getSessionStore())) {
+            log.info("HTTP sessions are stored in the database ({})", db.backend().name());
+            jdbcSessions = new JdbcSessionRepository(db, tracing, timeout);
+            return jdbcSessions;
+        }
+        if (db.backend().isShared()) {
+            log.warn("Shared storage with cluster.sessionStore={}: logins will not survive switching nodes", cluster.getSessionStore());
+        }
+        MapSessionRepository local = new MapSessionRepository(localSessions);
+        local.setDefaultMaxInactiveInterval(timeout);
+        return local;
+    }
+
+    @Bean
+    public CookieSerializer cookieSerializer() {
+        DefaultCookieSerializer serializer = new DefaultCookieSerializer();
+        serializer.setCookieName("JSESSIONID");
+        serializer.setSameSite("Lax");
+        return serializer;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpiredSessions() {
+        if (jdbcSessions != null) {
+            jdbcSessions.purgeExpired();
+        } else {
+            localSessions.values().removeIf(Session::isExpired);
+        }
+    }
+}
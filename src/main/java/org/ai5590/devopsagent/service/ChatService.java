@@ -1,43 +1,91 @@
 package org.ai5590.devopsagent.service;
 
+import org.ai5590.devopsagent.actions.Action;
 import org.ai5590.devopsagent.actions.ActionParser;
+import org.ai5590.devopsagent.actions.AgentPolicy;
+import org.ai5590.devopsagent.actions.BatchExecutor;
+import org.ai5590.devopsagent.actions.OutputCondensers;
+import org.ai5590.devopsagent.actions.PendingActionStore;
+import org.ai5590.devopsagent.audit.AuditService;
+import org.ai5590.devopsagent.config.AppConfig;
 import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.config.ConfigSnapshot;
+import org.ai5590.devopsagent.db.Message;
 import org.ai5590.devopsagent.db.MessageRepository;
-import org.ai5590.devopsagent.db.PendingActionsRepository;
+import org.ai5590.devopsagent.db.OutputBlobRepository;
 import org.ai5590.devopsagent.db.UserRepository;
+import org.ai5590.devopsagent.db.UserSettingsRepository;
 import org.ai5590.devopsagent.openai.OpenAiService;
+import org.ai5590.devopsagent.sshagent.ServerHealthTracker;
+import org.ai5590.devopsagent.sshagent.ServerInventory;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
     private static final int MESSAGE_LIMIT = 30;
+    // Sent to the model after automatic steps only; it is not stored in history.
+    private static final String AGENT_CONTINUE = "The results of the actions you proposed are above; they were executed automatically. "
+            + "Continue the diagnosis. Propose further actions only if they are needed, otherwise summarize the findings.";
 
     private final MessageRepository messageRepository;
+    private final OutputBlobRepository outputBlobRepository;
     private final UserRepository userRepository;
-    private final PendingActionsRepository pendingActionsRepository;
+    private final PendingActionStore pendingActionStore;
     private final OpenAiService openAiService;
     private final ConfigLoader configLoader;
     private final ActionParser actionParser;
-
-    public ChatService(MessageRepository messageRepository, UserRepository userRepository,
-                       PendingActionsRepository pendingActionsRepository, OpenAiService openAiService,
-                       ConfigLoader configLoader, ActionParser actionParser) {
+    private final BatchExecutor batchExecutor;
+    private final OutputCondensers outputCondensers;
+    private final AgentPolicy agentPolicy;
+    private final UserSettingsRepository userSettingsRepository;
+    private final AuditService auditService;
+    private final ServerInventory serverInventory;
+    private final ServerHealthTracker serverHealth;
+    private final Tracing tracing;
+
+    public ChatService(MessageRepository messageRepository, OutputBlobRepository outputBlobRepository,
+                       UserRepository userRepository, PendingActionStore pendingActionStore,
+                       OpenAiService openAiService, ConfigLoader configLoader, ActionParser actionParser,
+                       BatchExecutor batchExecutor, OutputCondensers outputCondensers, AgentPolicy agentPolicy,
+                       UserSettingsRepository userSettingsRepository, AuditService auditService,
+                       ServerInventory serverInventory, ServerHealthTracker serverHealth, Tracing tracing) {
         this.messageRepository = messageRepository;
+        this.outputBlobRepository = outputBlobRepository;
         this.userRepository = userRepository;
-        this.pendingActionsRepository = pendingActionsRepository;
+        this.pendingActionStore = pendingActionStore;
         this.openAiService = openAiService;
         this.configLoader = configLoader;
         this.actionParser = actionParser;
+        this.batchExecutor = batchExecutor;
+        this.outputCondensers = outputCondensers;
+        this.agentPolicy = agentPolicy;
+        this.userSettingsRepository = userSettingsRepository;
+        this.auditService = auditService;
+        this.serverInventory = serverInventory;
+        this.serverHealth = serverHealth;
+        this.tracing = tracing;
     }
 
     public Map<String, Object> sendMessage(String userLogin, String text) {
+        return tracing.call("ChatService.sendMessage", () -> {
+            Tracing.tag(Tracing.USER_ATTRIBUTE, userLogin);
+            return doSendMessage(userLogin, text);
+        });
+    }
+
+    private Map<String, Object> doSendMessage(String userLogin, String text) {
         Map<String, Object> response = new LinkedHashMap<>();
 
         if (userRepository.isPendingPromptUpdate(userLogin)) {
@@ -52,28 +100,48 @@ public class ChatService {
         int msgCount = messageRepository.getMessageCount(userLogin);
         boolean limitReached = msgCount >= MESSAGE_LIMIT;
 
-        List<Map<String, Object>> history = messageRepository.getLastMessages(userLogin, MESSAGE_LIMIT);
+        List<Message> history = messageRepository.getLastMessages(userLogin, MESSAGE_LIMIT);
 
         String promptOverride = userRepository.getPromptOverride(userLogin);
+        ConfigSnapshot prompts = configLoader.snapshot();
         String part1 = (promptOverride != null && !promptOverride.isBlank())
-                ? promptOverride : configLoader.getCachedPromptPart1();
-        String part2 = configLoader.loadSystemPromptPart2();
-        String systemPrompt = part1 + "\n\n" + part2;
+                ? promptOverride : prompts.promptPart1();
+        String systemPrompt = part1 + "\n\n" + prompts.promptPart2() + serverInventory.promptSummary()
+                + serverHealth.promptNote();
 
-        String aiResponse = openAiService.chat(systemPrompt, history, userLogin);
-        ActionParser.ParseResult parsed = actionParser.parse(aiResponse);
+        String aiResponse = openAiService.chat(systemPrompt, forModel(history), userLogin);
+        ActionParser.ParseResult parsed = tracing.call("ActionParser.parse", () -> actionParser.parse(aiResponse));
 
         String displayText = parsed.getTextContent();
         if (limitReached) {
             displayText = "\u26a0\ufe0f История диалога достигла лимита (30 сообщений). Самые старые сообщения будут вытесняться.\n\n" + displayText;
         }
 
-        messageRepository.addMessage(userLogin, "assistant", parsed.getTextContent());
+        CompletableFuture<Long> saved = messageRepository.addMessage(userLogin, "assistant", parsed.getTextContent());
 
         if (parsed.hasActions()) {
-            pendingActionsRepository.savePendingActions(userLogin, parsed.getActionsJson());
+            pendingActionStore.replace(userLogin, parsed.getActionsJson(), parsed.getActions());
         } else {
-            pendingActionsRepository.clearPendingActions(userLogin);
+            pendingActionStore.clear(userLogin);
+        }
+
+        // Both messages of this turn are committed in order, so the assistant ack covers the user message too.
+        tracing.run("MessageJournal.awaitCommit", saved::join);
+
+        int agentSteps = 0;
+        if (parsed.hasActions() && agentPolicy.allowsAll(parsed.getActions()) && agentModeFor(userLogin)) {
+            AppConfig.AgentSettings settings = configLoader.getConfig().getAgent();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getMaxSeconds());
+            String previousJson = null;
+            while (parsed.hasActions() && agentSteps < settings.getMaxSteps() && System.nanoTime() < deadline
+                    && agentPolicy.allowsAll(parsed.getActions()) && !parsed.getActionsJson().equals(previousJson)) {
+                previousJson = parsed.getActionsJson();
+                int step = ++agentSteps;
+                ActionParser.ParseResult proposal = parsed;
+                parsed = tracing.call("ChatService.agentStep", () -> agentStep(userLogin, systemPrompt, proposal, step));
+                displayText = parsed.getTextContent();
+            }
+            Tracing.tag("agent.steps", agentSteps);
         }
 
         response.put("text", displayText);
@@ -82,26 +150,71 @@ public class ChatService {
             response.put("actionsJson", parsed.getActionsJson());
         }
         response.put("limitReached", limitReached);
+        response.put("agentSteps", agentSteps);
         return response;
     }
 
+    private boolean agentModeFor(String userLogin) {
+        return configLoader.getConfig().getAgent().isEnabled() && userSettingsRepository.getAgentMode(userLogin);
+    }
+
+    // One automatic round: run the proposed batch (results go to history as one message), then ask the model again.
+    private ActionParser.ParseResult agentStep(String userLogin, String systemPrompt, ActionParser.ParseResult proposal, int step) {
+        String ids = proposal.getActions().actions().stream().map(Action::id).collect(Collectors.joining(","));
+        auditService.logAction(userLogin, "agent.auto_approve", null, ids, 0, "step " + step);
+        batchExecutor.executeAll(userLogin, proposal.getActions(), result -> { }).join();
+
+        List<Message> history = new ArrayList<>(messageRepository.getLastMessages(userLogin, MESSAGE_LIMIT));
+        history.add(new Message(0, "user", AGENT_CONTINUE, null));
+        String aiResponse = openAiService.chat(systemPrompt, forModel(history), userLogin);
+        ActionParser.ParseResult parsed = actionParser.parse(aiResponse);
+        CompletableFuture<Long> saved = messageRepository.addMessage(userLogin, "assistant", parsed.getTextContent());
+        if (parsed.hasActions()) {
+            pendingActionStore.replace(userLogin, parsed.getActionsJson(), parsed.getActions());
+        } else {
+            pendingActionStore.clear(userLogin);
+        }
+        saved.join();
+        return parsed;
+    }
+
+    private List<Message> forModel(List<Message> history) {
+        return tracing.call("OutputCondensers.forModel", () -> outputCondensers.forModel(history));
+    }
+
     public void newChat(String userLogin) {
         messageRepository.deleteAllMessages(userLogin);
-        pendingActionsRepository.clearPendingActions(userLogin);
+        outputBlobRepository.deleteAll(userLogin);
+        pendingActionStore.clear(userLogin);
+    }
+
+    // Ids only grow and "New Chat" resets the count, so id, count and the actions digest change whenever the state
+    // does. All three come from the database, so behind a load balancer any node (or a restarted one) answers a
+    // revalidation with the same tag.
+    public String getStateTag(String userLogin) {
+        return "W/\"" + messageRepository.getLastMessageId(userLogin) + '-' + messageRepository.getMessageCount(userLogin)
+                + '-' + pendingActionStore.getStateTag(userLogin) + '"';
     }
 
     public Map<String, Object> getState(String userLogin, long sinceId) {
+        return tracing.call("ChatService.getState", () -> doGetState(userLogin, sinceId));
+    }
+
+    private Map<String, Object> doGetState(String userLogin, long sinceId) {
         Map<String, Object> state = new LinkedHashMap<>();
-        List<Map<String, Object>> msgs;
+        List<Message> msgs;
         if (sinceId <= 0) {
             msgs = messageRepository.getLastMessages(userLogin, MESSAGE_LIMIT);
         } else {
             msgs = messageRepository.getMessagesSince(userLogin, sinceId);
         }
         state.put("messages", msgs);
-        String actionsJson = pendingActionsRepository.getPendingActions(userLogin);
+        String actionsJson = pendingActionStore.getActionsJson(userLogin);
         state.put("actionsJson", actionsJson);
         state.put("hasActions", actionsJson != null);
+        if (actionsJson != null) {
+            state.put("actionStates", pendingActionStore.getStates(userLogin));
+        }
         return state;
     }
 }
@@ -0,0 +1,214 @@
+package org.ai5590.devopsagent.sshagent;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.ai5590.devopsagent.json.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One persistent WebSocket to the ssh-executor-agent. Every request carries an id, so any number of them share the
+// connection and complete in any order; a caller that stops waiting sends a cancel for its id.
+//
+// Wire format (JSON text frames):
+//   -> {"id": "r1", "op": "exec", "server": "...", "command": "...", "headers": {"traceparent": "..."}}
+//   -> {"id": "r2", "op": "servers"}
+//   -> {"id": "r1", "op": "cancel"}
+//   <- {"id": "r1", "result": "..."}  or  {"id": "r1", "error": "..."}
+class AgentChannel {
+    private static final Logger log = LoggerFactory.getLogger(AgentChannel.class);
+
+    // The request never reached the agent, so it is safe to send it another way.
+    static class NotSentException extends IOException {
+        NotSentException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final URI uri;
+    private final Semaphore slots;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final StringBuilder partial = new StringBuilder();
+    private volatile WebSocket webSocket;
+    private volatile boolean closed;
+    // WebSocket allows one outstanding send at a time, so sends are chained.
+    private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+
+    private AgentChannel(URI uri, int maxInFlight) {
+        this.uri = uri;
+        this.slots = new Semaphore(Math.max(1, maxInFlight));
+    }
+
+    static AgentChannel open(HttpClient client, URI uri, int maxInFlight, Duration timeout)
+            throws IOException, InterruptedException {
+        AgentChannel channel = new AgentChannel(uri, maxInFlight);
+        try {
+            channel.webSocket = client.newWebSocketBuilder()
+                    .connectTimeout(timeout)
+                    .buildAsync(uri, channel.new Listener())
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out connecting to " + uri, e);
+        }
+        log.info("SSH agent channel open: {}", uri);
+        return channel;
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    String call(String op, Map<String, String> fields, Map<String, String> headers, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        if (closed) {
+            throw new NotSentException("SSH agent channel is closed", null);
+        }
+        if (!slots.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new NotSentException("Too many requests in flight on " + uri, null);
+        }
+        String id = "r" + ids.incrementAndGet();
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        inFlight.put(id, reply);
+        try {
+            byte[] message = Json.writeBytes(gen -> {
+                gen.writeStartObject();
+                gen.writeStringField("id", id);
+                gen.writeStringField("op", op);
+                for (Map.Entry<String, String> f : fields.entrySet()) {
+                    gen.writeStringField(f.getKey(), f.getValue());
+                }
+                if (!headers.isEmpty()) {
+                    gen.writeObjectFieldStart("headers");
+                    for (Map.Entry<String, String> h : headers.entrySet()) {
+                        gen.writeStringField(h.getKey(), h.getValue());
+                    }
+                    gen.writeEndObject();
+                }
+                gen.writeEndObject();
+            });
+            try {
+                send(new String(message, StandardCharsets.UTF_8)).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                close("send failed");
+                throw new NotSentException("Could not send to " + uri + ": " + e.getMessage(), e);
+            }
+            try {
+                return reply.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException | InterruptedException e) {
+                cancel(id);
+                throw e;
+            }
+        } finally {
+            inFlight.remove(id);
+            slots.release();
+        }
+    }
+
+    private void cancel(String id) {
+        if (closed) return;
+        send("{\"id\":\"" + id + "\",\"op\":\"cancel\"}");
+        log.debug("Cancelled agent request {}", id);
+    }
+
+    private synchronized CompletableFuture<?> send(String text) {
+        WebSocket ws = webSocket;
+        lastSend = lastSend.handle((r, e) -> null).thenCompose(v -> ws.sendText(text, true));
+        return lastSend;
+    }
+
+    void close(String reason) {
+        if (closed) return;
+        closed = true;
+        WebSocket ws = webSocket;
+        if (ws != null && !ws.isOutputClosed()) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, reason).exceptionally(e -> null);
+        }
+        failAll("SSH agent channel closed: " + reason);
+    }
+
+    private void failAll(String message) {
+        for (CompletableFuture<String> reply : inFlight.values()) {
+            reply.completeExceptionally(new IOException(message));
+        }
+    }
+
+    private void onReply(String text) {
+        String id = null;
+        String result = null;
+        String error = null;
+        try (JsonParser p = Json.FACTORY.createParser(text)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                if (value == JsonToken.VALUE_STRING) {
+                    switch (name) {
+                        case "id" -> id = p.getText();
+                        case "result" -> result = p.getText();
+                        case "error" -> error = p.getText();
+                        default -> { }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unreadable message from SSH agent channel: {}", e.getMessage());
+            return;
+        }
+        CompletableFuture<String> reply = id != null ? inFlight.get(id) : null;
+        // Replies to cancelled or timed-out requests have no one waiting any more.
+        if (reply == null) return;
+        reply.complete(result != null ? result : "Error: " + (error != null ? error : "empty reply"));
+    }
+
+    private class Listener implements WebSocket.Listener {
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                onReply(text);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            log.info("SSH agent channel closed by agent: {} {}", statusCode, reason);
+            closed = true;
+            failAll("SSH agent channel closed by agent");
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            log.warn("SSH agent channel error: {}", error.getMessage());
+            closed = true;
+            failAll("SSH agent channel error: " + error.getMessage());
+        }
+    }
+}
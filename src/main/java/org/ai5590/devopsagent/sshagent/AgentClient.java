@@ -0,0 +1,250 @@
+package org.ai5590.devopsagent.sshagent;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.json.Json;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocketHandshakeException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// One ssh-executor-agent: REST endpoints, the optional channel, health and the servers it reported.
+class AgentClient {
+    private static final Logger log = LoggerFactory.getLogger(AgentClient.class);
+    // After a failed connect; an agent without the endpoint is retried after sshAgent.retryUnsupportedSeconds.
+    private static final long CONNECT_RETRY_MILLIS = 5_000;
+
+    // Nothing reached the agent, so the call can go to another agent that serves the same host.
+    static class UnavailableException extends IOException {
+        UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final String id;
+    private final URI servers;
+    private final URI exec;
+    private final URI health;
+    private final URI channelUri;
+    private final List<Pattern> patterns;
+    private final AppConfig.SshAgentSettings settings;
+    private final HttpClient httpClient;
+    private final Tracing tracing;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object channelLock = new Object();
+    private volatile AgentChannel channel;
+    // While in the future, calls go straight to REST instead of trying to open the channel again.
+    private volatile long channelRetryAt;
+    private volatile boolean healthy = true;
+    private volatile Set<String> inventory;
+
+    AgentClient(String id, String baseUrl, String channelUrl, List<String> serverPatterns,
+                AppConfig.SshAgentSettings settings, HttpClient httpClient, Tracing tracing) {
+        this.id = id;
+        this.servers = URI.create(baseUrl + "/servers");
+        this.exec = URI.create(baseUrl + "/exec");
+        this.health = URI.create(baseUrl + "/health");
+        this.channelUri = URI.create(AppConfig.SshAgentSettings.channelUrlFor(baseUrl, channelUrl));
+        this.patterns = serverPatterns.stream().map(AgentClient::globToRegex).toList();
+        this.settings = settings;
+        this.httpClient = httpClient;
+        this.tracing = tracing;
+    }
+
+    String id() {
+        return id;
+    }
+
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    boolean hasInventory() {
+        return inventory != null;
+    }
+
+    boolean serves(String server) {
+        for (Pattern p : patterns) {
+            if (p.matcher(server).matches()) return true;
+        }
+        Set<String> known = inventory;
+        return known != null && known.contains(server);
+    }
+
+    String listServers() throws UnavailableException {
+        String result = call("servers", Map.of(), Duration.ofSeconds(30), () -> HttpRequest.newBuilder()
+                .uri(servers)
+                .timeout(Duration.ofSeconds(30))
+                .GET());
+        if (!result.startsWith("Error:")) {
+            inventory = parseInventory(result);
+        }
+        return result;
+    }
+
+    String execute(String server, String command, Duration timeout) throws UnavailableException {
+        return call("exec", Map.of("server", server, "command", command), timeout, () -> {
+            byte[] body = Json.writeBytes(gen -> {
+                gen.writeStartObject();
+                gen.writeStringField("server", server);
+                gen.writeStringField("command", command);
+                gen.writeEndObject();
+            });
+            return HttpRequest.newBuilder()
+                    .uri(exec)
+                    .header("Content-Type", "application/json")
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        });
+    }
+
+    // Any HTTP answer means the process is up; agents without /health answer 404.
+    void checkHealth() {
+        boolean up;
+        try {
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder().uri(health)
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.discarding());
+            up = response.statusCode() < 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException e) {
+            up = false;
+        }
+        if (up != healthy) {
+            log.info("SSH agent {} is {}", id, up ? "up" : "down");
+        }
+        healthy = up;
+    }
+
+    private interface RequestFactory {
+        HttpRequest.Builder create() throws IOException;
+    }
+
+    private String call(String op, Map<String, String> fields, Duration timeout, RequestFactory rest)
+            throws UnavailableException {
+        Tracing.tag("ssh.agent", id);
+        inFlight.incrementAndGet();
+        try {
+            String viaChannel = callChannel(op, fields, timeout);
+            if (viaChannel != null) return viaChannel;
+            HttpRequest.Builder requestBuilder = rest.create();
+            tracing.inject(requestBuilder);
+            HttpResponse<String> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            Tracing.tag("http.status_code", response.statusCode());
+            healthy = true;
+            return resultOrBody(response.body());
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            healthy = false;
+            throw new UnavailableException("SSH agent " + id + " unreachable: "
+                    + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error: interrupted";
+        } catch (Exception e) {
+            log.error("SSH agent {} {} failed: {}", id, op, e.getMessage());
+            Tracing.markError(e.getMessage());
+            return "Error: " + e.getMessage();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Returns null when the call should go over REST: channel disabled, not supported by the agent, or the request
+    // could not be sent. Once a request is sent, its outcome is final, so a command never runs twice.
+    private String callChannel(String op, Map<String, String> fields, Duration timeout) throws InterruptedException {
+        AgentChannel ch = channel();
+        if (ch == null) {
+            Tracing.tag("ssh.transport", "rest");
+            return null;
+        }
+        Tracing.tag("ssh.transport", "channel");
+        Map<String, String> headers = new HashMap<>();
+        tracing.inject(headers);
+        try {
+            return ch.call(op, fields, headers, timeout);
+        } catch (AgentChannel.NotSentException e) {
+            log.warn("SSH agent {} channel unavailable, using REST: {}", id, e.getMessage());
+            Tracing.tag("ssh.transport", "rest");
+            return null;
+        } catch (TimeoutException e) {
+            Tracing.markError("timeout");
+            return "Error: SSH agent did not answer within " + timeout.toSeconds() + " s";
+        } catch (IOException e) {
+            log.error("SSH agent {} {} failed: {}", id, op, e.getMessage());
+            Tracing.markError(e.getMessage());
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    private AgentChannel channel() {
+        if (!settings.channelEnabled()) return null;
+        AgentChannel ch = channel;
+        if (ch != null && ch.isOpen()) return ch;
+        if (System.currentTimeMillis() < channelRetryAt) return null;
+        synchronized (channelLock) {
+            ch = channel;
+            if (ch != null && ch.isOpen()) return ch;
+            if (System.currentTimeMillis() < channelRetryAt) return null;
+            try {
+                channel = AgentChannel.open(httpClient, channelUri, settings.getMaxInFlight(), Duration.ofSeconds(10));
+                return channel;
+            } catch (WebSocketHandshakeException e) {
+                log.info("SSH agent {} has no channel at {} (HTTP {}), using REST",
+                        id, channelUri, e.getResponse().statusCode());
+                channelRetryAt = System.currentTimeMillis() + settings.getRetryUnsupportedSeconds() * 1000L;
+            } catch (IOException e) {
+                log.warn("SSH agent {} channel {} not available: {}", id, channelUri, e.getMessage());
+                channelRetryAt = System.currentTimeMillis() + CONNECT_RETRY_MILLIS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel = null;
+            return null;
+        }
+    }
+
+    void close(String reason) {
+        AgentChannel ch = channel;
+        if (ch != null) ch.close(reason);
+    }
+
+    static Set<String> parseInventory(String listing) {
+        Set<String> names = new HashSet<>();
+        for (ServerRecord r : ServerInventory.parse(listing)) names.add(r.name());
+        return Set.copyOf(names);
+    }
+
+    private static Pattern globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : glob.trim().toCharArray()) {
+            switch (c) {
+                case '*' -> sb.append(".*");
+                case '?' -> sb.append('.');
+                default -> sb.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String resultOrBody(String body) throws IOException {
+        String result = Json.readString(body, "result");
+        return result != null ? result : body;
+    }
+}
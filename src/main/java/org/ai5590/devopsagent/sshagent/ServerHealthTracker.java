@@ -0,0 +1,247 @@
+package org.ai5590.devopsagent.sshagent;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Per target server: recent exec outcomes and latencies, a circuit breaker that fails fast while a host does not
+// answer, and a timeout raised above the fixed minimum for hosts whose commands are observed to be slow.
+@Component
+public class ServerHealthTracker {
+    private static final Logger log = LoggerFactory.getLogger(ServerHealthTracker.class);
+    // Only the first line is checked, and only when it is an ssh or client error, so a command that prints
+    // "connection refused" (e.g. grep over a log) does not count against its host. Only failures to connect count:
+    // an exec that ran into our timeout ("did not answer within", "request timed out") reached the host and may
+    // still be running there, so it says nothing about reachability.
+    private static final Pattern HOST_DOWN = Pattern.compile("^(ssh: |Error: ).*(?i:connection timed out|connection refused"
+            + "|no route to host|could not resolve hostname|network is unreachable|host is down|operation timed out"
+            + "|connection closed by).*");
+    // The fixed exec timeout used before timeouts became adaptive; a slow command is never cut off earlier.
+    private static final long TIMEOUT_FLOOR_MILLIS = 60_000;
+    // Names come from the model, so a stream of invented hosts must not grow this without bound.
+    private static final int MAX_SERVERS = 2000;
+    private static final int MIN_SAMPLES_FOR_TIMEOUT = 5;
+
+    public enum Outcome { SUCCESS, HOST_FAILURE, NEUTRAL }
+
+    public record Snapshot(String server, String state, int samples, int failures, int consecutiveFailures,
+                           long p99Millis, long timeoutMillis, String lastError, long lastFailureAt, long retryInSeconds) {
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("state", state);
+            m.put("samples", samples);
+            m.put("failures", failures);
+            m.put("consecutiveFailures", consecutiveFailures);
+            m.put("p99Ms", p99Millis);
+            m.put("timeoutMs", timeoutMillis);
+            m.put("lastError", lastError);
+            m.put("lastFailureAt", lastFailureAt);
+            m.put("retryInSeconds", retryInSeconds);
+            return m;
+        }
+    }
+
+    private final ConfigLoader configLoader;
+    private final Map<String, ServerState> servers = new ConcurrentHashMap<>();
+
+    public ServerHealthTracker(ConfigLoader configLoader) {
+        this.configLoader = configLoader;
+    }
+
+    // Returns null when the call may go ahead, otherwise the message to return instead of calling the agent.
+    // After the open period exactly one call is let through as a probe; the others keep failing fast until it ends.
+    public String admit(String server) {
+        AppConfig.ServerHealthSettings settings = settings();
+        ServerState s = servers.get(server);
+        if (!settings.isEnabled() || s == null) return null;
+        synchronized (s) {
+            long now = System.currentTimeMillis();
+            if (s.openUntil == 0) return null;
+            if (now >= s.openUntil && !s.probing) {
+                s.probing = true;
+                log.info("Probing server {} after {} consecutive failures", server, s.consecutiveFailures);
+                return null;
+            }
+            String prefix = "Error: server " + server + " is unreachable (" + s.consecutiveFailures
+                    + " consecutive connection failures, last: " + s.lastError + "). ";
+            if (s.probing) return prefix + "A reconnect probe is running.";
+            return prefix + "Not retried for " + Math.max(1, (s.openUntil - now + 999) / 1000) + " s.";
+        }
+    }
+
+    public Duration timeoutFor(String server) {
+        AppConfig.ServerHealthSettings settings = settings();
+        ServerState s = servers.get(server);
+        if (!settings.isEnabled() || s == null) return Duration.ofMillis(minTimeoutMillis(settings));
+        synchronized (s) {
+            return Duration.ofMillis(s.timeoutMillis(settings));
+        }
+    }
+
+    public void record(String server, String output, long elapsedMillis) {
+        AppConfig.ServerHealthSettings settings = settings();
+        if (!settings.isEnabled()) return;
+        Outcome outcome = classify(output);
+        ServerState s = servers.get(server);
+        if (s == null) {
+            if (outcome == Outcome.NEUTRAL || servers.size() >= MAX_SERVERS) return;
+            s = servers.computeIfAbsent(server, k -> new ServerState(settings.getWindowSize()));
+        }
+        synchronized (s) {
+            boolean wasProbe = s.probing;
+            s.probing = false;
+            if (outcome == Outcome.NEUTRAL) return;
+            s.add(outcome == Outcome.SUCCESS, elapsedMillis);
+            if (outcome == Outcome.SUCCESS) {
+                if (s.openUntil != 0) log.info("Server {} is reachable again", server);
+                s.consecutiveFailures = 0;
+                s.openUntil = 0;
+                s.openMillis = 0;
+                return;
+            }
+            s.consecutiveFailures++;
+            s.lastError = firstLine(output);
+            s.lastFailureAt = System.currentTimeMillis();
+            if (wasProbe) {
+                s.openMillis = Math.min(settings.getMaxOpenSeconds() * 1000L, Math.max(s.openMillis * 2, settings.getOpenSeconds() * 1000L));
+            } else if (s.openUntil == 0 && s.consecutiveFailures >= settings.getFailureThreshold()) {
+                s.openMillis = settings.getOpenSeconds() * 1000L;
+                log.warn("Server {} marked unreachable after {} consecutive failures: {}", server, s.consecutiveFailures, s.lastError);
+            } else {
+                return;
+            }
+            s.openUntil = System.currentTimeMillis() + s.openMillis;
+        }
+    }
+
+    public static Outcome classify(String output) {
+        if (output == null) return Outcome.NEUTRAL;
+        String first = firstLine(output);
+        if (HOST_DOWN.matcher(first).matches()) return Outcome.HOST_FAILURE;
+        // Our own errors (agent unreachable, no agent for the server, interrupted) say nothing about the host.
+        if (first.startsWith("Error: ")) return Outcome.NEUTRAL;
+        return Outcome.SUCCESS;
+    }
+
+    public Snapshot get(String server) {
+        ServerState s = servers.get(server);
+        if (s == null) return new Snapshot(server, "unknown", 0, 0, 0, 0, minTimeoutMillis(settings()), null, 0, 0);
+        AppConfig.ServerHealthSettings settings = settings();
+        synchronized (s) {
+            long now = System.currentTimeMillis();
+            String state;
+            if (s.openUntil != 0) state = s.probing || now >= s.openUntil ? "probing" : "down";
+            else if (s.count == 0) state = "unknown";
+            else if (s.consecutiveFailures > 0 || s.failures() > 0) state = "degraded";
+            else state = "up";
+            long retryIn = s.openUntil > now ? (s.openUntil - now + 999) / 1000 : 0;
+            return new Snapshot(server, state, s.count, s.failures(), s.consecutiveFailures, s.p99(),
+                    s.timeoutMillis(settings), s.lastError, s.lastFailureAt, retryIn);
+        }
+    }
+
+    public List<Snapshot> snapshot() {
+        List<String> names = new ArrayList<>(servers.keySet());
+        Collections.sort(names);
+        List<Snapshot> result = new ArrayList<>(names.size());
+        for (String name : names) result.add(get(name));
+        return result;
+    }
+
+    // Appended to the system prompt only while some server has problems, so the prompt stays the same (and
+    // cacheable by the provider) while everything is healthy.
+    public String promptNote() {
+        StringBuilder sb = new StringBuilder();
+        for (Snapshot s : snapshot()) {
+            switch (s.state()) {
+                case "down", "probing" -> sb.append("\n- ").append(s.server()).append(": UNREACHABLE, ")
+                        .append(s.consecutiveFailures()).append(" consecutive connection failures (last: ")
+                        .append(s.lastError()).append("). Calls fail immediately")
+                        .append(s.retryInSeconds() > 0 ? " for another " + s.retryInSeconds() + " s" : "").append('.');
+                case "degraded" -> {
+                    if (s.consecutiveFailures() > 0) {
+                        sb.append("\n- ").append(s.server()).append(": unstable, the last ").append(s.consecutiveFailures())
+                                .append(" connection attempt(s) failed (").append(s.lastError()).append(").");
+                    }
+                }
+                default -> { }
+            }
+        }
+        if (sb.length() == 0) return "";
+        return "\n\n## Server health (observed by the application)\n"
+                + "Do not propose ssh.execute for UNREACHABLE servers unless the user explicitly asks to retry; "
+                + "say the host is down and suggest checking it (network, power, sshd) instead." + sb;
+    }
+
+    private AppConfig.ServerHealthSettings settings() {
+        return configLoader.getConfig().getServerHealth();
+    }
+
+    private static long minTimeoutMillis(AppConfig.ServerHealthSettings settings) {
+        return Math.max(TIMEOUT_FLOOR_MILLIS, settings.getMinTimeoutSeconds() * 1000L);
+    }
+
+    private static String firstLine(String output) {
+        String trimmed = output.strip();
+        int nl = trimmed.indexOf('\n');
+        String line = nl >= 0 ? trimmed.substring(0, nl) : trimmed;
+        return line.length() > 200 ? line.substring(0, 200) + "..." : line;
+    }
+
+    private static final class ServerState {
+        private final long[] latencies;
+        private final boolean[] ok;
+        private int count;
+        private int next;
+        private int consecutiveFailures;
+        private long openUntil;
+        private long openMillis;
+        private boolean probing;
+        private String lastError;
+        private long lastFailureAt;
+
+        ServerState(int window) {
+            latencies = new long[Math.max(1, window)];
+            ok = new boolean[latencies.length];
+        }
+
+        void add(boolean success, long millis) {
+            latencies[next] = millis;
+            ok[next] = success;
+            next = (next + 1) % latencies.length;
+            if (count < latencies.length) count++;
+        }
+
+        int failures() {
+            int f = 0;
+            for (int i = 0; i < count; i++) if (!ok[i]) f++;
+            return f;
+        }
+
+        // Over successful calls only: a failure's latency is the timeout, not the server's speed.
+        long p99() {
+            long[] sample = new long[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) if (ok[i]) sample[n++] = latencies[i];
+            if (n == 0) return 0;
+            Arrays.sort(sample, 0, n);
+            return sample[Math.min(n - 1, (int) Math.ceil(n * 0.99) - 1)];
+        }
+
+        // Only ever longer than the minimum: a host whose commands are slow gets more time, none gets less.
+        long timeoutMillis(AppConfig.ServerHealthSettings settings) {
+            long min = minTimeoutMillis(settings);
+            long max = Math.max(min, settings.getMaxTimeoutSeconds() * 1000L);
+            if (count - failures() < MIN_SAMPLES_FOR_TIMEOUT) return min;
+            long adaptive = (long) (p99() * settings.getTimeoutP99Multiplier());
+            return Math.max(min, Math.min(max, adaptive));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.ai5590.devopsagent.sshagent;
+
+import jakarta.annotation.PreDestroy;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Typed, indexed view of the agents' server listings. Reads never wait for the agents: a snapshot older than
+// inventory.refreshAheadSeconds is refreshed in the background while the old one keeps being served.
+@Component
+public class ServerInventory {
+    private static final Logger log = LoggerFactory.getLogger(ServerInventory.class);
+    private static final Pattern TAG_GROUP = Pattern.compile("\\[([^\\]]*)\\]");
+    private static final Pattern NUMBERED = Pattern.compile("(.*?)(\\d+)");
+    // A failed background refresh is not retried on every read.
+    private static final long RETRY_MILLIS = 30_000;
+
+    private final SshAgentService sshAgentService;
+    private final ConfigLoader configLoader;
+    private final Tracing tracing;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "inventory-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot("", List.of(), 0, 0);
+    private volatile long lastAttempt;
+
+    public static final class Snapshot {
+        private final String raw;
+        private final List<ServerRecord> servers;
+        private final long loadedAt;
+        private final Map<String, ServerRecord> byName = new HashMap<>();
+        private final NavigableMap<String, ServerRecord> byLowerName = new TreeMap<>();
+        private final Map<String, List<ServerRecord>> byTag = new HashMap<>();
+        private final String promptSummary;
+
+        Snapshot(String raw, List<ServerRecord> servers, long loadedAt, int promptBudgetChars) {
+            this.raw = raw;
+            this.servers = servers;
+            this.loadedAt = loadedAt;
+            for (ServerRecord s : servers) {
+                byName.putIfAbsent(s.name(), s);
+                byLowerName.putIfAbsent(s.name().toLowerCase(Locale.ROOT), s);
+                for (String tag : s.tags()) byTag.computeIfAbsent(tag, k -> new ArrayList<>()).add(s);
+            }
+            this.promptSummary = servers.isEmpty() ? "" : summarize(servers, promptBudgetChars);
+        }
+
+        public String raw() {
+            return raw;
+        }
+
+        public List<ServerRecord> servers() {
+            return servers;
+        }
+
+        public long loadedAt() {
+            return loadedAt;
+        }
+
+        public boolean isLoaded() {
+            return loadedAt > 0;
+        }
+
+        public ServerRecord find(String name) {
+            return byName.get(name);
+        }
+
+        public List<ServerRecord> withTag(String tag) {
+            return byTag.getOrDefault(tag.toLowerCase(Locale.ROOT), List.of());
+        }
+
+        public List<ServerRecord> withPrefix(String prefix) {
+            String p = prefix.toLowerCase(Locale.ROOT);
+            return List.copyOf(byLowerName.subMap(p, true, p + Character.MAX_VALUE, false).values());
+        }
+
+        // "," separates alternatives, whitespace within one combines conditions:
+        // "tag:web tag:prod, prod-db-01" = servers tagged both web and prod, plus prod-db-01.
+        // Atoms: tag:<tag>, prefix:<prefix>, a glob with * or ?, or an exact name (kept even if not listed).
+        public List<ServerRecord> select(String selector) {
+            Set<ServerRecord> result = new LinkedHashSet<>();
+            if (selector == null) return List.of();
+            for (String term : selector.split(",")) {
+                Set<ServerRecord> matched = null;
+                for (String atom : term.trim().split("\\s+")) {
+                    if (atom.isEmpty()) continue;
+                    List<ServerRecord> m = matchAtom(atom);
+                    if (matched == null) matched = new LinkedHashSet<>(m);
+                    else matched.retainAll(m);
+                }
+                if (matched != null) result.addAll(matched);
+            }
+            List<ServerRecord> ordered = new ArrayList<>(result);
+            ordered.sort(Comparator.comparing(ServerRecord::name));
+            return ordered;
+        }
+
+        private List<ServerRecord> matchAtom(String atom) {
+            if (atom.startsWith("tag:")) return withTag(atom.substring(4));
+            if (atom.startsWith("prefix:")) return withPrefix(atom.substring(7));
+            if (atom.indexOf('*') >= 0 || atom.indexOf('?') >= 0) {
+                Pattern glob = Pattern.compile(atom.replace(".", "\\.").replace("?", ".").replace("*", ".*"),
+                        Pattern.CASE_INSENSITIVE);
+                return servers.stream().filter(s -> glob.matcher(s.name()).matches()).toList();
+            }
+            ServerRecord known = byName.get(atom);
+            return List.of(known != null ? known : new ServerRecord(atom, null, null, List.of(), null));
+        }
+
+        public String promptSummary() {
+            return promptSummary;
+        }
+    }
+
+    public ServerInventory(SshAgentService sshAgentService, ConfigLoader configLoader, Tracing tracing) {
+        this.sshAgentService = sshAgentService;
+        this.configLoader = configLoader;
+        this.tracing = tracing;
+        if (settings().isEnabled()) refreshAsync();
+    }
+
+    // Never blocks; may return an empty snapshot right after startup.
+    public Snapshot current() {
+        Snapshot s = snapshot;
+        long age = System.currentTimeMillis() - s.loadedAt();
+        if (age > settings().getRefreshAheadSeconds() * 1000L) refreshAsync();
+        return s;
+    }
+
+    // For targeting: waits for a fetch when there is no snapshot or it is past inventory.ttlSeconds.
+    public Snapshot require() {
+        Snapshot s = snapshot;
+        if (!s.isLoaded() || System.currentTimeMillis() - s.loadedAt() > settings().getTtlSeconds() * 1000L) {
+            return refresh();
+        }
+        return current();
+    }
+
+    public Snapshot refresh() {
+        return tracing.call("ServerInventory.refresh", () -> {
+            lastAttempt = System.currentTimeMillis();
+            return update(sshAgentService.listServers());
+        });
+    }
+
+    // Also fed by ssh.list_servers actions, so a listing the model asked for refreshes the inventory for free.
+    public Snapshot update(String listing) {
+        List<ServerRecord> servers = parse(listing);
+        Snapshot previous = snapshot;
+        if (servers.isEmpty() && previous.isLoaded()) {
+            // An agent outage should not wipe what we knew; keep serving the old list.
+            log.warn("Server listing had no servers, keeping {} known servers", previous.servers().size());
+            return new Snapshot(listing, previous.servers(), previous.loadedAt(), settings().getPromptBudgetChars());
+        }
+        Snapshot next = new Snapshot(listing, servers, servers.isEmpty() ? 0 : System.currentTimeMillis(),
+                settings().getPromptBudgetChars());
+        snapshot = next;
+        Tracing.tag("inventory.servers", servers.size());
+        return next;
+    }
+
+    public String promptSummary() {
+        return settings().isEnabled() ? current().promptSummary() : "";
+    }
+
+    private void refreshAsync() {
+        if (System.currentTimeMillis() - lastAttempt < RETRY_MILLIS) return;
+        if (!refreshing.compareAndSet(false, true)) return;
+        lastAttempt = System.currentTimeMillis();
+        refresher.execute(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                log.warn("Inventory refresh failed: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private AppConfig.InventorySettings settings() {
+        return configLoader.getConfig().getInventory();
+    }
+
+    // One server per line, name first and usually the address second; merged listings add "# agent: <id>" lines.
+    public static List<ServerRecord> parse(String listing) {
+        List<ServerRecord> records = new ArrayList<>();
+        if (listing == null) return records;
+        String agent = null;
+        for (String line : listing.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("# agent: ")) {
+                agent = trimmed.substring("# agent: ".length()).trim();
+                continue;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("Error:")) continue;
+            String[] nameAndRest = trimmed.split("\\s+", 2);
+            String rest = nameAndRest.length > 1 ? nameAndRest[1] : "";
+            Set<String> tags = new TreeSet<>();
+            Matcher m = TAG_GROUP.matcher(rest);
+            while (m.find()) {
+                for (String tag : m.group(1).split("[,\\s]+")) {
+                    if (!tag.isBlank()) tags.add(tag.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            String[] fields = TAG_GROUP.matcher(rest).replaceAll(" ").trim().split("\\s+", 2);
+            String host = fields[0].isEmpty() ? null : fields[0];
+            String details = fields.length > 1 ? fields[1] : null;
+            records.add(new ServerRecord(nameAndRest[0], host, agent, List.copyOf(tags), details));
+        }
+        records.sort(Comparator.comparing(ServerRecord::name));
+        return records;
+    }
+
+    // Names only (the model does not need addresses), grouped by tag set, with numbered names folded:
+    // prod-web-02, prod-web-03, prod-web-05 -> prod-web-{02..03,05}. Falls back to per-prefix counts, then cuts.
+    static String summarize(List<ServerRecord> servers, int budgetChars) {
+        Map<String, List<String>> groups = new TreeMap<>();
+        for (ServerRecord s : servers) {
+            String key = s.tags().isEmpty() ? "untagged" : String.join(",", s.tags());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(s.name());
+        }
+        String header = "\n\n## Known servers (" + servers.size() + ", grouped by tags)\n"
+                + "Use these names directly; call ssh.list_servers only if a server is missing or addresses are needed.";
+        StringBuilder full = new StringBuilder(header);
+        for (Map.Entry<String, List<String>> g : groups.entrySet()) {
+            full.append("\n- ").append(g.getKey()).append(" (").append(g.getValue().size()).append("): ")
+                    .append(foldNames(g.getValue()));
+        }
+        if (full.length() <= budgetChars) return full.toString();
+
+        // Largest groups first, so a cut drops the small ones.
+        List<Map.Entry<String, List<String>>> bySize = new ArrayList<>(groups.entrySet());
+        bySize.sort(Comparator.comparingInt((Map.Entry<String, List<String>> g) -> -g.getValue().size())
+                .thenComparing(Map.Entry::getKey));
+        StringBuilder compact = new StringBuilder(header);
+        for (Map.Entry<String, List<String>> g : bySize) {
+            Map<String, Integer> prefixes = new TreeMap<>();
+            for (String name : g.getValue()) {
+                Matcher m = NUMBERED.matcher(name);
+                prefixes.merge(m.matches() ? m.group(1) + "*" : name, 1, Integer::sum);
+            }
+            StringBuilder line = new StringBuilder("\n- ").append(g.getKey()).append(" (").append(g.getValue().size()).append("): ");
+            int n = 0;
+            for (Map.Entry<String, Integer> p : prefixes.entrySet()) {
+                if (n++ > 0) line.append(", ");
+                line.append(p.getKey()).append(p.getValue() > 1 ? " x" + p.getValue() : "");
+            }
+            if (compact.length() + line.length() > budgetChars - 60) {
+                compact.append("\n- ... more groups; use ssh.list_servers for the full list");
+                break;
+            }
+            compact.append(line);
+        }
+        return compact.toString();
+    }
+
+    static String foldNames(List<String> names) {
+        // prefix + digit width -> numbers, so web-1 and web-01 stay apart.
+        Map<String, TreeMap<Integer, String>> numbered = new TreeMap<>();
+        List<String> plain = new ArrayList<>();
+        for (String name : names) {
+            Matcher m = NUMBERED.matcher(name);
+            if (m.matches() && m.group(2).length() <= 9) {
+                numbered.computeIfAbsent(m.group(1) + "\u0000" + m.group(2).length(), k -> new TreeMap<>())
+                        .put(Integer.parseInt(m.group(2)), m.group(2));
+            } else {
+                plain.add(name);
+            }
+        }
+        List<String> parts = new ArrayList<>(plain);
+        for (Map.Entry<String, TreeMap<Integer, String>> e : numbered.entrySet()) {
+            String prefix = e.getKey().substring(0, e.getKey().indexOf('\u0000'));
+            TreeMap<Integer, String> nums = e.getValue();
+            if (nums.size() == 1) {
+                parts.add(prefix + nums.firstEntry().getValue());
+                continue;
+            }
+            List<String> ranges = new ArrayList<>();
+            Integer start = null;
+            Integer prev = null;
+            for (Integer n : nums.keySet()) {
+                if (start != null && n == prev + 1) {
+                    prev = n;
+                    continue;
+                }
+                if (start != null) ranges.add(range(nums, start, prev));
+                start = n;
+                prev = n;
+            }
+            ranges.add(range(nums, start, prev));
+            parts.add(prefix + "{" + String.join(",", ranges) + "}");
+        }
+        return String.join(", ", parts);
+    }
+
+    private static String range(TreeMap<Integer, String> nums, int from, int to) {
+        return from == to ? nums.get(from) : nums.get(from) + ".." + nums.get(to);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,7 @@
+package org.ai5590.devopsagent.sshagent;
+
+import java.util.List;
+
+// One line of an agent's server listing. tags come from [a,b] groups; agent is set for merged multi-agent listings.
+public record ServerRecord(String name, String host, String agent, List<String> tags, String details) {
+}
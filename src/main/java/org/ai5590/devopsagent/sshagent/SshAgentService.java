@@ -1,69 +1,230 @@
 package org.ai5590.devopsagent.sshagent;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigChange;
 import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Routes calls across the configured ssh-executor-agents: a server goes to the agents whose patterns match it or
+// that listed it, preferring healthy ones with the fewest calls in flight.
 @Service
 public class SshAgentService {
     private static final Logger log = LoggerFactory.getLogger(SshAgentService.class);
     private final ConfigLoader configLoader;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ServerHealthTracker serverHealth;
+    private final Tracing tracing;
     private final HttpClient httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
             .build();
+    private final ExecutorService fanOut;
+    private final ScheduledExecutorService healthChecks;
+    private final AtomicInteger rotation = new AtomicInteger();
+    private volatile List<AgentClient> agents;
 
-    public SshAgentService(ConfigLoader configLoader) {
+    public SshAgentService(ConfigLoader configLoader, ServerHealthTracker serverHealth, Tracing tracing) {
         this.configLoader = configLoader;
+        this.serverHealth = serverHealth;
+        this.tracing = tracing;
+        this.agents = build(configLoader.getConfig());
+        AtomicInteger counter = new AtomicInteger();
+        this.fanOut = Context.taskWrapping(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ssh-agent-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }));
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ssh-agent-health");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleHealthCheck();
+        configLoader.addListener(this::onConfigChange);
     }
 
-    public String listServers() {
-        try {
-            String url = configLoader.getConfig().getSshAgentBaseUrl() + "/servers";
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(30))
-                    .GET()
-                    .build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            JsonNode root = mapper.readTree(response.body());
-            return root.path("result").asText(response.body());
-        } catch (Exception e) {
-            log.error("SSH agent listServers failed: {}", e.getMessage());
-            return "Error: " + e.getMessage();
+    private List<AgentClient> build(AppConfig config) {
+        AppConfig.SshAgentSettings settings = config.getSshAgent();
+        List<AgentClient> clients = new ArrayList<>();
+        for (AppConfig.SshAgentEndpoint ep : config.getSshAgents()) {
+            if (!ep.isEnabled() || ep.getBaseUrl() == null || ep.getBaseUrl().isBlank()) continue;
+            String id = ep.getId() != null ? ep.getId() : ep.getBaseUrl();
+            clients.add(new AgentClient(id, ep.getBaseUrl(), ep.getChannelUrl(), ep.getServers(), settings, httpClient, tracing));
         }
+        if (clients.isEmpty()) {
+            clients.add(new AgentClient("default", config.getSshAgentBaseUrl(), settings.getChannelUrl(), List.of("*"),
+                    settings, httpClient, tracing));
+        }
+        log.info("SSH agents: {}", clients.stream().map(AgentClient::id).toList());
+        return List.copyOf(clients);
+    }
+
+    private void onConfigChange(ConfigChange change) {
+        if (!change.changed("sshAgentBaseUrl") && !change.changed("sshAgent") && !change.changed("sshAgents")) return;
+        List<AgentClient> previous = agents;
+        agents = build(change.current().config());
+        for (AgentClient a : previous) a.close("configuration changed");
+    }
+
+    public String listServers() {
+        return tracing.callClient("SshAgentService.listServers", () -> {
+            List<AgentClient> all = agents;
+            if (all.size() == 1) {
+                return listOne(all.get(0));
+            }
+            // Every agent is asked at once; the slowest one sets the latency, not the sum.
+            List<CompletableFuture<String>> listings = new ArrayList<>();
+            for (AgentClient a : all) {
+                listings.add(CompletableFuture.supplyAsync(() -> listOne(a), fanOut));
+            }
+            StringBuilder merged = new StringBuilder();
+            for (int i = 0; i < all.size(); i++) {
+                if (merged.length() > 0) merged.append("\n\n");
+                merged.append("# agent: ").append(all.get(i).id()).append('\n').append(listings.get(i).join().trim());
+            }
+            return merged.toString();
+        });
     }
 
     public String execute(String server, String command) {
+        return tracing.callClient("SshAgentService.execute", () -> {
+            Tracing.tag("ssh.server", server);
+            String rejected = serverHealth.admit(server);
+            if (rejected != null) {
+                Tracing.tag("ssh.circuit", "open");
+                return rejected;
+            }
+            Duration timeout = serverHealth.timeoutFor(server);
+            Tracing.tag("ssh.timeout_ms", timeout.toMillis());
+            long start = System.currentTimeMillis();
+            String output = null;
+            try {
+                output = route(server, command, timeout);
+                return output;
+            } finally {
+                serverHealth.record(server, output, System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    public record ExecResult(String server, String output, long elapsedMillis) {
+    }
+
+    // Same command on several servers, at most parallelism at a time; results keep the order of servers.
+    public List<ExecResult> executeMany(List<String> servers, String command, int parallelism) {
+        return tracing.call("SshAgentService.executeMany", () -> {
+            Tracing.tag("ssh.targets", servers.size());
+            Semaphore slots = new Semaphore(Math.max(1, parallelism));
+            List<CompletableFuture<ExecResult>> futures = new ArrayList<>(servers.size());
+            for (String server : servers) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        slots.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return new ExecResult(server, "Error: interrupted", 0);
+                    }
+                    try {
+                        long start = System.currentTimeMillis();
+                        String output = execute(server, command);
+                        return new ExecResult(server, output, System.currentTimeMillis() - start);
+                    } finally {
+                        slots.release();
+                    }
+                }, fanOut));
+            }
+            List<ExecResult> results = new ArrayList<>(servers.size());
+            for (CompletableFuture<ExecResult> f : futures) results.add(f.join());
+            return results;
+        });
+    }
+
+    private String route(String server, String command, Duration timeout) {
+        List<AgentClient> candidates = route(server);
+        if (candidates.isEmpty()) {
+            Tracing.markError("no agent");
+            return "Error: no SSH agent serves server " + server;
+        }
+        String lastError = null;
+        for (AgentClient a : candidates) {
+            try {
+                return a.execute(server, command, timeout);
+            } catch (AgentClient.UnavailableException e) {
+                log.warn("{}; trying the next agent for {}", e.getMessage(), server);
+                lastError = e.getMessage();
+            }
+        }
+        Tracing.markError(lastError);
+        return "Error: " + lastError;
+    }
+
+    // Candidates in the order to try them: healthy first, then fewest calls in flight, ties spread round-robin.
+    private List<AgentClient> route(String server) {
+        List<AgentClient> all = agents;
+        if (all.size() == 1) return all;
+        List<AgentClient> matching = matching(all, server);
+        if (matching.isEmpty() && all.stream().anyMatch(a -> a.isHealthy() && !a.hasInventory())) {
+            // Unknown host and a reachable agent never listed its servers: ask them all, then route again.
+            listServers();
+            matching = matching(all, server);
+        }
+        int offset = rotation.getAndIncrement();
+        List<AgentClient> ordered = new ArrayList<>(matching.size());
+        for (int i = 0; i < matching.size(); i++) {
+            ordered.add(matching.get(Math.floorMod(offset + i, matching.size())));
+        }
+        ordered.sort(Comparator.comparing((AgentClient a) -> !a.isHealthy()).thenComparingInt(AgentClient::inFlight));
+        return ordered;
+    }
+
+    private static List<AgentClient> matching(List<AgentClient> all, String server) {
+        return all.stream().filter(a -> a.serves(server)).toList();
+    }
+
+    private static String listOne(AgentClient a) {
         try {
-            String url = configLoader.getConfig().getSshAgentBaseUrl() + "/exec";
-            ObjectNode body = mapper.createObjectNode();
-            body.put("server", server);
-            body.put("command", command);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(60))
-                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            JsonNode root = mapper.readTree(response.body());
-            return root.path("result").asText(response.body());
-        } catch (Exception e) {
-            log.error("SSH agent execute failed: {}", e.getMessage());
+            return a.listServers();
+        } catch (AgentClient.UnavailableException e) {
+            log.error("SSH agent listServers failed: {}", e.getMessage());
+            Tracing.markError(e.getMessage());
             return "Error: " + e.getMessage();
         }
     }
+
+    private void scheduleHealthCheck() {
+        int seconds = Math.max(1, configLoader.getConfig().getSshAgent().getHealthCheckSeconds());
+        healthChecks.schedule(() -> {
+            try {
+                List<AgentClient> all = agents;
+                // With one agent there is nowhere else to route, so there is nothing to check.
+                if (all.size() > 1) {
+                    CompletableFuture.allOf(all.stream()
+                            .map(a -> CompletableFuture.runAsync(a::checkHealth, fanOut))
+                            .toArray(CompletableFuture[]::new)).join();
+                }
+            } catch (RuntimeException e) {
+                log.warn("SSH agent health check failed: {}", e.getMessage());
+            } finally {
+                if (!healthChecks.isShutdown()) scheduleHealthCheck();
+            }
+        }, seconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthChecks.shutdownNow();
+        fanOut.shutdownNow();
+        for (AgentClient a : agents) a.close("shutdown");
+    }
 }
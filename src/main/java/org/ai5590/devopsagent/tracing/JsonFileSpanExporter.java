@@ -0,0 +1,79 @@
+package org.ai5590.devopsagent.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+public class JsonFileSpanExporter implements SpanExporter {
+    private static final Logger log = LoggerFactory.getLogger(JsonFileSpanExporter.class);
+    private static final long MAX_FILE_BYTES = 100L * 1024 * 1024;
+    private final Path file;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public JsonFileSpanExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            rotateIfNeeded();
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (SpanData span : spans) {
+                    out.write(mapper.writeValueAsString(toJson(span)));
+                    out.write('\n');
+                }
+            }
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Failed to export spans to {}: {}", file, e.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private ObjectNode toJson(SpanData span) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("traceId", span.getTraceId());
+        node.put("spanId", span.getSpanId());
+        node.put("parentSpanId", span.getParentSpanId());
+        node.put("name", span.getName());
+        node.put("kind", span.getKind().name());
+        node.put("startEpochNanos", span.getStartEpochNanos());
+        node.put("durationMicros", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1000);
+        node.put("status", span.getStatus().getStatusCode().name());
+        ObjectNode attributes = node.putObject("attributes");
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        return node;
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        if (Files.exists(file) && Files.size(file) > MAX_FILE_BYTES) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
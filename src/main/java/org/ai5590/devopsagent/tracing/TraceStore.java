@@ -0,0 +1,101 @@
+package org.ai5590.devopsagent.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+@Component
+public class TraceStore implements SpanExporter {
+    private static final String INVALID_PARENT = "0000000000000000";
+    private static final AttributeKey<String> USER_KEY = AttributeKey.stringKey(Tracing.USER_ATTRIBUTE);
+    private final ConfigLoader configLoader;
+    private final Map<String, List<SpanData>> traces = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<SpanData>> eldest) {
+            return size() > configLoader.getConfig().getTracing().getMaxStoredTraces();
+        }
+    };
+
+    public TraceStore(ConfigLoader configLoader) {
+        this.configLoader = configLoader;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        for (SpanData span : spans) {
+            traces.computeIfAbsent(span.getTraceId(), k -> new ArrayList<>()).add(span);
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    public synchronized Map<String, Object> getBreakdown(String traceId, String userLogin) {
+        List<SpanData> spans = traces.get(traceId);
+        if (spans == null || !userLogin.equals(findUser(spans))) return null;
+
+        List<SpanData> sorted = new ArrayList<>(spans);
+        sorted.sort(Comparator.comparingLong(SpanData::getStartEpochNanos));
+        Map<String, SpanData> byId = new HashMap<>();
+        for (SpanData s : sorted) byId.put(s.getSpanId(), s);
+
+        long traceStart = sorted.get(0).getStartEpochNanos();
+        long traceEnd = traceStart;
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (SpanData s : sorted) {
+            traceEnd = Math.max(traceEnd, s.getEndEpochNanos());
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", s.getName());
+            item.put("depth", depthOf(s, byId));
+            item.put("offsetMs", nanosToMillis(s.getStartEpochNanos() - traceStart));
+            item.put("durationMs", nanosToMillis(s.getEndEpochNanos() - s.getStartEpochNanos()));
+            item.put("error", s.getStatus().getStatusCode() == StatusCode.ERROR);
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            s.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+            item.put("attributes", attributes);
+            items.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("traceId", traceId);
+        result.put("totalMs", nanosToMillis(traceEnd - traceStart));
+        result.put("spans", items);
+        return result;
+    }
+
+    private String findUser(List<SpanData> spans) {
+        for (SpanData s : spans) {
+            String user = s.getAttributes().get(USER_KEY);
+            if (user != null) return user;
+        }
+        return null;
+    }
+
+    private int depthOf(SpanData span, Map<String, SpanData> byId) {
+        int depth = 0;
+        String parentId = span.getParentSpanId();
+        while (parentId != null && !INVALID_PARENT.equals(parentId) && byId.containsKey(parentId) && depth < 64) {
+            depth++;
+            parentId = byId.get(parentId).getParentSpanId();
+        }
+        return depth;
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,112 @@
+package org.ai5590.devopsagent.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Component
+public class Tracing {
+    public static final String USER_ATTRIBUTE = "enduser.id";
+    private static final String INSTRUMENTATION_NAME = "org.ai5590.devopsagent";
+
+    private static final TextMapSetter<HttpRequest.Builder> HTTP_REQUEST_SETTER =
+            (builder, key, value) -> builder.header(key, value);
+
+    private static final TextMapSetter<Map<String, String>> MAP_SETTER = Map::put;
+
+    private static final TextMapGetter<HttpServletRequest> SERVLET_REQUEST_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpServletRequest request) {
+            return List.of("traceparent", "tracestate");
+        }
+
+        @Override
+        public String get(HttpServletRequest request, String key) {
+            return request != null ? request.getHeader(key) : null;
+        }
+    };
+
+    private final Tracer tracer;
+    private final TextMapPropagator propagator;
+
+    public Tracing(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+        this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    public Span startSpan(String name, SpanKind kind) {
+        return tracer.spanBuilder(name).setSpanKind(kind).startSpan();
+    }
+
+    public Span startServerSpan(String name, HttpServletRequest request) {
+        Context parent = propagator.extract(Context.root(), request, SERVLET_REQUEST_GETTER);
+        return tracer.spanBuilder(name).setParent(parent).setSpanKind(SpanKind.SERVER).startSpan();
+    }
+
+    public <T> T call(String name, Supplier<T> body) {
+        return call(name, SpanKind.INTERNAL, body);
+    }
+
+    public <T> T callClient(String name, Supplier<T> body) {
+        return call(name, SpanKind.CLIENT, body);
+    }
+
+    public void run(String name, Runnable body) {
+        call(name, SpanKind.INTERNAL, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    private <T> T call(String name, SpanKind kind, Supplier<T> body) {
+        Span span = startSpan(name, kind);
+        try (Scope ignored = span.makeCurrent()) {
+            return body.get();
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    public void inject(HttpRequest.Builder builder) {
+        propagator.inject(Context.current(), builder, HTTP_REQUEST_SETTER);
+    }
+
+    // For transports without per-request headers: the caller writes the entries into its own message.
+    public void inject(Map<String, String> carrier) {
+        propagator.inject(Context.current(), carrier, MAP_SETTER);
+    }
+
+    public static void tag(String key, String value) {
+        if (value != null) Span.current().setAttribute(key, value);
+    }
+
+    public static void tag(String key, long value) {
+        Span.current().setAttribute(key, value);
+    }
+
+    public static void markError(String description) {
+        Span.current().setStatus(StatusCode.ERROR, description);
+    }
+
+    public static String currentTraceId() {
+        return Span.current().getSpanContext().getTraceId();
+    }
+}
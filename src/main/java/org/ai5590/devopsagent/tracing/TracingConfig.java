@@ -0,0 +1,48 @@
+package org.ai5590.devopsagent.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+public class TracingConfig {
+    private static final Logger log = LoggerFactory.getLogger(TracingConfig.class);
+
+    @Bean
+    public OpenTelemetry openTelemetry(ConfigLoader configLoader, TraceStore traceStore) {
+        AppConfig.TracingSettings settings = configLoader.getConfig().getTracing();
+        ContextPropagators propagators = ContextPropagators.create(W3CTraceContextPropagator.getInstance());
+        if (!settings.isEnabled()) {
+            log.info("Tracing disabled");
+            return OpenTelemetry.propagating(propagators);
+        }
+
+        SdkTracerProviderBuilder provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(traceStore));
+        String exportFile = settings.getExportFile();
+        if (exportFile != null && !exportFile.isBlank()) {
+            provider.addSpanProcessor(BatchSpanProcessor.builder(new JsonFileSpanExporter(Path.of(exportFile)))
+                    .setScheduleDelay(Duration.ofSeconds(2))
+                    .build());
+        }
+        log.info("Tracing enabled, file export: {}", exportFile);
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(provider.build())
+                .setPropagators(propagators)
+                .build();
+    }
+}
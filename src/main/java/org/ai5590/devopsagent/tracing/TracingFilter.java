@@ -0,0 +1,53 @@
+package org.ai5590.devopsagent.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    private final Tracing tracing;
+
+    public TracingFilter(Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (!uri.startsWith("/api/") || uri.startsWith("/api/debug/")) return true;
+        // State polling runs every 2 seconds per open tab; only trace it when the browser asks for it.
+        return uri.equals("/api/chat/state") && request.getHeader("traceparent") == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Span span = tracing.startServerSpan(request.getMethod() + " " + request.getRequestURI(), request);
+        span.setAttribute("http.method", request.getMethod());
+        span.setAttribute("http.target", request.getRequestURI());
+        if (request.getRemoteUser() != null) {
+            span.setAttribute(Tracing.USER_ATTRIBUTE, request.getRemoteUser());
+        }
+        try (Scope ignored = span.makeCurrent()) {
+            response.setHeader(TRACE_ID_HEADER, span.getSpanContext().getTraceId());
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            throw e;
+        } finally {
+            span.setAttribute("http.status_code", response.getStatus());
+            span.end();
+        }
+    }
+}
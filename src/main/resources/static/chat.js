@@ -2,6 +2,7 @@ let lastMessageId = 0;
 let showDebug = false;
 let pollingInterval = null;
 let isSending = false;
+const OUTPUT_CHUNK_BYTES = 256 * 1024;
 
 const READ_ONLY_PREFIXES = [
     'ls', 'pwd', 'whoami', 'id', 'uname', 'date', 'uptime', 'df', 'du', 'free',
@@ -31,6 +32,52 @@ async function apiFetch(url, options = {}) {
     return resp;
 }
 
+function newTraceparent() {
+    const bytes = new Uint8Array(24);
+    crypto.getRandomValues(bytes);
+    const hex = Array.from(bytes, b => b.toString(16).padStart(2, '0')).join('');
+    const traceId = hex.substring(0, 32);
+    return { traceId: traceId, header: '00-' + traceId + '-' + hex.substring(32, 48) + '-01' };
+}
+
+async function loadTraceHtml(traceId) {
+    try {
+        const resp = await apiFetch('/api/debug/traces/' + traceId);
+        if (!resp.ok) return '';
+        const trace = await resp.json();
+        let html = '<details class="debug-details"><summary>Трассировка: ' + trace.totalMs + ' мс</summary><div class="trace-breakdown">';
+        for (const span of trace.spans) {
+            const width = trace.totalMs > 0 ? Math.max(1, span.durationMs * 100 / trace.totalMs) : 100;
+            const left = trace.totalMs > 0 ? span.offsetMs * 100 / trace.totalMs : 0;
+            html += '<div class="trace-row' + (span.error ? ' trace-error' : '') + '">';
+            html += '<span class="trace-name" style="padding-left:' + span.depth + 'em">' + escapeHtml(span.name) + '</span>';
+            html += '<span class="trace-bar"><span style="margin-left:' + left + '%;width:' + width + '%"></span></span>';
+            html += '<span class="trace-ms">' + span.durationMs + ' мс</span>';
+            html += '</div>';
+            const attrs = span.attributes || {};
+            if (attrs['llm.route.reason']) {
+                html += '<div class="trace-note">LLM: ' + escapeHtml(attrs['llm.server'] || '-') + ' / ' + escapeHtml(attrs['llm.model'] || '-')
+                    + ' — ' + escapeHtml(attrs['llm.route.reason']) + (attrs['llm.route.attempt'] > 1 ? ' (попытка ' + attrs['llm.route.attempt'] + ')' : '') + '</div>';
+            }
+        }
+        html += '</div></details>';
+        return html;
+    } catch (e) {
+        console.error(e);
+        return '';
+    }
+}
+
+async function appendTraceBreakdown(traceId) {
+    const html = await loadTraceHtml(traceId);
+    if (!html) return;
+    const div = document.createElement('div');
+    div.className = 'message msg-debug';
+    div.innerHTML = html;
+    document.getElementById('chatMessages').appendChild(div);
+    scrollToBottom();
+}
+
 async function init() {
     try {
         const resp = await apiFetch('/api/user/id');
@@ -48,12 +95,12 @@ async function loadState() {
         const resp = await apiFetch('/api/chat/state?since=' + lastMessageId);
         const data = await resp.json();
         if (data.messages && data.messages.length > 0) {
-            renderMessages(data.messages, data.hasActions, data.actionsJson);
+            renderMessages(data.messages, data.hasActions, data.actionsJson, data.actionStates);
         }
     } catch (e) {}
 }
 
-function renderMessages(messages, hasActions, actionsJson) {
+function renderMessages(messages, hasActions, actionsJson, actionStates) {
     const container = document.getElementById('chatMessages');
     for (const msg of messages) {
         const id = msg.id;
@@ -66,13 +113,14 @@ function renderMessages(messages, hasActions, actionsJson) {
         container.appendChild(div);
     }
     if (hasActions && actionsJson) {
-        renderActions(actionsJson);
+        renderActions(actionsJson, actionStates || {});
     }
     scrollToBottom();
 }
 
 function formatContent(text) {
     if (!text) return '';
+    text = text.replace(/\[output:([0-9a-f]{64}) (\d+) bytes\]/g, (m, hash, size) => outputLinkHtml(hash, parseInt(size, 10)));
     text = text.replace(/```(\w*)\n?([\s\S]*?)```/g, '<pre><code>$2</code></pre>');
     text = text.replace(/`([^`]+)`/g, '<code>$1</code>');
     text = text.replace(/\*\*([^*]+)\*\*/g, '<strong>$1</strong>');
@@ -80,7 +128,7 @@ function formatContent(text) {
     return text;
 }
 
-function renderActions(actionsJson) {
+function renderActions(actionsJson, actionStates) {
     const existing = document.getElementById('actionsContainer');
     if (existing) existing.remove();
     try {
@@ -97,12 +145,19 @@ function renderActions(actionsJson) {
             html += '<div class="action-title">' + escapeHtml(action.title) + '</div>';
             html += '<div class="action-desc">' + escapeHtml(action.description) + '</div>';
             if (action.params?.server) html += '<div class="action-detail">Сервер: ' + escapeHtml(action.params.server) + '</div>';
+            if (action.params?.target) html += '<div class="action-detail">Цели: ' + escapeHtml(action.params.target) + '</div>';
             if (action.params?.command) html += '<div class="action-detail">Команда: <code>' + escapeHtml(action.params.command) + '</code></div>';
+            if (action.dependsOn && action.dependsOn.length) html += '<div class="action-detail">После: ' + escapeHtml([].concat(action.dependsOn).join(', ')) + '</div>';
             html += '<div class="action-risk">Риск: <span class="' + riskClass + '">' + escapeHtml(action.risk || 'low') + '</span></div>';
             if (!isReadOnly) html += '<div class="warning-text">⚠️ Это не read-only команда и может изменить систему.</div>';
+            if (actionStates[action.id] === 'done') html += '<div class="action-done">✓ Выполнено</div>';
             html += '<button class="btn-primary action-btn" onclick="executeAction(\'' + action.id + '\')" id="actionBtn' + action.id + '">Выполнить ' + action.id + '</button>';
             html += '</div>';
         }
+        const pendingCount = parsed.actions.filter(a => actionStates[a.id] !== 'done').length;
+        if (pendingCount > 1) {
+            html += '<button class="btn-primary action-btn" onclick="executeAllActions()" id="actionBtnAll">Выполнить все (' + pendingCount + ')</button>';
+        }
         if (showDebug) {
             html += '<details class="debug-details"><summary>JSON действий</summary><pre>' + escapeHtml(actionsJson) + '</pre></details>';
         }
@@ -126,9 +181,11 @@ async function sendMessage() {
     isSending = true;
     updateSendButton(true);
     showTypingIndicator(true);
+    const trace = newTraceparent();
     try {
         const resp = await apiFetch('/api/chat/send', {
             method: 'POST',
+            headers: { 'traceparent': trace.header },
             body: JSON.stringify({ text: text })
         });
         const data = await resp.json();
@@ -136,6 +193,7 @@ async function sendMessage() {
             showNotification(data.message || 'Промпт обновлён');
         }
         await loadState();
+        if (showDebug) await appendTraceBreakdown(trace.traceId);
     } catch (e) {
         showNotification('Ошибка отправки: ' + e.message, true);
     } finally {
@@ -148,20 +206,23 @@ async function sendMessage() {
 async function executeAction(actionId) {
     const btn = document.getElementById('actionBtn' + actionId);
     if (btn) { btn.disabled = true; btn.textContent = 'Выполняется...'; }
+    const trace = newTraceparent();
     try {
-        const resp = await apiFetch('/api/chat/action/' + actionId, { method: 'POST' });
+        const resp = await apiFetch('/api/chat/action/' + actionId, { method: 'POST', headers: { 'traceparent': trace.header } });
         const data = await resp.json();
         if (data.success) {
             const container = document.getElementById('chatMessages');
             const div = document.createElement('div');
             div.className = 'message msg-assistant';
             let content = '<div class="msg-content"><strong>Результат (' + escapeHtml(data.api || '') + '):</strong><pre><code>' + escapeHtml(data.output || '') + '</code></pre>';
+            if (data.outputRef) content += outputLinkHtml(data.outputRef.hash, data.outputRef.size);
             if (showDebug) {
                 content += '<details class="debug-details"><summary>Детали</summary>';
                 content += '<p>Сервер: ' + escapeHtml(data.server || '-') + '</p>';
                 content += '<p>Команда: ' + escapeHtml(data.command || '-') + '</p>';
                 content += '<p>Время: ' + (data.duration_ms || 0) + ' мс</p>';
                 content += '</details>';
+                content += await loadTraceHtml(trace.traceId);
             }
             content += '</div>';
             div.innerHTML = content;
@@ -177,6 +238,98 @@ async function executeAction(actionId) {
     }
 }
 
+// Results arrive as NDJSON lines while the batch runs; the combined history message replaces them at the end.
+async function executeAllActions() {
+    const btn = document.getElementById('actionBtnAll');
+    if (btn) { btn.disabled = true; btn.textContent = 'Выполняется...'; }
+    const container = document.getElementById('chatMessages');
+    const live = document.createElement('div');
+    live.className = 'message msg-assistant';
+    live.innerHTML = '<div class="msg-content"><strong>Выполнение действий:</strong></div>';
+    container.appendChild(live);
+    scrollToBottom();
+    try {
+        const resp = await apiFetch('/api/chat/actions/execute-all', { method: 'POST' });
+        if (!resp.ok) {
+            const data = await resp.json();
+            throw new Error(data.error || ('HTTP ' + resp.status));
+        }
+        const reader = resp.body.getReader();
+        const decoder = new TextDecoder('utf-8');
+        let buffered = '';
+        for (;;) {
+            const { value, done } = await reader.read();
+            if (done) break;
+            buffered += decoder.decode(value, { stream: true });
+            let nl;
+            while ((nl = buffered.indexOf('\n')) >= 0) {
+                const line = buffered.slice(0, nl).trim();
+                buffered = buffered.slice(nl + 1);
+                if (line) appendBatchResult(live.firstChild, JSON.parse(line));
+            }
+        }
+        live.remove();
+        await loadState();
+    } catch (e) {
+        showNotification('Ошибка выполнения: ' + e.message, true);
+    } finally {
+        const after = document.getElementById('actionBtnAll');
+        if (after) { after.disabled = false; }
+    }
+}
+
+function appendBatchResult(el, r) {
+    if (r.finished) return;
+    let html = '<div class="batch-result"><strong>[' + escapeHtml(r.id || '') + '] ' + escapeHtml(r.api || '') + '</strong> ';
+    if (r.status === 'done') {
+        html += '<span class="action-done">✓</span><pre><code>' + escapeHtml(r.output || '') + '</code></pre>';
+        if (r.outputRef) html += outputLinkHtml(r.outputRef.hash, r.outputRef.size);
+    } else {
+        html += '<span class="warning-text">' + (r.status === 'skipped' ? 'Пропущено' : 'Ошибка') + ': ' + escapeHtml(r.error || '') + '</span>';
+    }
+    html += '</div>';
+    el.insertAdjacentHTML('beforeend', html);
+    scrollToBottom();
+}
+
+function outputLinkHtml(hash, size) {
+    return '<div class="output-ref"><a href="#" onclick="loadOutputChunk(this.parentNode, \'' + hash + '\', 0); return false;">Показать полный вывод (' + formatBytes(size) + ')</a></div>';
+}
+
+// The full body is fetched in Range chunks so a multi-megabyte output does not arrive in one piece.
+async function loadOutputChunk(el, hash, offset) {
+    try {
+        const resp = await apiFetch('/api/chat/output/' + hash, { headers: { 'Range': 'bytes=' + offset + '-' + (offset + OUTPUT_CHUNK_BYTES - 1) } });
+        if (!resp.ok) throw new Error('HTTP ' + resp.status);
+        const bytes = new Uint8Array(await resp.arrayBuffer());
+        const range = /\/(\d+)$/.exec(resp.headers.get('Content-Range') || '');
+        const total = range ? parseInt(range[1], 10) : offset + bytes.length;
+        const next = offset + bytes.length;
+        if (!el.outputDecoder) {
+            el.outputDecoder = new TextDecoder('utf-8');
+            el.innerHTML = '<pre><code></code></pre>';
+        }
+        el.querySelector('code').textContent += el.outputDecoder.decode(bytes, { stream: next < total });
+        const more = el.querySelector('.output-more');
+        if (more) more.remove();
+        if (next < total) {
+            const btn = document.createElement('button');
+            btn.className = 'btn-secondary output-more';
+            btn.textContent = 'Загрузить ещё (' + formatBytes(total - next) + ')';
+            btn.onclick = () => loadOutputChunk(el, hash, next);
+            el.appendChild(btn);
+        }
+    } catch (e) {
+        showNotification('Ошибка загрузки вывода: ' + e.message, true);
+    }
+}
+
+function formatBytes(n) {
+    if (n < 1024) return n + ' Б';
+    if (n < 1024 * 1024) return (n / 1024).toFixed(1) + ' КБ';
+    return (n / 1024 / 1024).toFixed(1) + ' МБ';
+}
+
 async function newChat() {
     if (!confirm('Начать новый диалог? История будет удалена.')) return;
     try {
@@ -0,0 +1,56 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentPolicyTest {
+    private final AppConfig.AgentSettings defaults = new AppConfig.AgentSettings();
+
+    private boolean readOnly(String command) {
+        return AgentPolicy.isReadOnly(command, defaults.getReadOnlyCommands(), defaults.getDeniedArguments());
+    }
+
+    @Test
+    void agentLoopIsOffByDefault() {
+        assertFalse(defaults.isEnabled());
+    }
+
+    @Test
+    void readOnlyFormsAreAllowed() {
+        for (String command : List.of("df -h", "ps aux | grep nginx", "ip addr show dev eth0", "ip route show",
+                "journalctl -n 50 --no-pager", "journalctl -n 100 -u nginx", "tail -n 200 /var/log/syslog",
+                "ss -tulpn", "docker logs --tail 100 web", "systemctl status nginx", "hostnamectl status")) {
+            assertTrue(readOnly(command), command);
+        }
+    }
+
+    @Test
+    void mutatingAndBlockingCommandsAreRejected() {
+        for (String command : List.of("date -s '2020-01-01'", "hostname newname", "ip route del default",
+                "ip addr flush dev eth0", "ip a del 10.0.0.1/24 dev eth0", "journalctl -n 1 --vacuum-time=1s",
+                "journalctl -n 1 --rotate", "journalctl -n 10 -fu nginx", "ss -K dst 10.0.0.1", "ss -tK",
+                "tail -n 10 -f /var/log/syslog", "tail -n 10 --follow=name x", "tail -n 10 '-f' x",
+                "docker logs --tail 10 -f web", "rm -rf /", "cat /etc/passwd > /tmp/x", "ls; reboot")) {
+            assertFalse(readOnly(command), command);
+        }
+    }
+
+    @Test
+    void deniedArgumentsAlsoGuardOlderPrefixLists() {
+        List<String> old = List.of("date", "hostname", "ip a", "journalctl", "tail", "ss");
+        List<String> denied = defaults.getDeniedArguments();
+
+        assertTrue(AgentPolicy.isReadOnly("date", old, denied));
+        assertTrue(AgentPolicy.isReadOnly("hostname", old, denied));
+        assertTrue(AgentPolicy.isReadOnly("journalctl -u nginx -n 20", old, denied));
+        assertFalse(AgentPolicy.isReadOnly("date -s 12:00", old, denied));
+        assertFalse(AgentPolicy.isReadOnly("hostname newname", old, denied));
+        assertFalse(AgentPolicy.isReadOnly("ip a flush dev eth0", old, denied));
+        assertFalse(AgentPolicy.isReadOnly("journalctl --vacuum-size=1M", old, denied));
+        assertFalse(AgentPolicy.isReadOnly("tail -f x", old, denied));
+    }
+}
@@ -0,0 +1,225 @@
+package org.ai5590.devopsagent.actions;
+
+import io.opentelemetry.api.OpenTelemetry;
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.ai5590.devopsagent.db.ActionLeaseRepository;
+import org.ai5590.devopsagent.db.DatabaseInitializer;
+import org.ai5590.devopsagent.db.PendingActionsRepository;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingActionStoreTest {
+    private static final String USER = "alice";
+    private static final String ACTIONS = "[{\"id\":\"a1\",\"api\":\"exec\",\"params\":{\"command\":\"uptime\"}}]";
+    private static final String NEXT_ACTIONS = "[{\"id\":\"a1\",\"api\":\"exec\",\"params\":{\"command\":\"df -h\"}}]";
+
+    @TempDir
+    Path dir;
+
+    private DatabaseInitializer db;
+    private ConfigLoader config;
+    private PendingActionStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new DatabaseInitializer(dir.resolve("app.db").toString());
+        db.init();
+        AppConfig defaults = new AppConfig();
+        defaults.ensureDefaults();
+        config = new ConfigLoader() {
+            @Override
+            public AppConfig getConfig() {
+                return defaults;
+            }
+        };
+        store = newStore();
+        store.replace(USER, ACTIONS, ActionBatch.parse(ACTIONS));
+    }
+
+    private PendingActionStore newStore() {
+        return newStore(db);
+    }
+
+    private PendingActionStore newStore(DatabaseInitializer database) {
+        Tracing tracing = new Tracing(OpenTelemetry.noop());
+        return new PendingActionStore(new PendingActionsRepository(database, tracing), new ActionLeaseRepository(database, tracing),
+                database, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+        db.close();
+    }
+
+    @Test
+    void runningActionCannotBeStartedTwice() {
+        assertTrue(store.markRunning(USER, "a1"));
+        assertFalse(store.markRunning(USER, "a1"));
+        assertFalse(store.markRunning(USER, "unknown"));
+    }
+
+    @Test
+    void doneActionIsNotRunAgain() {
+        assertTrue(store.markRunning(USER, "a1"));
+        store.markDone(USER, "a1");
+
+        assertFalse(store.markRunning(USER, "a1"), "a finished action must not go back to RUNNING");
+        assertEquals("done", store.getStates(USER).get("a1"));
+    }
+
+    @Test
+    void failedActionCanBeRetried() {
+        assertTrue(store.markRunning(USER, "a1"));
+        store.markPending(USER, "a1");
+
+        assertTrue(store.markRunning(USER, "a1"));
+    }
+
+    @Test
+    void sameBatchFromTheModelResetsDoneActions() throws Exception {
+        assertTrue(store.markRunning(USER, "a1"));
+        store.markDone(USER, "a1");
+        store.replace(USER, ACTIONS, ActionBatch.parse(ACTIONS));
+
+        assertTrue(store.markRunning(USER, "a1"));
+    }
+
+    @Test
+    void stateTagDependsOnContentOnly() {
+        String initial = store.getStateTag(USER);
+        assertTrue(store.markRunning(USER, "a1"));
+        store.markDone(USER, "a1");
+        String done = store.getStateTag(USER);
+        assertNotEquals(initial, done);
+        store.flush();
+
+        PendingActionStore otherNode = newStore();
+        try {
+            assertEquals(done, otherNode.getStateTag(USER), "another process must hand out the same tag");
+            assertEquals("0", otherNode.getStateTag("nobody"));
+        } finally {
+            otherNode.shutdown();
+        }
+    }
+
+    @Test
+    void actionFinishedOnOneNodeIsNotRunOnAnotherBeforeTheChangeEventArrives() throws Exception {
+        SharedSqliteBackend shared = new SharedSqliteBackend(dir);
+        DatabaseInitializer sharedDb = new DatabaseInitializer(shared);
+        sharedDb.init();
+        PendingActionStore node1 = newStore(sharedDb);
+        PendingActionStore node2 = newStore(sharedDb);
+        try {
+            node1.replace(USER, ACTIONS, ActionBatch.parse(ACTIONS));
+            shared.deliver();
+            assertEquals("pending", node2.getStates(USER).get("a1"));
+
+            assertTrue(node1.markRunning(USER, "a1"));
+            node1.markDone(USER, "a1");
+            assertFalse(node2.markRunning(USER, "a1"), "node2 still caches a1 as pending, but it has run on node1");
+            assertEquals("done", node2.getStates(USER).get("a1"));
+
+            node1.replace(USER, NEXT_ACTIONS, ActionBatch.parse(NEXT_ACTIONS));
+            assertFalse(node2.markRunning(USER, "a1"), "node2 must not start a1 of a batch that has been replaced");
+            shared.deliver();
+            assertTrue(node2.markRunning(USER, "a1"), "a1 of the new batch is a new action");
+        } finally {
+            node1.shutdown();
+            node2.shutdown();
+            sharedDb.close();
+        }
+    }
+
+    @Test
+    void olderStatesAreNotWrittenOverNewerOnes() throws Exception {
+        String batch = "[{\"id\":\"a1\",\"api\":\"exec\",\"params\":{\"command\":\"uptime\"}}," +
+                "{\"id\":\"a2\",\"api\":\"exec\",\"params\":{\"command\":\"df -h\"}}]";
+        SharedSqliteBackend shared = new SharedSqliteBackend(dir);
+        DatabaseInitializer sharedDb = new DatabaseInitializer(shared);
+        sharedDb.init();
+        Tracing tracing = new Tracing(OpenTelemetry.noop());
+        AtomicBoolean stallNextWrite = new AtomicBoolean();
+        // The first state write after the switch is slow, so without ordering the newer one would land first.
+        PendingActionsRepository slowRepository = new PendingActionsRepository(sharedDb, tracing) {
+            @Override
+            public boolean updateActionStates(String userLogin, String actionsJson, String actionStatesJson) {
+                if (stallNextWrite.compareAndSet(true, false)) {
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.updateActionStates(userLogin, actionsJson, actionStatesJson);
+            }
+        };
+        PendingActionStore node1 = new PendingActionStore(slowRepository, new ActionLeaseRepository(sharedDb, tracing), sharedDb, config);
+        PendingActionStore node2 = newStore(sharedDb);
+        try {
+            node1.replace(USER, batch, ActionBatch.parse(batch));
+            assertTrue(node1.markRunning(USER, "a1"));
+            assertTrue(node1.markRunning(USER, "a2"));
+            stallNextWrite.set(true);
+            Thread first = new Thread(() -> node1.markDone(USER, "a1"));
+            first.start();
+            Thread.sleep(50);
+            node1.markDone(USER, "a2");
+            first.join();
+
+            assertEquals(Map.of("a1", "done", "a2", "done"), node2.getStates(USER));
+        } finally {
+            node1.shutdown();
+            node2.shutdown();
+            sharedDb.close();
+        }
+    }
+
+    @Test
+    void failedFlushIsRetried() throws Exception {
+        Tracing tracing = new Tracing(OpenTelemetry.noop());
+        AtomicBoolean failWrites = new AtomicBoolean(true);
+        PendingActionsRepository failing = new PendingActionsRepository(db, tracing) {
+            @Override
+            public boolean savePendingActions(String userLogin, String actionsJson, String actionStatesJson) {
+                return !failWrites.get() && super.savePendingActions(userLogin, actionsJson, actionStatesJson);
+            }
+        };
+        PendingActionStore node = new PendingActionStore(failing, new ActionLeaseRepository(db, tracing), db, config);
+        try {
+            node.replace("bob", ACTIONS, ActionBatch.parse(ACTIONS));
+            node.flush();
+            assertNull(new PendingActionsRepository(db, tracing).getPendingActions("bob"));
+
+            failWrites.set(false);
+            node.flush();
+            assertEquals(ACTIONS, new PendingActionsRepository(db, tracing).getPendingActions("bob").actionsJson());
+        } finally {
+            node.shutdown();
+        }
+    }
+
+    @Test
+    void idleUsersAreEvictedOnlyOnceWritten() throws Exception {
+        store.replace("bob", NEXT_ACTIONS, ActionBatch.parse(NEXT_ACTIONS));
+        Thread.sleep(5);
+        assertEquals(0, store.evictIdle(0), "unwritten changes stay in memory");
+
+        store.flush();
+        assertTrue(store.markRunning(USER, "a1"));
+        Thread.sleep(5);
+        assertEquals(1, store.evictIdle(0), "bob is evicted; alice has an action running");
+        assertEquals(NEXT_ACTIONS, store.getActionsJson("bob"));
+        assertEquals("running", store.getStates(USER).get("a1"));
+    }
+}
@@ -0,0 +1,78 @@
+package org.ai5590.devopsagent.actions;
+
+import org.ai5590.devopsagent.db.SqliteStorageBackend;
+import org.ai5590.devopsagent.db.StorageBackend;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// One SQLite file standing in for the database several nodes share. Change events are held back until deliver(),
+// the way a NOTIFY reaches the other nodes some time after the write.
+class SharedSqliteBackend implements StorageBackend {
+    private final SqliteStorageBackend delegate;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<String> published = new ArrayList<>();
+
+    SharedSqliteBackend(Path dir) {
+        this.delegate = new SqliteStorageBackend(dir.resolve("shared.db").toString());
+    }
+
+    @Override
+    public String name() {
+        return "shared:" + delegate.name();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return delegate.getConnection();
+    }
+
+    @Override
+    public void createSchema() throws SQLException {
+        delegate.createSchema();
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public long currentMessageId() {
+        return delegate.currentMessageId();
+    }
+
+    @Override
+    public long nextMessageId() {
+        return delegate.nextMessageId();
+    }
+
+    @Override
+    public synchronized void publishChange(String userLogin) {
+        published.add(userLogin);
+    }
+
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    void deliver() {
+        List<String> events;
+        synchronized (this) {
+            events = new ArrayList<>(published);
+            published.clear();
+        }
+        for (String userLogin : events) listeners.forEach(l -> l.accept(userLogin));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,25 @@
+package org.ai5590.devopsagent.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseInitializerTest {
+    @TempDir
+    Path dir;
+
+    // The schema is created before any bean that needs the database is built: a failure must stop startup, not
+    // surface later from the first query.
+    @Test
+    void schemaFailureFailsInit() {
+        DatabaseInitializer db = new DatabaseInitializer(dir.toString());
+        try {
+            assertThrows(RuntimeException.class, db::init);
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.ai5590.devopsagent.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// A real SQLite database whose connections fail on demand. With sharded = true every user gets a shard key,
+// so the journal takes its per-shard path (borrowed connection per batch), against the same file.
+class FaultInjectingBackend implements StorageBackend {
+    private final SqliteStorageBackend delegate;
+    final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    volatile boolean sharded;
+    volatile boolean failDeletes;
+    volatile boolean failInserts;
+    volatile boolean failCommitUnchecked;
+
+    FaultInjectingBackend(Path dir) {
+        this.delegate = new SqliteStorageBackend(dir.resolve("app.db").toString());
+    }
+
+    @Override
+    public String name() {
+        return "faulty:" + delegate.name();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getUserConnection(String userLogin) throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public String shardOf(String userLogin) {
+        return sharded ? "shard-" + userLogin : null;
+    }
+
+    @Override
+    public void createSchema() throws SQLException {
+        delegate.createSchema();
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public long currentMessageId() {
+        return delegate.currentMessageId();
+    }
+
+    @Override
+    public long nextMessageId() {
+        return delegate.nextMessageId();
+    }
+
+    @Override
+    public void publishChange(String userLogin) {
+    }
+
+    @Override
+    public void addChangeListener(Consumer<String> listener) {
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private Connection wrap(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement" -> {
+                            String sql = (String) args[0];
+                            PreparedStatement ps = conn.prepareStatement(sql);
+                            if (failDeletes && sql.startsWith("DELETE")) return failing(ps, "executeUpdate");
+                            if (failInserts && sql.startsWith("INSERT")) return failing(ps, "executeBatch");
+                            return ps;
+                        }
+                        case "commit" -> {
+                            if (failCommitUnchecked) throw new IllegalStateException("injected commit failure");
+                        }
+                        case "rollback" -> events.add("rollback");
+                        case "close" -> events.add("close autoCommit=" + conn.getAutoCommit());
+                        default -> {
+                        }
+                    }
+                    return invoke(conn, method, args);
+                });
+    }
+
+    private static PreparedStatement failing(PreparedStatement ps, String failingMethod) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals(failingMethod)) throw new SQLException("injected " + failingMethod + " failure");
+                    return invoke(ps, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.ai5590.devopsagent.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageJournalTest {
+    private static final String USER = "alice";
+
+    @TempDir
+    Path dir;
+
+    private FaultInjectingBackend backend;
+    private MessageJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        backend = new FaultInjectingBackend(dir);
+        DatabaseInitializer db = new DatabaseInitializer(backend);
+        db.init();
+        journal = new MessageJournal(db);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+        backend.close();
+    }
+
+    @Test
+    void failedDeleteShowsTheRowsAgain() throws Exception {
+        append("user", "one");
+        append("assistant", "two");
+        backend.failDeletes = true;
+
+        assertEquals(-1L, journal.deleteAll(USER).get(5, TimeUnit.SECONDS));
+
+        assertEquals(0L, journal.snapshot(USER).hiddenUpTo(), "history must not stay hidden after a failed delete");
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    void uncheckedCommitFailureDropsRowsFromTheOverlay() throws Exception {
+        backend.failCommitUnchecked = true;
+        MessageJournal.Appended appended = journal.append(USER, "user", "lost");
+
+        assertEquals(-1L, appended.ack().get(5, TimeUnit.SECONDS));
+        assertTrue(journal.snapshot(USER).pending().isEmpty(), "overlay must not serve a row that was never written");
+        assertEquals(0, countRows());
+
+        backend.failCommitUnchecked = false;
+        assertTrue(append("user", "kept") > 0, "journal keeps working after the failure");
+        assertEquals(1, countRows());
+    }
+
+    @Test
+    void failedShardCommitIsRolledBackBeforeTheConnectionIsReturned() throws Exception {
+        backend.sharded = true;
+        backend.failInserts = true;
+        MessageJournal.Appended appended = journal.append(USER, "user", "lost");
+
+        assertEquals(-1L, appended.ack().get(5, TimeUnit.SECONDS));
+        assertTrue(journal.snapshot(USER).pending().isEmpty());
+        int rollback = backend.events.indexOf("rollback");
+        assertTrue(rollback >= 0, "rollback expected, events: " + backend.events);
+        assertEquals("close autoCommit=true", backend.events.get(rollback + 1));
+
+        backend.failInserts = false;
+        assertTrue(append("user", "kept") > 0);
+        assertEquals(1, countRows());
+    }
+
+    private long append(String role, String content) throws Exception {
+        return journal.append(USER, role, content).ack().get(5, TimeUnit.SECONDS);
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection conn = backend.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM messages WHERE user_login = ?")) {
+            ps.setString(1, USER);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.ai5590.devopsagent.db;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// DEVOPS_AGENT_TEST_PG_URL (jdbc:postgresql://host/db?user=...&password=...) points the suite at an existing server;
+// without it an embedded Postgres is started once for the test JVM. Every test gets a schema of its own.
+class PostgresRepositoryTest extends RepositoryContractTest {
+    private static String serverUrl;
+    private static String startError;
+
+    private String schema;
+
+    private static synchronized String serverUrl() {
+        if (serverUrl != null || startError != null) return serverUrl;
+        String configured = System.getenv("DEVOPS_AGENT_TEST_PG_URL");
+        if (configured != null && !configured.isBlank()) return serverUrl = configured;
+        try {
+            EmbeddedPostgres pg = EmbeddedPostgres.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    pg.close();
+                } catch (IOException ignored) {
+                }
+            }));
+            serverUrl = pg.getJdbcUrl("postgres", "postgres");
+        } catch (IOException | RuntimeException e) {
+            startError = e.getMessage();
+        }
+        return serverUrl;
+    }
+
+    @Override
+    StorageBackend createBackend(Path dir) throws SQLException {
+        String url = serverUrl();
+        assumeTrue(url != null, "No Postgres: set DEVOPS_AGENT_TEST_PG_URL (embedded start failed: " + startError + ")");
+        schema = "t_" + UUID.randomUUID().toString().replace("-", "");
+        execute(url, "CREATE SCHEMA " + schema);
+        AppConfig.StorageSettings settings = new AppConfig.StorageSettings();
+        settings.setType("postgres");
+        settings.setJdbcUrl(url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema);
+        settings.setPasswordEnv(null);
+        settings.setPoolSize(4);
+        return new PostgresStorageBackend(settings);
+    }
+
+    @Override
+    void dropDatabase() throws SQLException {
+        if (schema != null) execute(serverUrl, "DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    private static void execute(String url, String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.ai5590.devopsagent.db;
+
+import io.opentelemetry.api.OpenTelemetry;
+import org.ai5590.devopsagent.tracing.Tracing;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The repositories run the same SQL on every storage backend; each subclass runs this suite against one of them, so a
+// statement only one database accepts fails here instead of after a deployment switches storage.type.
+abstract class RepositoryContractTest {
+    private static final String ALICE = "alice";
+    private static final String BOB = "bob";
+
+    @TempDir
+    Path dir;
+
+    private DatabaseInitializer db;
+    private MessageJournal journal;
+    private final Tracing tracing = new Tracing(OpenTelemetry.noop());
+
+    abstract StorageBackend createBackend(Path dir) throws Exception;
+
+    // Runs after the backend is closed.
+    void dropDatabase() throws Exception {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new DatabaseInitializer(createBackend(dir));
+        db.init();
+        journal = new MessageJournal(db);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (journal != null) journal.close();
+        if (db != null) db.close();
+        dropDatabase();
+    }
+
+    @Test
+    void usersKeepCredentialsAndPromptState() {
+        UserRepository users = new UserRepository(db, tracing);
+        users.createUser(ALICE, "hash-1");
+        users.upsertUser(BOB, "hash-2");
+        users.upsertUser(BOB, "hash-3");
+        users.updatePasswordHash(ALICE, "hash-4");
+        users.setBootstrapFingerprint(BOB, "fp");
+        users.setPromptOverride(ALICE, "be brief");
+        users.setPendingPromptUpdate(ALICE, true);
+
+        assertTrue(users.existsByLogin(ALICE));
+        assertFalse(users.existsByLogin("carol"));
+        assertEquals("hash-4", users.getPasswordHash(ALICE).orElse(null));
+        Map<String, UserRepository.StoredCredentials> credentials = users.getAllCredentials();
+        assertEquals(2, credentials.size());
+        assertEquals("hash-3", credentials.get(BOB).passwordHash());
+        assertEquals("fp", credentials.get(BOB).bootstrapFingerprint());
+        assertEquals("be brief", users.getPromptOverride(ALICE));
+        assertTrue(users.isPendingPromptUpdate(ALICE));
+        assertFalse(users.isPendingPromptUpdate(BOB));
+    }
+
+    @Test
+    void settingsAreUpsertedPerUser() {
+        UserSettingsRepository settings = new UserSettingsRepository(db, tracing);
+        assertEquals(true, settings.getSettings(ALICE).get("llmCache"));
+
+        settings.saveSettings(ALICE, true, "srv-1", "model-a", true, false);
+        settings.saveSettings(ALICE, false, "srv-2", null, true, true);
+        settings.setShowDebug(BOB, true);
+
+        Map<String, Object> alice = settings.getSettings(ALICE);
+        assertEquals(false, alice.get("showDebug"));
+        assertEquals("srv-2", alice.get("selectedLlmServerId"));
+        assertNull(alice.get("modelOverride"));
+        assertTrue(settings.getAgentMode(ALICE));
+        assertTrue(settings.getLlmCache(ALICE));
+        assertTrue(settings.getShowDebug(BOB));
+        assertNull(settings.getSelectedLlmServerId(BOB));
+    }
+
+    @Test
+    void pendingActionsAreReplacedAndCleared() {
+        PendingActionsRepository pending = new PendingActionsRepository(db, tracing);
+        pending.savePendingActions(ALICE, "[1]", "{}");
+        pending.savePendingActions(ALICE, "[2]", "{}");
+        pending.updateActionStates(ALICE, "[2]", "{\"a\":\"DONE\"}");
+        pending.updateActionStates(ALICE, "[1]", "{\"a\":\"PENDING\"}");
+        pending.savePendingActions(BOB, "[3]", null);
+
+        PendingActionsRepository.PendingActionsRow row = pending.getPendingActions(ALICE);
+        assertEquals("[2]", row.actionsJson());
+        assertEquals("{\"a\":\"DONE\"}", row.actionStatesJson());
+
+        pending.clearPendingActions(ALICE);
+        assertNull(pending.getPendingActions(ALICE));
+        assertEquals("[3]", pending.getPendingActions(BOB).actionsJson());
+    }
+
+    @Test
+    void messagesAreReadBackInOrder() throws Exception {
+        MessageRepository messages = new MessageRepository(db, journal, tracing);
+        long first = ack(messages.addMessage(ALICE, "user", "one"));
+        long second = ack(messages.addMessage(ALICE, "assistant", "two"));
+        long third = ack(messages.addMessage(ALICE, "user", "three"));
+        ack(messages.addMessage(BOB, "user", "other"));
+
+        assertTrue(first < second && second < third);
+        assertEquals(3, messages.getMessageCount(ALICE));
+        assertEquals(third, messages.getLastMessageId(ALICE));
+        List<Message> last = messages.getLastMessages(ALICE, 2);
+        assertEquals(List.of("two", "three"), last.stream().map(Message::content).toList());
+        List<Message> since = messages.getMessagesSince(ALICE, first);
+        assertEquals(List.of(second, third), since.stream().map(Message::id).toList());
+        assertNotNull(since.get(0).createdAt());
+
+        assertTrue(ack(messages.deleteAllMessages(ALICE)) >= 0);
+        assertEquals(0, messages.getMessageCount(ALICE));
+        assertEquals(1, messages.getMessageCount(BOB));
+        assertTrue(ack(messages.addMessage(ALICE, "user", "again")) > third, "ids are not reused after a delete");
+    }
+
+    @Test
+    void leaseIsHeldUntilReleasedOrExpired() throws Exception {
+        ActionLeaseRepository node1 = new ActionLeaseRepository(db, tracing);
+        ActionLeaseRepository node2 = new ActionLeaseRepository(db, tracing);
+
+        assertTrue(node1.claim(ALICE, "a1", Duration.ofMinutes(5)));
+        assertFalse(node2.claim(ALICE, "a1", Duration.ofMinutes(5)));
+        assertTrue(node2.claim(BOB, "a1", Duration.ofMinutes(5)));
+        node1.release(ALICE, "a1");
+        assertTrue(node2.claim(ALICE, "a1", Duration.ofMillis(1)));
+
+        Thread.sleep(10);
+        assertTrue(node1.claim(ALICE, "a1", Duration.ofMinutes(5)), "an expired lease can be taken over");
+        node2.releaseAll();
+        assertFalse(node2.claim(ALICE, "a1", Duration.ofMinutes(5)), "releaseAll only drops the node's own leases");
+    }
+
+    @Test
+    void renewedLeaseOutlivesItsFirstExpiry() throws Exception {
+        ActionLeaseRepository node1 = new ActionLeaseRepository(db, tracing);
+        ActionLeaseRepository node2 = new ActionLeaseRepository(db, tracing);
+
+        assertTrue(node1.claim(ALICE, "a1", Duration.ofMillis(50)));
+        assertTrue(node1.renew(ALICE, "a1", Duration.ofMinutes(5)));
+        assertFalse(node2.renew(ALICE, "a1", Duration.ofMinutes(5)), "only the owner renews");
+        Thread.sleep(100);
+        assertFalse(node2.claim(ALICE, "a1", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void completedLeaseIsNotClaimedAgainUntilCleared() throws Exception {
+        ActionLeaseRepository node1 = new ActionLeaseRepository(db, tracing);
+        ActionLeaseRepository node2 = new ActionLeaseRepository(db, tracing);
+
+        assertTrue(node1.claim(ALICE, "a1", Duration.ofMillis(1)));
+        node1.complete(ALICE, "a1");
+        node1.release(ALICE, "a1");
+        node1.releaseAll();
+        Thread.sleep(10);
+        assertFalse(node2.claim(ALICE, "a1", Duration.ofMinutes(5)), "a finished action stays claimed, expired or not");
+
+        node2.clearDone(ALICE);
+        assertTrue(node2.claim(ALICE, "a1", Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void outputBlobsAreStoredOncePerUser() {
+        OutputBlobRepository blobs = new OutputBlobRepository(db, tracing);
+        byte[] raw = "line\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        String hash = blobs.store(ALICE, raw);
+
+        assertEquals(hash, blobs.store(ALICE, raw));
+        OutputBlobRepository.Blob blob = blobs.find(ALICE, hash);
+        assertEquals(raw.length, blob.rawSize());
+        assertEquals(blob.compressedSize(), blob.compressed().length);
+        assertNull(blobs.find(BOB, hash));
+
+        blobs.deleteAll(ALICE);
+        assertNull(blobs.find(ALICE, hash));
+    }
+
+    @Test
+    void llmCacheIsReplacedAndPruned() {
+        LlmCacheRepository cache = new LlmCacheRepository(db, tracing);
+        cache.put("k1", ALICE, new LlmCacheRepository.Entry("srv-1", "m", "old", 10, 1000));
+        cache.put("k1", ALICE, new LlmCacheRepository.Entry("srv-1", "m", "new", 20, 2000));
+        cache.put("k2", ALICE, new LlmCacheRepository.Entry("srv-1", "m", "r2", 5, 3000));
+        cache.put("k3", BOB, new LlmCacheRepository.Entry("srv-2", "m", "r3", 5, 3000));
+        cache.touch("k2", 9000);
+
+        assertEquals("new", cache.find("k1").response());
+        assertEquals(2000L, cache.find("k1").createdAt());
+        assertEquals(1, cache.prune(0, 2), "the least recently hit entry goes first");
+        assertNull(cache.find("k1"));
+
+        cache.deleteServer("srv-2");
+        assertNull(cache.find("k3"));
+        assertEquals("r2", cache.find("k2").response());
+        assertEquals(1, cache.prune(5000, 10));
+    }
+
+    @Test
+    void auditEntriesAreWrittenWithTruncatedResult() throws Exception {
+        new AuditRepository(db, tracing).addAuditEntry(ALICE, "exec", "srv", "uptime", 42, "x".repeat(800));
+
+        try (Connection conn = db.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT duration_ms, result_snippet FROM audit WHERE login = ?")) {
+            ps.setString(1, ALICE);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(42L, rs.getLong(1));
+                assertEquals(500, rs.getString(2).length());
+            }
+        }
+    }
+
+    private static long ack(CompletableFuture<Long> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
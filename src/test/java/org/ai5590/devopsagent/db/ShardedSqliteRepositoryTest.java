@@ -0,0 +1,16 @@
+package org.ai5590.devopsagent.db;
+
+import org.ai5590.devopsagent.config.AppConfig;
+
+import java.nio.file.Path;
+
+class ShardedSqliteRepositoryTest extends RepositoryContractTest {
+    @Override
+    StorageBackend createBackend(Path dir) {
+        AppConfig.StorageSettings settings = new AppConfig.StorageSettings();
+        settings.setType("sqlite-sharded");
+        settings.setSqlitePath(dir.resolve("app.db").toString());
+        settings.setShardDir(dir.resolve("shards").toString());
+        return new ShardedSqliteStorageBackend(settings);
+    }
+}
@@ -0,0 +1,10 @@
+package org.ai5590.devopsagent.db;
+
+import java.nio.file.Path;
+
+class SqliteRepositoryTest extends RepositoryContractTest {
+    @Override
+    StorageBackend createBackend(Path dir) {
+        return new SqliteStorageBackend(dir.resolve("app.db").toString());
+    }
+}
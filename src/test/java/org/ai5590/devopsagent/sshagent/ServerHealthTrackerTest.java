@@ -0,0 +1,56 @@
+package org.ai5590.devopsagent.sshagent;
+
+import org.ai5590.devopsagent.config.AppConfig;
+import org.ai5590.devopsagent.config.ConfigLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerHealthTrackerTest {
+    private ServerHealthTracker health;
+
+    @BeforeEach
+    void setUp() {
+        AppConfig defaults = new AppConfig();
+        defaults.ensureDefaults();
+        health = new ServerHealthTracker(new ConfigLoader() {
+            @Override
+            public AppConfig getConfig() {
+                return defaults;
+            }
+        });
+    }
+
+    @Test
+    void onlyConnectionFailuresCountAgainstTheHost() {
+        assertEquals(ServerHealthTracker.Outcome.HOST_FAILURE,
+                ServerHealthTracker.classify("ssh: connect to host web1 port 22: Connection refused"));
+        assertEquals(ServerHealthTracker.Outcome.HOST_FAILURE,
+                ServerHealthTracker.classify("ssh: connect to host web1 port 22: Connection timed out"));
+        assertEquals(ServerHealthTracker.Outcome.HOST_FAILURE,
+                ServerHealthTracker.classify("ssh: Could not resolve hostname web9: Name or service not known"));
+        assertEquals(ServerHealthTracker.Outcome.NEUTRAL,
+                ServerHealthTracker.classify("Error: SSH agent did not answer within 60 s"));
+        assertEquals(ServerHealthTracker.Outcome.NEUTRAL, ServerHealthTracker.classify("Error: request timed out"));
+        assertEquals(ServerHealthTracker.Outcome.SUCCESS, ServerHealthTracker.classify("grep: connection refused in app.log"));
+    }
+
+    @Test
+    void slowCommandsTimingOutDoNotOpenTheCircuit() {
+        for (int i = 0; i < 10; i++) health.record("web1", "Error: SSH agent did not answer within 60 s", 60_000);
+
+        assertNull(health.admit("web1"));
+    }
+
+    @Test
+    void timeoutNeverDropsBelowSixtySeconds() {
+        assertEquals(60_000L, health.timeoutFor("web1").toMillis());
+        for (int i = 0; i < 10; i++) health.record("web1", "ok", 200);
+        assertEquals(60_000L, health.timeoutFor("web1").toMillis(), "fast host keeps the fixed timeout");
+
+        for (int i = 0; i < 20; i++) health.record("web2", "ok", 40_000);
+        long slow = health.timeoutFor("web2").toMillis();
+        assertTrue(slow > 60_000 && slow <= 180_000, "slow host gets more time: " + slow);
+    }
+}